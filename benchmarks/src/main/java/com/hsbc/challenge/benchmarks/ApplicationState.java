@@ -0,0 +1,90 @@
+package com.hsbc.challenge.benchmarks;
+
+import com.hsbc.challenge.app.ChallengeApplication;
+import com.hsbc.challenge.controller.UserController;
+import com.hsbc.challenge.graph.SocialGraph;
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostRequest;
+import com.hsbc.challenge.model.User;
+import com.hsbc.challenge.model.UserRequest;
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.repository.UserRepository;
+import com.hsbc.challenge.timeline.TimelineAssembler;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the application against in-memory H2 without the web server and seeds a reader who follows
+ * {@code followees} authors with {@code postsPerUser} posts each.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    @Param({"10", "100"})
+    public int followees;
+
+    @Param({"10", "100"})
+    public int postsPerUser;
+
+    ConfigurableApplicationContext context;
+    UserController userController;
+    TimelineAssembler timelineAssembler;
+    long readerId;
+    long strangerId;
+    long[] authorIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(ChallengeApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.com.hsbc.challenge=WARN", "spring.jpa.show-sql=false")
+                .run();
+        userController = context.getBean(UserController.class);
+        timelineAssembler = context.getBean(TimelineAssembler.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        PostRepository postRepository = context.getBean(PostRepository.class);
+        SocialGraph socialGraph = context.getBean(SocialGraph.class);
+
+        readerId = userRepository.save(new User(new UserRequest("reader"))).getId();
+        strangerId = userRepository.save(new User(new UserRequest("stranger"))).getId();
+        authorIds = new long[followees];
+        for (int i = 0; i < followees; i++) {
+            authorIds[i] = userRepository.save(new User(new UserRequest("author" + i))).getId();
+            socialGraph.follow(readerId, authorIds[i]);
+        }
+        for (int j = 0; j < postsPerUser; j++) {
+            List<Post> posts = new ArrayList<>(followees);
+            for (int i = 0; i < followees; i++) {
+                posts.add(new Post(authorIds[i], new PostRequest("post " + j + " of author " + i)));
+            }
+            postRepository.saveAll(posts);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    /**
+     * Waits for a result completed on the read executor, the way the servlet container would.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T await(DeferredResult<T> result) {
+        CountDownLatch done = new CountDownLatch(1);
+        result.setResultHandler(value -> done.countDown());
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return (T) result.getResult();
+    }
+}
@@ -0,0 +1,49 @@
+package com.hsbc.challenge.benchmarks;
+
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.util.ReverseChronologicalPostComparator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting all posts of all followees at once, the cost of a timeline built by collecting and sorting.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ComparatorBenchmark {
+
+    @Param({"10", "100"})
+    public int followees;
+
+    @Param({"10", "100"})
+    public int postsPerUser;
+
+    private final ReverseChronologicalPostComparator comparator = new ReverseChronologicalPostComparator();
+    private List<PostView> posts;
+
+    @Setup(Level.Trial)
+    public void createPosts() {
+        Random random = new Random(42);
+        posts = new ArrayList<>(followees * postsPerUser);
+        for (int i = 0; i < followees * postsPerUser; i++) {
+            PostView post = new PostView();
+            post.setId(random.nextLong());
+            posts.add(post);
+        }
+    }
+
+    @Benchmark
+    public List<PostView> sortPosts() {
+        List<PostView> sorted = new ArrayList<>(posts);
+        sorted.sort(comparator);
+        return sorted;
+    }
+}
@@ -0,0 +1,23 @@
+package com.hsbc.challenge.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follow immediately followed by unfollow, so every invocation starts from the same graph.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FollowBenchmark {
+
+    @Benchmark
+    public void followAndUnfollow(ApplicationState state, Blackhole blackhole) {
+        blackhole.consume(state.userController.followUser(state.strangerId, state.authorIds[0]));
+        blackhole.consume(state.userController.unfollowUser(state.strangerId, state.authorIds[0]));
+    }
+}
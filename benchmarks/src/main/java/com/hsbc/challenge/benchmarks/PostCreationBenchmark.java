@@ -0,0 +1,34 @@
+package com.hsbc.challenge.benchmarks;
+
+import com.hsbc.challenge.model.PostRequest;
+import com.hsbc.challenge.model.PostResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BeanPropertyBindingResult;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post creation through the controller, including the insert and the fan-out to the reader's timeline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PostCreationBenchmark {
+
+    private final PostRequest postRequest = new PostRequest("Ala ma kota");
+
+    @Setup(Level.Trial)
+    public void materializeReaderTimeline(ApplicationState state) {
+        ApplicationState.await(state.userController.findUserFoloweePosts(state.readerId, null, 20, null));
+    }
+
+    @Benchmark
+    public ResponseEntity<PostResponse> createPost(ApplicationState state) {
+        return state.userController.createUserPost(state.authorIds[0], postRequest,
+                new BeanPropertyBindingResult(postRequest, "postRequest"));
+    }
+}
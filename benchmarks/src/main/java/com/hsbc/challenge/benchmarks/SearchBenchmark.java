@@ -0,0 +1,58 @@
+package com.hsbc.challenge.benchmarks;
+
+import com.hsbc.challenge.search.PostIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-term AND queries over an index of short posts whose words follow a skewed distribution, so the query terms
+ * range from common to rare.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final int VOCABULARY = 50_000;
+    private static final int WORDS_PER_POST = 20;
+
+    @Param({"100000", "1000000"})
+    public int posts;
+
+    private PostIndex index;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createIndex() {
+        Random random = new Random(42);
+        index = new PostIndex(null);
+        StringBuilder text = new StringBuilder();
+        for (int id = 1; id <= posts; id++) {
+            text.setLength(0);
+            for (int i = 0; i < WORDS_PER_POST; i++) {
+                text.append(word(random)).append(' ');
+            }
+            index.add(id, text.toString());
+        }
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = word(random) + " " + word(random);
+        }
+    }
+
+    @Benchmark
+    public long[] search() {
+        return index.search(queries[next++ & (queries.length - 1)], Long.MAX_VALUE, 20);
+    }
+
+    private static String word(Random random) {
+        double skewed = Math.pow(random.nextDouble(), 3);
+        return "w" + (int) (skewed * VOCABULARY);
+    }
+}
@@ -0,0 +1,50 @@
+package com.hsbc.challenge.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.challenge.model.PostResponse;
+import com.hsbc.challenge.model.PostView;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of a page of posts with an object mapper configured like the one used by Spring MVC.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"20", "100"})
+    public int pageSize;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private PostResponse postResponse;
+
+    @Setup(Level.Trial)
+    public void createPage() {
+        List<PostView> posts = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            PostView post = new PostView();
+            post.setId(i);
+            post.setAuthorId(i % 7);
+            post.setText("Lorem ipsum dolor sit amet, consectetur adipiscing elit " + i);
+            post.setCreationDateTime(new Date(1540000000000L + i * 1000L));
+            posts.add(post);
+        }
+        postResponse = new PostResponse(posts, String.valueOf(pageSize));
+    }
+
+    @Benchmark
+    public byte[] serializePostResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(postResponse);
+    }
+}
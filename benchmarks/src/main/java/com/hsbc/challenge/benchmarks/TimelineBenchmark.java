@@ -0,0 +1,31 @@
+package com.hsbc.challenge.benchmarks;
+
+import com.hsbc.challenge.model.PostResponse;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.util.PostCursor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First timeline page served from the materialized timeline (endpoint) and assembled by the k-way merge (pull).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimelineBenchmark {
+
+    @Benchmark
+    public ResponseEntity<PostResponse> materializedTimeline(ApplicationState state) {
+        return ApplicationState.await(state.userController.findUserFoloweePosts(state.readerId, null, 20, null));
+    }
+
+    @Benchmark
+    public List<PostView> assembledTimeline(ApplicationState state) {
+        return state.timelineAssembler.assemble(state.authorIds, PostCursor.parse(null), 20);
+    }
+}
@@ -0,0 +1,70 @@
+package com.hsbc.challenge.model;
+
+import javax.persistence.*;
+
+@Entity
+@Table(name = "follows",
+        uniqueConstraints = @UniqueConstraint(name = "follows_follower_followee_uk", columnNames = {"follower_id", "followee_id"}),
+        indexes = @Index(name = "follows_followee_idx", columnList = "followee_id"))
+public class Follow {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "follows_seq")
+    @SequenceGenerator(name = "follows_seq", sequenceName = "follows_seq", allocationSize = 50)
+    private long id;
+
+    @Column(name = "follower_id", nullable = false)
+    private long followerId;
+
+    @Column(name = "followee_id", nullable = false)
+    private long followeeId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "follower_id", insertable = false, updatable = false)
+    private User follower;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "followee_id", insertable = false, updatable = false)
+    private User followee;
+
+    public Follow() {
+    }
+
+    public Follow(long followerId, long followeeId) {
+        this.followerId = followerId;
+        this.followeeId = followeeId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getFollowerId() {
+        return followerId;
+    }
+
+    public void setFollowerId(long followerId) {
+        this.followerId = followerId;
+    }
+
+    public long getFolloweeId() {
+        return followeeId;
+    }
+
+    public void setFolloweeId(long followeeId) {
+        this.followeeId = followeeId;
+    }
+
+    @Override
+    public String toString() {
+        return "Follow{" +
+                "id=" + id +
+                ", followerId=" + followerId +
+                ", followeeId=" + followeeId +
+                '}';
+    }
+}
@@ -0,0 +1,42 @@
+package com.hsbc.challenge.model;
+
+import java.util.List;
+
+public class FollowerResponse {
+
+    private List<UserSummary> followers;
+
+    private int followerCount;
+
+    private String nextCursor;
+
+    public FollowerResponse(List<UserSummary> followers, int followerCount, String nextCursor) {
+        this.followers = followers;
+        this.followerCount = followerCount;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<UserSummary> getFollowers() {
+        return followers;
+    }
+
+    public void setFollowers(List<UserSummary> followers) {
+        this.followers = followers;
+    }
+
+    public int getFollowerCount() {
+        return followerCount;
+    }
+
+    public void setFollowerCount(int followerCount) {
+        this.followerCount = followerCount;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -1,22 +1,37 @@
 package com.hsbc.challenge.model;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import javax.persistence.*;
 import java.util.Date;
 
 @Entity
+@Table(indexes = @Index(name = "post_author_id_idx", columnList = "author_id, id DESC"))
 public class Post {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "post_id")
+    @GenericGenerator(name = "post_id", strategy = "com.hsbc.challenge.model.PostIdGenerator")
     private long id;
 
+    @Column(name = "author_id", nullable = false)
+    private long authorId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "author_id", insertable = false, updatable = false)
+    private User author;
+
     @Column(nullable = false)
     private String text;
 
-    @Column(nullable = false, columnDefinition="TIMESTAMP DEFAULT CURRENT_TIMESTAMP", insertable = false, updatable = false)
+    @Column(name = "creation_date_time", nullable = false, columnDefinition="TIMESTAMP DEFAULT CURRENT_TIMESTAMP", updatable = false)
     @Temporal(TemporalType.TIMESTAMP)
     private Date creationDateTime;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     public Post() {
     }
 
@@ -24,6 +39,11 @@ public class Post {
         this.text = postRequest.getText();
     }
 
+    public Post(long authorId, PostRequest postRequest) {
+        this.authorId = authorId;
+        this.text = postRequest.getText();
+    }
+
     public long getId() {
         return id;
     }
@@ -32,6 +52,14 @@ public class Post {
         this.id = id;
     }
 
+    public long getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(long authorId) {
+        this.authorId = authorId;
+    }
+
     public String getText() {
         return text;
     }
@@ -48,12 +76,22 @@ public class Post {
         this.creationDateTime = creationDateTime;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Post{" +
                 "id=" + id +
+                ", authorId=" + authorId +
                 ", text='" + text + '\'' +
                 ", creationDateTime=" + creationDateTime +
+                ", version=" + version +
                 '}';
     }
 
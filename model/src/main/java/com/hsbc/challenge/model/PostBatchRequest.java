@@ -0,0 +1,38 @@
+package com.hsbc.challenge.model;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+public class PostBatchRequest {
+
+    public static final int MAX_POSTS = 1000;
+
+    @Valid
+    @NotEmpty
+    @Size(max = MAX_POSTS)
+    private List<PostRequest> posts;
+
+    public PostBatchRequest() {
+    }
+
+    public PostBatchRequest(List<PostRequest> posts) {
+        this.posts = posts;
+    }
+
+    public List<PostRequest> getPosts() {
+        return posts;
+    }
+
+    public void setPosts(List<PostRequest> posts) {
+        this.posts = posts;
+    }
+
+    @Override
+    public String toString() {
+        return "PostBatchRequest{" +
+                "posts=" + (posts == null ? null : posts.size()) +
+                '}';
+    }
+}
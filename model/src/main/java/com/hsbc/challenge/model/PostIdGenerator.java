@@ -0,0 +1,80 @@
+package com.hsbc.challenge.model;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Properties;
+
+/**
+ * K-sortable 64-bit post ids generated in-process: 41 bits of milliseconds since {@link #EPOCH}, 10 bits of node
+ * id and a 12 bit sequence within the millisecond. Ids grow with time, so ordering posts by id is the reverse
+ * chronological order, and the creation time of a post is read from its id. The node is configured with the
+ * {@value #NODE_SETTING} Hibernate property and must be unique per running instance.
+ */
+public class PostIdGenerator implements IdentifierGenerator, Configurable {
+
+    public static final String NODE_SETTING = "challenge.post-id.node";
+    public static final long EPOCH = 1514764800000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private long node;
+    private long lastTimestamp;
+    private long sequence;
+
+    public PostIdGenerator() {
+    }
+
+    public PostIdGenerator(long node) {
+        setNode(node);
+    }
+
+    public static long timestamp(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        ConfigurationService configuration = serviceRegistry.getService(ConfigurationService.class);
+        setNode(configuration.getSetting(NODE_SETTING, value -> Long.parseLong(value.toString().trim()), 0L));
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        long id = nextId();
+        if (object instanceof Post) {
+            ((Post) object).setCreationDateTime(new Date(timestamp(id)));
+        }
+        return id;
+    }
+
+    public synchronized long nextId() {
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                timestamp++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+
+    private void setNode(long node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Post id node must be between 0 and " + MAX_NODE + ": " + node);
+        }
+        this.node = node;
+    }
+}
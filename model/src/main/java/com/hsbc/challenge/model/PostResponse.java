@@ -5,21 +5,36 @@ import java.util.List;
 
 public class PostResponse {
 
-    private List<Post> posts;
+    private List<PostView> posts;
+
+    private String nextCursor;
 
     public PostResponse(Post post) {
-        this.posts = Collections.singletonList(post);
+        this.posts = Collections.singletonList(PostView.of(post));
+    }
+
+    public PostResponse(List<PostView> posts) {
+        this.posts = posts;
     }
 
-    public PostResponse(List<Post> posts) {
+    public PostResponse(List<PostView> posts, String nextCursor) {
         this.posts = posts;
+        this.nextCursor = nextCursor;
     }
 
-    public List<Post> getPosts() {
+    public List<PostView> getPosts() {
         return posts;
     }
 
-    public void setPosts(List<Post> posts) {
+    public void setPosts(List<PostView> posts) {
         this.posts = posts;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
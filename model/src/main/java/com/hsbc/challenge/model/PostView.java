@@ -0,0 +1,74 @@
+package com.hsbc.challenge.model;
+
+import java.util.Date;
+
+/**
+ * Read-only view of a post with just the columns a response renders, selected by JPQL constructor expressions
+ * instead of loading managed {@link Post} entities.
+ */
+public class PostView {
+
+    private long id;
+
+    private long authorId;
+
+    private String text;
+
+    private Date creationDateTime;
+
+    public PostView() {
+    }
+
+    public PostView(long id, long authorId, String text, Date creationDateTime) {
+        this.id = id;
+        this.authorId = authorId;
+        this.text = text;
+        this.creationDateTime = creationDateTime;
+    }
+
+    public static PostView of(Post post) {
+        return new PostView(post.getId(), post.getAuthorId(), post.getText(), post.getCreationDateTime());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(long authorId) {
+        this.authorId = authorId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public Date getCreationDateTime() {
+        return creationDateTime;
+    }
+
+    public void setCreationDateTime(Date creationDateTime) {
+        this.creationDateTime = creationDateTime;
+    }
+
+    @Override
+    public String toString() {
+        return "PostView{" +
+                "id=" + id +
+                ", authorId=" + authorId +
+                ", text='" + text + '\'' +
+                ", creationDateTime=" + creationDateTime +
+                '}';
+    }
+}
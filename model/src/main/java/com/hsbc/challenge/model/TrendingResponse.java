@@ -0,0 +1,31 @@
+package com.hsbc.challenge.model;
+
+import java.util.List;
+
+public class TrendingResponse {
+
+    private List<TrendingTag> tags;
+
+    private long windowSeconds;
+
+    public TrendingResponse(List<TrendingTag> tags, long windowSeconds) {
+        this.tags = tags;
+        this.windowSeconds = windowSeconds;
+    }
+
+    public List<TrendingTag> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<TrendingTag> tags) {
+        this.tags = tags;
+    }
+
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public void setWindowSeconds(long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+}
@@ -0,0 +1,43 @@
+package com.hsbc.challenge.model;
+
+/**
+ * Hashtag with the estimated number of posts using it within the trending window.
+ */
+public class TrendingTag {
+
+    private String tag;
+
+    private long count;
+
+    public TrendingTag() {
+    }
+
+    public TrendingTag(String tag, long count) {
+        this.tag = tag;
+        this.count = count;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    @Override
+    public String toString() {
+        return "TrendingTag{" +
+                "tag='" + tag + '\'' +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -1,24 +1,17 @@
 package com.hsbc.challenge.model;
 
 import javax.persistence.*;
-import java.util.List;
-import java.util.Set;
 
 @Entity
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private long id;
 
     private String username;
 
-    @OneToMany(orphanRemoval = true, cascade = CascadeType.ALL)
-    private List<Post> posts;
-
-    @OneToMany(orphanRemoval = false, cascade = CascadeType.PERSIST)
-    private Set<User> followees;
-
     public User() {
     }
 
@@ -42,29 +35,11 @@ public class User {
         this.username = username;
     }
 
-    public List<Post> getPosts() {
-        return posts;
-    }
-
-    public void setPosts(List<Post> posts) {
-        this.posts = posts;
-    }
-
-    public Set<User> getFollowees() {
-        return followees;
-    }
-
-    public void setFollowees(Set<User> followees) {
-        this.followees = followees;
-    }
-
     @Override
     public String toString() {
         return "User{" +
                 "id=" + id +
                 ", username='" + username + '\'' +
-                ", posts=" + posts +
-                ", followees=" + followees +
                 '}';
     }
 }
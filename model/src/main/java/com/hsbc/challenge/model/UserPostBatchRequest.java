@@ -0,0 +1,36 @@
+package com.hsbc.challenge.model;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+public class UserPostBatchRequest {
+
+    @Valid
+    @NotEmpty
+    @Size(max = PostBatchRequest.MAX_POSTS)
+    private List<UserPostRequest> posts;
+
+    public UserPostBatchRequest() {
+    }
+
+    public UserPostBatchRequest(List<UserPostRequest> posts) {
+        this.posts = posts;
+    }
+
+    public List<UserPostRequest> getPosts() {
+        return posts;
+    }
+
+    public void setPosts(List<UserPostRequest> posts) {
+        this.posts = posts;
+    }
+
+    @Override
+    public String toString() {
+        return "UserPostBatchRequest{" +
+                "posts=" + (posts == null ? null : posts.size()) +
+                '}';
+    }
+}
@@ -0,0 +1,32 @@
+package com.hsbc.challenge.model;
+
+import javax.validation.constraints.Size;
+
+public class UserPostRequest extends PostRequest {
+
+    private long authorId;
+
+    public UserPostRequest() {
+    }
+
+    public UserPostRequest(long authorId, @Size(min = 1, max = 140) String text) {
+        super(text);
+        this.authorId = authorId;
+    }
+
+    public long getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(long authorId) {
+        this.authorId = authorId;
+    }
+
+    @Override
+    public String toString() {
+        return "UserPostRequest{" +
+                "authorId=" + authorId +
+                ", text='" + getText() + '\'' +
+                '}';
+    }
+}
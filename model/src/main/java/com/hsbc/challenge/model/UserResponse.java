@@ -5,21 +5,36 @@ import java.util.List;
 
 public class UserResponse {
 
-    private List<User> users;
+    private List<UserSummary> users;
 
-    public UserResponse(User user) {
+    private String nextCursor;
+
+    public UserResponse(UserSummary user) {
         this.users = Collections.singletonList(user);
     }
 
-    public UserResponse(List<User> users) {
+    public UserResponse(List<UserSummary> users) {
+        this.users = users;
+    }
+
+    public UserResponse(List<UserSummary> users, String nextCursor) {
         this.users = users;
+        this.nextCursor = nextCursor;
     }
 
-    public List<User> getUsers() {
+    public List<UserSummary> getUsers() {
         return users;
     }
 
-    public void setUsers(List<User> users) {
+    public void setUsers(List<UserSummary> users) {
         this.users = users;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
@@ -0,0 +1,72 @@
+package com.hsbc.challenge.model;
+
+/**
+ * Read-only summary of a user with follower and followee counts, selected by JPQL constructor expressions instead
+ * of loading managed {@link User} entities.
+ */
+public class UserSummary {
+
+    private long id;
+
+    private String username;
+
+    private long followerCount;
+
+    private long followeeCount;
+
+    public UserSummary() {
+    }
+
+    public UserSummary(long id, String username, long followerCount, long followeeCount) {
+        this.id = id;
+        this.username = username;
+        this.followerCount = followerCount;
+        this.followeeCount = followeeCount;
+    }
+
+    public static UserSummary of(User user, long followerCount, long followeeCount) {
+        return new UserSummary(user.getId(), user.getUsername(), followerCount, followeeCount);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public long getFollowerCount() {
+        return followerCount;
+    }
+
+    public void setFollowerCount(long followerCount) {
+        this.followerCount = followerCount;
+    }
+
+    public long getFolloweeCount() {
+        return followeeCount;
+    }
+
+    public void setFolloweeCount(long followeeCount) {
+        this.followeeCount = followeeCount;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSummary{" +
+                "id=" + id +
+                ", username='" + username + '\'' +
+                ", followerCount=" + followerCount +
+                ", followeeCount=" + followeeCount +
+                '}';
+    }
+}
@@ -4,12 +4,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.PropertySource;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 @SpringBootApplication
 @EnableJpaRepositories("com.hsbc.challenge.repository")
 @EntityScan("com.hsbc.challenge.model")
 @ComponentScan("com.hsbc.challenge")
+@PropertySource("classpath:app.properties")
 public class ChallengeApplication {
 
     public static void main(String[] args) {
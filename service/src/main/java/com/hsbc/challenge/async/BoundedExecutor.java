@@ -0,0 +1,102 @@
+package com.hsbc.challenge.async;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Fixed pool of daemon threads with a bounded queue, answering requests through a {@link DeferredResult}. When the
+ * queue is full a request is rejected with 503 instead of waiting, and a request which waited in the queue longer
+ * than allowed, or whose result expired meanwhile, is answered with 503 without running. A request which started
+ * always runs to the end.
+ */
+class BoundedExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(BoundedExecutor.class.getName());
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    BoundedExecutor(String name, int threads, int queueCapacity, IntFunction<String> threadNames) {
+        this.name = name;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, threadNames.apply(count.incrementAndGet()));
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    <T> DeferredResult<ResponseEntity<T>> submit(DeferredResult<ResponseEntity<T>> result, long maxWaitMillis, Supplier<ResponseEntity<T>> task) {
+        long queued = System.nanoTime();
+        result.onTimeout(timedOut::increment);
+        try {
+            submitted.increment();
+            executor.execute(() -> {
+                if (result.isSetOrExpired()) {
+                    return;
+                }
+                if (System.nanoTime() - queued > TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)) {
+                    timedOut.increment();
+                    result.setResult(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+                    return;
+                }
+                ResponseEntity<T> response;
+                try {
+                    response = task.get();
+                } catch (RuntimeException e) {
+                    completed.increment();
+                    result.setErrorResult(e);
+                    return;
+                }
+                completed.increment();
+                result.setResult(response);
+            });
+        } catch (RejectedExecutionException e) {
+            submitted.decrement();
+            rejected.increment();
+            LOGGER.warning(() -> name + " is saturated, rejecting request");
+            result.setResult(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        return result;
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    int queued() {
+        return executor.getQueue().size();
+    }
+
+    Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("threads", (long) executor.getPoolSize());
+        stats.put("active", (long) executor.getActiveCount());
+        stats.put("queued", (long) queued());
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("timedOut", timedOut.sum());
+        return stats;
+    }
+}
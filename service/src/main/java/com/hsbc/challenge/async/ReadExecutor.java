@@ -0,0 +1,66 @@
+package com.hsbc.challenge.async;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool running read requests off the servlet threads. When the queue is full a request is rejected with
+ * 503 instead of waiting, and a request which is not answered within the timeout gets 503 and is skipped if it
+ * has not started yet; reads have no side effects, so they may also time out while running.
+ */
+@Component
+public class ReadExecutor {
+
+    @Value("${executor.read.threads:16}")
+    private int threads;
+
+    @Value("${executor.read.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${executor.read.timeout-ms:5000}")
+    private long timeoutMillis;
+
+    private BoundedExecutor executor;
+
+    public ReadExecutor() {
+    }
+
+    public ReadExecutor(int threads, int queueCapacity, long timeoutMillis) {
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.timeoutMillis = timeoutMillis;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        executor = new BoundedExecutor("Read executor", threads, queueCapacity, count -> "read-" + count);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public <T> DeferredResult<ResponseEntity<T>> submit(Supplier<ResponseEntity<T>> task) {
+        return executor.submit(new DeferredResult<>(timeoutMillis, new ResponseEntity<T>(HttpStatus.SERVICE_UNAVAILABLE)), timeoutMillis, task);
+    }
+
+    public static <T> DeferredResult<ResponseEntity<T>> completed(ResponseEntity<T> response) {
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+
+    public Map<String, Long> stats() {
+        return executor.stats();
+    }
+}
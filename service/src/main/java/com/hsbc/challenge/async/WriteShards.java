@@ -0,0 +1,209 @@
+package com.hsbc.challenge.async;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+/**
+ * Single-writer executors for mutations, one per shard, with users assigned to shards by id. All writes of a user run
+ * in order on one thread, so per-user check-then-act sequences such as following need no locks, while writes of
+ * different users run in parallel on different shards. A full shard queue rejects the write with 503, and so does a
+ * write which waited in the queue longer than the timeout; such writes never run. A write which started is always
+ * answered with its own outcome, however long it takes, so 503 always means the write was not applied.
+ */
+@Component
+public class WriteShards {
+
+    private static final long NO_TIMEOUT = -1;
+
+    @Value("${executor.write.shards:0}")
+    private int shards;
+
+    @Value("${executor.write.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${executor.write.timeout-ms:5000}")
+    private long timeoutMillis;
+
+    private BoundedExecutor[] executors;
+
+    private final Object gangLock = new Object();
+
+    public WriteShards() {
+    }
+
+    public WriteShards(int shards, int queueCapacity, long timeoutMillis) {
+        this.shards = shards;
+        this.queueCapacity = queueCapacity;
+        this.timeoutMillis = timeoutMillis;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        if (shards <= 0) {
+            shards = Runtime.getRuntime().availableProcessors();
+        }
+        executors = new BoundedExecutor[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            String threadName = "write-" + shard;
+            executors[shard] = new BoundedExecutor("Write shard " + shard, 1, queueCapacity, count -> threadName);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (BoundedExecutor executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Shard owning the key, usually a user id. Ids are mixed first so that ids allocated in blocks spread evenly.
+     */
+    public int shardOf(long key) {
+        return Math.floorMod(Long.hashCode(key * 0x9e3779b97f4a7c15L), shards);
+    }
+
+    /**
+     * Runs the write on the shard owning the key, after every write submitted for that shard before it.
+     */
+    public <T> DeferredResult<ResponseEntity<T>> submit(long key, Supplier<ResponseEntity<T>> task) {
+        return executors[shardOf(key)].submit(new DeferredResult<>(NO_TIMEOUT), timeoutMillis, task);
+    }
+
+    /**
+     * Runs the write once on behalf of all the keys, which may belong to several shards. The write is queued on every
+     * shard involved and runs when it reaches the head of all these queues, with the other shards parked meanwhile, so
+     * it is ordered with every key's other writes and can commit in one transaction. Gangs are queued under one lock,
+     * so any two of them are queued in the same order on every shard they share and cannot wait for each other. If
+     * the write is rejected by a shard or waits in one longer than the timeout, it does not run and gets 503.
+     */
+    public <T> DeferredResult<ResponseEntity<T>> submitAll(long[] keys, Supplier<ResponseEntity<T>> task) {
+        int[] involved = LongStream.of(keys).mapToInt(this::shardOf).distinct().sorted().toArray();
+        if (involved.length == 1) {
+            return executors[involved[0]].submit(new DeferredResult<>(NO_TIMEOUT), timeoutMillis, task);
+        }
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(NO_TIMEOUT);
+        Gang<T> gang = new Gang<>(involved.length, task, result);
+        synchronized (gangLock) {
+            for (int shard : involved) {
+                AtomicBoolean arrived = new AtomicBoolean();
+                DeferredResult<ResponseEntity<T>> member = executors[shard].submit(new DeferredResult<>(), timeoutMillis, () -> {
+                    arrived.set(true);
+                    gang.arrive();
+                    return new ResponseEntity<>(HttpStatus.OK);
+                });
+                member.setResultHandler(value -> {
+                    if (arrived.compareAndSet(false, true)) {
+                        gang.cancel();
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("shards", (long) shards);
+        long maxQueued = 0;
+        for (BoundedExecutor executor : executors) {
+            executor.stats().forEach((name, value) -> {
+                if (!"threads".equals(name)) {
+                    stats.merge(name, value, Long::sum);
+                }
+            });
+            maxQueued = Math.max(maxQueued, executor.queued());
+        }
+        stats.put("maxShardQueued", maxQueued);
+        return stats;
+    }
+
+    /**
+     * A write queued on several shards. Each shard thread reaching it parks until every shard arrived; the last one
+     * runs the write. A member which was rejected or timed out in its queue cancels the write instead of arriving.
+     */
+    private static class Gang<T> {
+
+        private final Supplier<ResponseEntity<T>> task;
+        private final DeferredResult<ResponseEntity<T>> result;
+        private int absent;
+        private boolean cancelled;
+        private boolean finished;
+
+        private Gang(int members, Supplier<ResponseEntity<T>> task, DeferredResult<ResponseEntity<T>> result) {
+            this.absent = members;
+            this.task = task;
+            this.result = result;
+        }
+
+        private void arrive() {
+            synchronized (this) {
+                if (--absent > 0) {
+                    awaitFinished();
+                    return;
+                }
+            }
+            try {
+                if (cancelled()) {
+                    result.setResult(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+                } else {
+                    result.setResult(task.get());
+                }
+            } catch (RuntimeException e) {
+                result.setErrorResult(e);
+            } finally {
+                finish();
+            }
+        }
+
+        private void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                if (--absent > 0) {
+                    return;
+                }
+            }
+            result.setResult(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+            finish();
+        }
+
+        private synchronized boolean cancelled() {
+            return cancelled;
+        }
+
+        private synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        private void awaitFinished() {
+            boolean interrupted = false;
+            while (!finished) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.hsbc.challenge.cache;
+
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Read-through cache of posts in front of {@link PostRepository}. Loaded posts are stored only if the post was not
+ * put, updated or evicted while loading, so a slow read cannot replace a newer version or bring back a deleted post.
+ */
+@Component
+public class PostCache {
+
+    @Value("${cache.posts.capacity:100000}")
+    private int capacity;
+
+    @Value("${cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    private TinyLfuCache<Long, Post> cache;
+
+    public PostCache() {
+    }
+
+    public PostCache(PostRepository postRepository, int capacity, long ttlSeconds) {
+        this.postRepository = postRepository;
+        this.capacity = capacity;
+        this.ttlSeconds = ttlSeconds;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        cache = new TinyLfuCache<>(capacity, ttlSeconds * 1000);
+    }
+
+    public Optional<Post> findById(long id) {
+        return Optional.ofNullable(cache.get(id, key -> postRepository.findById(key).orElse(null)));
+    }
+
+    public Optional<Post> findByIdAndAuthorId(long id, long authorId) {
+        return findById(id).filter(post -> post.getAuthorId() == authorId);
+    }
+
+    public Map<Long, Post> findAllById(long[] ids) {
+        Map<Long, Post> posts = new HashMap<>();
+        Map<Long, Long> missing = new LinkedHashMap<>();
+        for (long id : ids) {
+            Post post = cache.getIfPresent(id);
+            if (post == null) {
+                missing.put(id, cache.generation(id));
+            } else {
+                posts.put(id, post);
+            }
+        }
+        if (!missing.isEmpty()) {
+            postRepository.findAllById(new ArrayList<>(missing.keySet())).forEach(post -> {
+                Long generation = missing.get(post.getId());
+                if (generation != null) {
+                    cache.putIfUnchanged(post.getId(), post, generation);
+                    posts.put(post.getId(), post);
+                }
+            });
+        }
+        return posts;
+    }
+
+    /**
+     * Views of the posts with the given ids in the order of the ids, skipping posts which no longer exist.
+     */
+    public List<PostView> findViewsInOrder(long[] ids) {
+        Map<Long, Post> posts = findAllById(ids);
+        return LongStream.of(ids).mapToObj(posts::get).filter(Objects::nonNull).map(PostView::of).collect(Collectors.toList());
+    }
+
+    public void put(Post post) {
+        cache.put(post.getId(), post);
+    }
+
+    public void putIfNewer(Post post) {
+        cache.putIf(post.getId(), post, cached -> cached == null || cached.getVersion() < post.getVersion());
+    }
+
+    public void evict(long id) {
+        cache.invalidate(id);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public Map<String, Long> stats() {
+        return cache.stats();
+    }
+}
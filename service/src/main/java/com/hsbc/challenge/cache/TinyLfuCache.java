@@ -0,0 +1,314 @@
+package com.hsbc.challenge.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Size and TTL bounded cache with W-TinyLFU eviction: new entries enter a small LRU window, and an entry leaving
+ * the window is admitted to the segmented LRU main space only if it was accessed more often than the entry it would
+ * evict. Access frequencies are estimated by a count-min sketch which is periodically halved, so old popularity fades.
+ * <p>
+ * Every put or invalidation of a key bumps the generation of its stripe. A loaded value is stored only if the
+ * generation did not change while it was loading, so a slow load can neither overwrite a newer value nor bring back
+ * an invalidated one. A collision on a stripe only skips caching one load.
+ */
+/**
+ * Size and TTL bounded cache with W-TinyLFU eviction: new entries enter a small LRU window, and an entry leaving
+ * the window is admitted to the segmented LRU main space only if it was accessed more often than the entry it would
+ * evict. Access frequencies are estimated by a count-min sketch which is periodically halved, so old popularity fades.
+ * <p>
+ * Large caches are split by key hash into independent segments, each with its own lock, window, main space and
+ * sketch, so lookups of different keys mostly take different locks.
+ * <p>
+ * Every put or invalidation of a key bumps the generation of its stripe. A loaded value is stored only if the
+ * generation did not change while it was loading, so a slow load can neither overwrite a newer value nor bring back
+ * an invalidated one. A collision on a stripe only skips caching one load.
+ */
+public class TinyLfuCache<K, V> {
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final int GENERATION_STRIPES = 1024;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 1024;
+
+    private final List<Segment> segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TinyLfuCache(int capacity, long ttlMillis) {
+        this(capacity, ttlMillis, System::currentTimeMillis);
+    }
+
+    TinyLfuCache(int capacity, long ttlMillis, LongSupplier clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, capacity / MIN_SEGMENT_CAPACITY)));
+        segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(new Segment(capacity / count + (i < capacity % count ? 1 : 0), ttlMillis, clock));
+        }
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        Segment segment = segmentFor(key);
+        long generation;
+        synchronized (segment) {
+            V value = segment.getIfPresent(key);
+            if (value != null) {
+                return value;
+            }
+            generation = segment.generation(key);
+        }
+        V value = loader.apply(key);
+        if (value != null) {
+            segment.putIfUnchanged(key, value, generation);
+        }
+        return value;
+    }
+
+    /**
+     * Generation of the key's stripe, to be taken before loading a value for {@link #putIfUnchanged}.
+     */
+    public long generation(K key) {
+        return segmentFor(key).generation(key);
+    }
+
+    /**
+     * Stores a loaded value unless the key was put or invalidated since the generation was taken.
+     */
+    public boolean putIfUnchanged(K key, V value, long generation) {
+        return segmentFor(key).putIfUnchanged(key, value, generation);
+    }
+
+    /**
+     * Stores the value if the predicate accepts the cached value it would replace, or null if there is none.
+     */
+    public boolean putIf(K key, V value, Predicate<V> replaces) {
+        return segmentFor(key).putIf(key, value, replaces);
+    }
+
+    public V getIfPresent(K key) {
+        return segmentFor(key).getIfPresent(key);
+    }
+
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    public void invalidate(K key) {
+        segmentFor(key).invalidate(key);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("size", (long) size());
+        stats.put("segments", (long) segments.size());
+        return stats;
+    }
+
+    private Segment segmentFor(K key) {
+        return segments.get(spread(key) & (segments.size() - 1));
+    }
+
+    private static int spread(Object key) {
+        int hash = key.hashCode() * 0x9e3779b9;
+        return hash ^ hash >>> 16;
+    }
+
+    private static int stripe(Object key) {
+        return (spread(key) >>> 8) & (GENERATION_STRIPES - 1);
+    }
+
+    private static <K, V> Map.Entry<K, Node<V>> pollEldest(LinkedHashMap<K, Node<V>> segment) {
+        Iterator<Map.Entry<K, Node<V>>> iterator = segment.entrySet().iterator();
+        Map.Entry<K, Node<V>> eldest = iterator.next();
+        Map.Entry<K, Node<V>> entry = new AbstractMap.SimpleImmutableEntry<>(eldest.getKey(), eldest.getValue());
+        iterator.remove();
+        return entry;
+    }
+
+    /**
+     * One independently locked part of the cache.
+     */
+    private class Segment {
+
+        private final int windowCapacity;
+        private final int mainCapacity;
+        private final int protectedCapacity;
+        private final long ttlMillis;
+        private final LongSupplier clock;
+
+        private final LinkedHashMap<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, Node<V>> protect = new LinkedHashMap<>(16, 0.75f, true);
+        private final FrequencySketch sketch;
+        private final long[] generations = new long[GENERATION_STRIPES];
+
+        private Segment(int capacity, long ttlMillis, LongSupplier clock) {
+            this.windowCapacity = Math.max(1, (int) (capacity * WINDOW_RATIO));
+            this.mainCapacity = capacity - windowCapacity;
+            this.protectedCapacity = (int) (mainCapacity * PROTECTED_RATIO);
+            this.ttlMillis = ttlMillis;
+            this.clock = clock;
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        synchronized long generation(K key) {
+            return generations[stripe(key)];
+        }
+
+        synchronized boolean putIfUnchanged(K key, V value, long generation) {
+            if (generations[stripe(key)] != generation) {
+                return false;
+            }
+            put(key, value);
+            return true;
+        }
+
+        synchronized boolean putIf(K key, V value, Predicate<V> replaces) {
+            Node<V> node = window.get(key);
+            if (node == null) {
+                node = protect.get(key);
+            }
+            if (node == null) {
+                node = probation.get(key);
+            }
+            if (!replaces.test(node == null || node.expiresAt <= clock.getAsLong() ? null : node.value)) {
+                return false;
+            }
+            put(key, value);
+            return true;
+        }
+
+        synchronized V getIfPresent(K key) {
+            sketch.increment(key);
+            Node<V> node = window.get(key);
+            if (node == null) {
+                node = protect.get(key);
+            }
+            if (node == null) {
+                node = probation.remove(key);
+                if (node != null) {
+                    protect.put(key, node);
+                    demoteProtected();
+                }
+            }
+            if (node == null || node.expiresAt <= clock.getAsLong()) {
+                if (node != null) {
+                    remove(key);
+                }
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return node.value;
+        }
+
+        synchronized void put(K key, V value) {
+            generations[stripe(key)]++;
+            Node<V> node = new Node<>(value, clock.getAsLong() + ttlMillis);
+            if (window.containsKey(key)) {
+                window.put(key, node);
+            } else if (protect.containsKey(key)) {
+                protect.put(key, node);
+            } else if (probation.containsKey(key)) {
+                probation.put(key, node);
+            } else {
+                sketch.increment(key);
+                window.put(key, node);
+                if (window.size() > windowCapacity) {
+                    evictFromWindow();
+                }
+            }
+        }
+
+        synchronized void invalidate(K key) {
+            generations[stripe(key)]++;
+            remove(key);
+        }
+
+        synchronized void clear() {
+            for (int i = 0; i < generations.length; i++) {
+                generations[i]++;
+            }
+            window.clear();
+            probation.clear();
+            protect.clear();
+        }
+
+        synchronized int size() {
+            return window.size() + probation.size() + protect.size();
+        }
+
+        private void evictFromWindow() {
+            Map.Entry<K, Node<V>> candidate = pollEldest(window);
+            if (probation.size() + protect.size() < mainCapacity) {
+                probation.put(candidate.getKey(), candidate.getValue());
+                return;
+            }
+            evictions.increment();
+            LinkedHashMap<K, Node<V>> victims = probation.isEmpty() ? protect : probation;
+            if (victims.isEmpty()) {
+                return;
+            }
+            K victim = victims.keySet().iterator().next();
+            if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+                victims.remove(victim);
+                probation.put(candidate.getKey(), candidate.getValue());
+            }
+        }
+
+        private void demoteProtected() {
+            while (protect.size() > protectedCapacity) {
+                Map.Entry<K, Node<V>> eldest = pollEldest(protect);
+                probation.put(eldest.getKey(), eldest.getValue());
+            }
+        }
+
+        private void remove(K key) {
+            if (window.remove(key) == null && protect.remove(key) == null) {
+                probation.remove(key);
+            }
+        }
+    }
+
+    private static class Node<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Node(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
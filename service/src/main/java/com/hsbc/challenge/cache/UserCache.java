@@ -0,0 +1,68 @@
+package com.hsbc.challenge.cache;
+
+import com.hsbc.challenge.model.User;
+import com.hsbc.challenge.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through cache of users in front of {@link UserRepository}.
+ */
+@Component
+public class UserCache {
+
+    @Value("${cache.users.capacity:10000}")
+    private int capacity;
+
+    @Value("${cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private TinyLfuCache<Long, User> cache;
+
+    public UserCache() {
+    }
+
+    public UserCache(UserRepository userRepository, int capacity, long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.capacity = capacity;
+        this.ttlSeconds = ttlSeconds;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        cache = new TinyLfuCache<>(capacity, ttlSeconds * 1000);
+    }
+
+    public Optional<User> findById(long id) {
+        return Optional.ofNullable(cache.get(id, key -> userRepository.findById(key).orElse(null)));
+    }
+
+    public boolean existsById(long id) {
+        return findById(id).isPresent();
+    }
+
+    public void put(User user) {
+        cache.put(user.getId(), user);
+    }
+
+    public void evict(long id) {
+        cache.invalidate(id);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public Map<String, Long> stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,25 @@
+package com.hsbc.challenge.controller;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import java.util.logging.Logger;
+
+/**
+ * Answers a write which lost an optimistic lock against a concurrent write of the same entity with 409, so that the
+ * client can re-read and retry instead of getting a 500.
+ */
+@ControllerAdvice
+public class ConflictHandler {
+
+    private static final Logger LOGGER = Logger.getLogger(ConflictHandler.class.getName());
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Void> conflict(OptimisticLockingFailureException e) {
+        LOGGER.warning(() -> "Write conflicted with a concurrent write: " + e.getMessage());
+        return new ResponseEntity<>(HttpStatus.CONFLICT);
+    }
+}
@@ -0,0 +1,190 @@
+package com.hsbc.challenge.controller;
+
+import com.hsbc.challenge.async.ReadExecutor;
+import com.hsbc.challenge.async.WriteShards;
+import com.hsbc.challenge.cache.PostCache;
+import com.hsbc.challenge.cache.UserCache;
+import com.hsbc.challenge.log.AccessLog;
+import com.hsbc.challenge.metrics.Histogram;
+import com.hsbc.challenge.metrics.MetricsRegistry;
+import com.hsbc.challenge.search.PostIndex;
+import com.hsbc.challenge.search.TagIndex;
+import com.hsbc.challenge.storage.LogPostRepository;
+import com.hsbc.challenge.storage.MemoryStore;
+import com.hsbc.challenge.trending.TrendingTags;
+import com.hsbc.challenge.timeline.TimelineMetrics;
+import com.hsbc.challenge.timeline.TimelineStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping(value = "/metrics", produces = "application/json")
+public class MetricsController {
+
+    @Autowired
+    private TimelineMetrics timelineMetrics;
+
+    @Autowired
+    private TimelineStore timelineStore;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private PostCache postCache;
+
+    @Autowired
+    private ReadExecutor readExecutor;
+
+    @Autowired
+    private WriteShards writeShards;
+
+    @Autowired
+    private AccessLog accessLog;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private PostIndex postIndex;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Autowired
+    private TrendingTags trendingTags;
+
+    @Autowired(required = false)
+    private LogPostRepository logPostRepository;
+
+    @Autowired(required = false)
+    private MemoryStore memoryStore;
+
+    public MetricsController() {
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> findMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests", metricsRegistry.requests());
+        metrics.put("repositories", metricsRegistry.repositories());
+        metrics.put("timeline", timelineMetrics.snapshot());
+        metrics.put("timelineSizes", distribution(timelineStore.sizeDistribution()));
+        metrics.put("cache", cacheMetrics());
+        metrics.put("executor", readExecutor.stats());
+        metrics.put("writeShards", writeShards.stats());
+        metrics.put("accessLog", accessLog.stats());
+        metrics.put("search", postIndex.stats());
+        metrics.put("tags", tagMetrics());
+        Map<String, Long> storage = storageMetrics();
+        if (storage != null) {
+            metrics.put("storage", storage);
+        }
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+
+    @GetMapping("/requests")
+    public ResponseEntity<Map<String, Map<String, Number>>> findRequestMetrics() {
+        return new ResponseEntity<>(metricsRegistry.requests(), HttpStatus.OK);
+    }
+
+    @GetMapping("/repositories")
+    public ResponseEntity<Map<String, Map<String, Number>>> findRepositoryMetrics() {
+        return new ResponseEntity<>(metricsRegistry.repositories(), HttpStatus.OK);
+    }
+
+    @GetMapping("/timeline")
+    public ResponseEntity<Map<String, Long>> findTimelineMetrics() {
+        return new ResponseEntity<>(timelineMetrics.snapshot(), HttpStatus.OK);
+    }
+
+    @GetMapping("/timeline-sizes")
+    public ResponseEntity<Map<String, Number>> findTimelineSizeMetrics() {
+        return new ResponseEntity<>(distribution(timelineStore.sizeDistribution()), HttpStatus.OK);
+    }
+
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Map<String, Number>>> findCacheMetrics() {
+        return new ResponseEntity<>(cacheMetrics(), HttpStatus.OK);
+    }
+
+    @GetMapping("/executor")
+    public ResponseEntity<Map<String, Long>> findExecutorMetrics() {
+        return new ResponseEntity<>(readExecutor.stats(), HttpStatus.OK);
+    }
+
+    @GetMapping("/write-shards")
+    public ResponseEntity<Map<String, Long>> findWriteShardMetrics() {
+        return new ResponseEntity<>(writeShards.stats(), HttpStatus.OK);
+    }
+
+    @GetMapping("/access-log")
+    public ResponseEntity<Map<String, Long>> findAccessLogMetrics() {
+        return new ResponseEntity<>(accessLog.stats(), HttpStatus.OK);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Long>> findSearchMetrics() {
+        return new ResponseEntity<>(postIndex.stats(), HttpStatus.OK);
+    }
+
+    @GetMapping("/tags")
+    public ResponseEntity<Map<String, Map<String, Long>>> findTagMetrics() {
+        return new ResponseEntity<>(tagMetrics(), HttpStatus.OK);
+    }
+
+    @GetMapping("/storage")
+    public ResponseEntity<Map<String, Long>> findStorageMetrics() {
+        Map<String, Long> storage = storageMetrics();
+        if (storage == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(storage, HttpStatus.OK);
+    }
+
+    private Map<String, Long> storageMetrics() {
+        if (logPostRepository != null) {
+            return logPostRepository.stats();
+        }
+        return memoryStore == null ? null : memoryStore.stats();
+    }
+
+    private Map<String, Map<String, Long>> tagMetrics() {
+        Map<String, Map<String, Long>> metrics = new LinkedHashMap<>();
+        metrics.put("index", tagIndex.stats());
+        metrics.put("trending", trendingTags.stats());
+        return metrics;
+    }
+
+    private Map<String, Map<String, Number>> cacheMetrics() {
+        Map<String, Map<String, Number>> metrics = new LinkedHashMap<>();
+        metrics.put("users", withHitRatio(userCache.stats()));
+        metrics.put("posts", withHitRatio(postCache.stats()));
+        return metrics;
+    }
+
+    private static Map<String, Number> withHitRatio(Map<String, Long> stats) {
+        Map<String, Number> metrics = new LinkedHashMap<>(stats);
+        long lookups = stats.get("hits") + stats.get("misses");
+        metrics.put("hitRatio", lookups == 0 ? 0.0 : Math.round(stats.get("hits") * 10000.0 / lookups) / 10000.0);
+        return metrics;
+    }
+
+    private static Map<String, Number> distribution(Histogram histogram) {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("count", histogram.count());
+        metrics.put("mean", Math.round(histogram.mean() * 100) / 100.0);
+        metrics.put("p50", histogram.percentile(50));
+        metrics.put("p90", histogram.percentile(90));
+        metrics.put("p99", histogram.percentile(99));
+        metrics.put("max", histogram.max());
+        return metrics;
+    }
+}
@@ -1,18 +1,31 @@
 package com.hsbc.challenge.controller;
 
+import com.hsbc.challenge.async.ReadExecutor;
+import com.hsbc.challenge.async.WriteShards;
+import com.hsbc.challenge.cache.PostCache;
+import com.hsbc.challenge.edit.PostEditor;
+import com.hsbc.challenge.export.NdjsonExporter;
 import com.hsbc.challenge.model.Post;
 import com.hsbc.challenge.model.PostRequest;
 import com.hsbc.challenge.model.PostResponse;
+import com.hsbc.challenge.model.PostView;
 import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.search.PostIndex;
+import com.hsbc.challenge.util.PostCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Logger;
 
@@ -26,44 +39,96 @@ public class PostController {
     @Autowired
     private PostRepository postRepository;
 
+    @Autowired
+    private PostCache postCache;
+
+    @Autowired
+    private NdjsonExporter ndjsonExporter;
+
+    @Autowired
+    private PostEditor postEditor;
+
+    @Autowired
+    private PostIndex postIndex;
+
+    @Autowired
+    private WriteShards writeShards;
+
     public PostController() {
     }
 
     @GetMapping
-    public ResponseEntity<PostResponse> findAllPosts() {
-        LOGGER.info("Got GET request for all posts");
-        Iterable<Post> postIterable = postRepository.findAll();
-        List<Post> posts = new ArrayList<>();
-        postIterable.forEach(posts::add);
+    public ResponseEntity<PostResponse> findAllPosts(@RequestParam(required = false) String before,
+                                                     @RequestParam(defaultValue = PostCursor.DEFAULT_LIMIT) int limit) {
+        PostCursor cursor = PostCursor.parse(before);
+        if (cursor == null || limit < 1) {
+            LOGGER.warning(() -> "Incorrect page request, before: " + before + " limit: " + limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        int pageSize = Math.min(limit, PostCursor.MAX_LIMIT);
+        List<PostView> posts = postRepository.findPostsBefore(cursor.getId(), PageRequest.of(0, pageSize));
 
-        return new ResponseEntity<>(new PostResponse(posts), HttpStatus.OK);
+        return new ResponseEntity<>(new PostResponse(posts, PostCursor.next(posts, pageSize)), HttpStatus.OK);
+    }
+
+    @GetMapping(produces = NdjsonExporter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportPosts() {
+        StreamingResponseBody export = ndjsonExporter.admit(ndjsonExporter::exportPosts);
+        if (export == null) {
+            LOGGER.warning(() -> "Too many exports running, rejecting posts export");
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return ResponseEntity.ok().contentType(MediaType.valueOf(NdjsonExporter.MEDIA_TYPE)).body(export);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<PostResponse> searchPosts(@RequestParam String q,
+                                                    @RequestParam(required = false) String before,
+                                                    @RequestParam(defaultValue = PostCursor.DEFAULT_LIMIT) int limit) {
+        PostCursor cursor = PostCursor.parse(before);
+        if (cursor == null || limit < 1 || q.trim().isEmpty()) {
+            LOGGER.warning(() -> "Incorrect search request, q: " + q + " before: " + before + " limit: " + limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        int pageSize = Math.min(limit, PostCursor.MAX_LIMIT);
+        List<PostView> posts = postIndex.search(q, cursor.getId(), pageSize, postCache::findViewsInOrder);
+        return new ResponseEntity<>(new PostResponse(posts, PostCursor.next(posts, pageSize)), HttpStatus.OK);
+    }
+
+    @PostMapping("/search:rebuild")
+    public ResponseEntity<Map<String, Long>> rebuildSearchIndex() {
+        postIndex.rebuild();
+        return new ResponseEntity<>(postIndex.stats(), HttpStatus.OK);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<PostResponse> findPost(@PathVariable long id) {
-        LOGGER.info("Got GET request for id: " + id);
-        Optional<Post> post = postRepository.findById(id);
+    public ResponseEntity<PostResponse> findPost(@PathVariable long id,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<Post> post = postCache.findById(id);
         if (!post.isPresent()) {
-            LOGGER.warning("Post not found for: " + id);
+            LOGGER.warning(() -> "Post not found for: " + id);
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(new PostResponse(post.get()), HttpStatus.OK);
+        return PostResponses.found(post.get(), ifNoneMatch);
     }
 
+    /**
+     * Edits the post on its author's write shard, ordered with the author's other post writes. The author of a post
+     * never changes, so it is looked up before the write is queued.
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<PostResponse> modifyPost(@RequestBody @Valid PostRequest postRequest, @PathVariable long id, BindingResult bindingResult) {
-        LOGGER.info("Got PUT request for id: " + id + ", postRequest: " + postRequest);
+    public DeferredResult<ResponseEntity<PostResponse>> modifyPost(@RequestBody @Valid PostRequest postRequest, @PathVariable long id, BindingResult bindingResult,
+                                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         if (bindingResult.hasErrors()) {
-            LOGGER.warning("Post has incorrect size! Post: " + postRequest.getText());
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            LOGGER.warning(() -> "Post has incorrect size! Post: " + postRequest.getText());
+            return ReadExecutor.completed(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
         }
-        Optional<Post> post = postRepository.findById(id);
+        Optional<Post> post = postCache.findById(id);
         if (!post.isPresent()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            LOGGER.warning(() -> "Post not found for id: " + id);
+            return ReadExecutor.completed(new ResponseEntity<>(HttpStatus.NOT_FOUND));
         }
-        Post dbPost = post.get();
-        dbPost.setText(postRequest.getText());
-        Post updatedPost = postRepository.save(dbPost);
-        return new ResponseEntity<>(new PostResponse(updatedPost), HttpStatus.OK);
+        long authorId = post.get().getAuthorId();
+        return writeShards.submit(authorId, () -> PostResponses.edited(id, postEditor.updateText(id, authorId, postRequest.getText(), ifMatch)));
     }
 }
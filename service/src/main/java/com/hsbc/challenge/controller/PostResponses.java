@@ -0,0 +1,49 @@
+package com.hsbc.challenge.controller;
+
+import com.hsbc.challenge.edit.PostEditor;
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostResponse;
+import com.hsbc.challenge.util.ETags;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.logging.Logger;
+
+/**
+ * Single post responses carrying the post version as their ETag, shared by the post and user controllers.
+ */
+class PostResponses {
+
+    private static final Logger LOGGER = Logger.getLogger(PostResponses.class.getName());
+
+    private PostResponses() {
+    }
+
+    static ResponseEntity<PostResponse> found(Post post) {
+        return ResponseEntity.ok().eTag(ETags.of(post.getVersion())).body(new PostResponse(post));
+    }
+
+    static ResponseEntity<PostResponse> found(Post post, String ifNoneMatch) {
+        String etag = ETags.of(post.getVersion());
+        if (ETags.notModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(new PostResponse(post));
+    }
+
+    static ResponseEntity<PostResponse> edited(long postId, PostEditor.Result result) {
+        switch (result.getOutcome()) {
+            case UPDATED:
+                return found(result.getPost());
+            case NOT_FOUND:
+                LOGGER.warning(() -> "Post not found for id: " + postId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            case PRECONDITION_FAILED:
+                LOGGER.warning(() -> "Post was modified concurrently, id: " + postId + " current: " + result.getPost().getVersion());
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(ETags.of(result.getPost().getVersion())).build();
+            default:
+                LOGGER.warning(() -> "Post update kept conflicting, id: " + postId);
+                return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+    }
+}
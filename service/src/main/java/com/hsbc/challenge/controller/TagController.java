@@ -0,0 +1,72 @@
+package com.hsbc.challenge.controller;
+
+import com.hsbc.challenge.cache.PostCache;
+import com.hsbc.challenge.model.PostResponse;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.model.TrendingResponse;
+import com.hsbc.challenge.search.TagIndex;
+import com.hsbc.challenge.search.Tags;
+import com.hsbc.challenge.trending.TrendingTags;
+import com.hsbc.challenge.util.PostCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+@RestController
+@RequestMapping(value = "/api", produces = "application/json", consumes = "application/json")
+public class TagController {
+
+    private static final Logger LOGGER = Logger.getLogger(TagController.class.getName());
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Autowired
+    private PostCache postCache;
+
+    @Autowired
+    private TrendingTags trendingTags;
+
+    public TagController() {
+    }
+
+    @GetMapping("/tags/trending")
+    public ResponseEntity<TrendingResponse> findTrendingTags(@RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1) {
+            LOGGER.warning(() -> "Incorrect trending request, limit: " + limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        int size = Math.min(limit, PostCursor.MAX_LIMIT);
+        return new ResponseEntity<>(new TrendingResponse(trendingTags.trending(size), trendingTags.getWindowSeconds()), HttpStatus.OK);
+    }
+
+    @GetMapping("/tags/{tag}/posts")
+    public ResponseEntity<PostResponse> findTagPosts(@PathVariable String tag,
+                                                     @RequestParam(required = false) String before,
+                                                     @RequestParam(defaultValue = PostCursor.DEFAULT_LIMIT) int limit) {
+        return findPosts(Tags.term(Tags.HASHTAG, tag), before, limit);
+    }
+
+    @GetMapping("/mentions/{username}/posts")
+    public ResponseEntity<PostResponse> findMentionPosts(@PathVariable String username,
+                                                         @RequestParam(required = false) String before,
+                                                         @RequestParam(defaultValue = PostCursor.DEFAULT_LIMIT) int limit) {
+        return findPosts(Tags.term(Tags.MENTION, username), before, limit);
+    }
+
+    private ResponseEntity<PostResponse> findPosts(String term, String before, int limit) {
+        PostCursor cursor = PostCursor.parse(before);
+        if (term == null || cursor == null || limit < 1) {
+            LOGGER.warning(() -> "Incorrect tag page request, term: " + term + " before: " + before + " limit: " + limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        int pageSize = Math.min(limit, PostCursor.MAX_LIMIT);
+        List<PostView> posts = tagIndex.find(Collections.singleton(term), cursor.getId(), pageSize, postCache::findViewsInOrder);
+        return new ResponseEntity<>(new PostResponse(posts, PostCursor.next(posts, pageSize)), HttpStatus.OK);
+    }
+}
@@ -1,18 +1,39 @@
 package com.hsbc.challenge.controller;
 
+import com.hsbc.challenge.async.ReadExecutor;
+import com.hsbc.challenge.async.WriteShards;
+import com.hsbc.challenge.cache.PostCache;
+import com.hsbc.challenge.cache.UserCache;
+import com.hsbc.challenge.edit.PostEditor;
+import com.hsbc.challenge.export.NdjsonExporter;
+import com.hsbc.challenge.graph.SocialGraph;
 import com.hsbc.challenge.model.*;
+import com.hsbc.challenge.repository.PostRepository;
 import com.hsbc.challenge.repository.UserRepository;
-import com.hsbc.challenge.util.ReverseChronologicalPostComparator;
+import com.hsbc.challenge.search.PostIndex;
+import com.hsbc.challenge.search.TagIndex;
+import com.hsbc.challenge.timeline.TimelineAssembler;
+import com.hsbc.challenge.timeline.TimelineMetrics;
+import com.hsbc.challenge.timeline.TimelineStore;
+import com.hsbc.challenge.util.ETags;
+import com.hsbc.challenge.util.PostCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 @RestController
 @RequestMapping(value = "/api/users", produces = "application/json", consumes = "application/json")
@@ -23,179 +44,361 @@ public class UserController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private PostCache postCache;
+
+    @Autowired
+    private TimelineStore timelineStore;
+
+    @Autowired
+    private TimelineAssembler timelineAssembler;
+
+    @Autowired
+    private SocialGraph socialGraph;
+
+    @Autowired
+    private TimelineMetrics timelineMetrics;
+
+    @Autowired
+    private NdjsonExporter ndjsonExporter;
+
+    @Autowired
+    private ReadExecutor readExecutor;
+
+    @Autowired
+    private WriteShards writeShards;
+
+    @Autowired
+    private PostEditor postEditor;
+
+    @Autowired
+    private PostIndex postIndex;
+
+    @Autowired
+    private TagIndex tagIndex;
+
     public UserController() {
     }
 
     @GetMapping
-    public ResponseEntity<UserResponse> findAllUsers() {
-        LOGGER.info("Got GET request for all users");
-        Iterable<User> userIterable = userRepository.findAll();
-        List<User> users = new ArrayList<>();
-        userIterable.forEach(users::add);
-        return new ResponseEntity<>(new UserResponse(users), HttpStatus.OK);
+    public ResponseEntity<UserResponse> findAllUsers(@RequestParam(defaultValue = "0") long after,
+                                                     @RequestParam(defaultValue = PostCursor.DEFAULT_LIMIT) int limit) {
+        if (limit < 1) {
+            LOGGER.warning(() -> "Incorrect page request, after: " + after + " limit: " + limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        int pageSize = Math.min(limit, PostCursor.MAX_LIMIT);
+        List<UserSummary> users = userRepository.findSummariesAfter(after, PageRequest.of(0, pageSize));
+        String nextCursor = users.size() < pageSize ? null : String.valueOf(users.get(users.size() - 1).getId());
+        return new ResponseEntity<>(new UserResponse(users, nextCursor), HttpStatus.OK);
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<UserResponse> findUser(@PathVariable long id) {
-        LOGGER.info("Got GET request for id: " + id);
-        Optional<User> user = userRepository.findById(id);
-        if (!user.isPresent()) {
-            LOGGER.warning("User not found for: " + id);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    @GetMapping(produces = NdjsonExporter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody export = ndjsonExporter.admit(ndjsonExporter::exportUsers);
+        if (export == null) {
+            LOGGER.warning(() -> "Too many exports running, rejecting users export");
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
         }
-        return new ResponseEntity<>(new UserResponse(user.get()), HttpStatus.OK);
+        return ResponseEntity.ok().contentType(MediaType.valueOf(NdjsonExporter.MEDIA_TYPE)).body(export);
+    }
+
+    @GetMapping("/{id}")
+    public DeferredResult<ResponseEntity<UserResponse>> findUser(@PathVariable long id) {
+        return readExecutor.submit(() -> {
+            Optional<User> user = userCache.findById(id);
+            if (!user.isPresent()) {
+                LOGGER.warning(() -> "User not found for: " + id);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            UserSummary summary = UserSummary.of(user.get(), socialGraph.followerCount(id), socialGraph.followees(id).length);
+            return new ResponseEntity<>(new UserResponse(summary), HttpStatus.OK);
+        });
     }
 
     @PostMapping
-    public ResponseEntity<UserResponse> createUser(@RequestBody UserRequest userRequest) {
-        LOGGER.info("Got POST request to create new user, userRequest: " + userRequest);
-        User user = userRepository.save(new User(userRequest));
-        if (user == null) {
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-        return new ResponseEntity<>(new UserResponse(user), HttpStatus.CREATED);
+    public DeferredResult<ResponseEntity<UserResponse>> createUser(@RequestBody UserRequest userRequest) {
+        return writeShards.submit(Objects.hashCode(userRequest.getUsername()), () -> {
+            User user = userRepository.save(new User(userRequest));
+            if (user == null) {
+                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            userCache.put(user);
+            return new ResponseEntity<>(new UserResponse(UserSummary.of(user, 0, 0)), HttpStatus.CREATED);
+        });
     }
 
     @PostMapping("/{userId}/follow/{followeeId}")
-    public ResponseEntity<User> followUser(@PathVariable long userId, @PathVariable long followeeId) {
-        LOGGER.info("Got POST request - user: " + userId + " follow: " + followeeId);
-        Optional<User> user = userRepository.findById(userId);
-        if (!user.isPresent()) {
-            LOGGER.warning("User not found for id: " + userId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        Set<Long> followeeIds = user.get().getFollowees().stream().map(User::getId).collect(Collectors.toSet());
-        if (followeeIds.contains(followeeId)) {
-            LOGGER.warning("User already follow id: " + followeeId);
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        }
-        Optional<User> followee = userRepository.findById(followeeId);
-        if (!followee.isPresent()) {
-            LOGGER.warning("Followee not found for id: " + followeeId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        user.get().getFollowees().add(followee.get());
-        userRepository.save(user.get());
-        return new ResponseEntity<>(HttpStatus.OK);
+    public DeferredResult<ResponseEntity<User>> followUser(@PathVariable long userId, @PathVariable long followeeId) {
+        return writeShards.submit(userId, () -> {
+            if (!userCache.existsById(userId)) {
+                LOGGER.warning(() -> "User not found for id: " + userId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            if (socialGraph.isFollowing(userId, followeeId)) {
+                LOGGER.warning(() -> "User already follow id: " + followeeId);
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            if (!userCache.existsById(followeeId)) {
+                LOGGER.warning(() -> "Followee not found for id: " + followeeId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            if (!socialGraph.follow(userId, followeeId)) {
+                LOGGER.warning(() -> "User already follow id: " + followeeId);
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            timelineStore.follow(userId, followeeId);
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
     }
 
     @DeleteMapping("/{userId}/follow/{followeeId}")
-    public ResponseEntity<User> unfollowUser(@PathVariable long userId, @PathVariable long followeeId) {
-        LOGGER.info("Got DELETE request - user: " + userId + " follow: " + followeeId);
-        Optional<User> user = userRepository.findById(userId);
-        if (!user.isPresent()) {
-            LOGGER.warning("User not found for id: " + userId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    public DeferredResult<ResponseEntity<User>> unfollowUser(@PathVariable long userId, @PathVariable long followeeId) {
+        return writeShards.submit(userId, () -> {
+            if (!socialGraph.unfollow(userId, followeeId)) {
+                LOGGER.warning(() -> "Followee not found for id: " + followeeId + " userId: " + userId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            timelineStore.unfollow(userId, followeeId);
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
+    }
+
+    @GetMapping("/{userId}/followers")
+    public ResponseEntity<FollowerResponse> findUserFollowers(@PathVariable long userId,
+                                                              @RequestParam(defaultValue = "0") long after,
+                                                              @RequestParam(defaultValue = PostCursor.DEFAULT_LIMIT) int limit) {
+        if (limit < 1) {
+            LOGGER.warning(() -> "Incorrect page request, after: " + after + " limit: " + limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        Optional<User> followee = user.get().getFollowees().stream().filter(u -> u.getId() == followeeId).findFirst();
-        if (!followee.isPresent()) {
-            LOGGER.warning("Followee not found for id: " + followeeId);
+        if (!userCache.existsById(userId)) {
+            LOGGER.warning(() -> "User not found for id: " + userId);
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        user.get().getFollowees().remove(followee.get());
-        userRepository.save(user.get());
-        return new ResponseEntity<>(HttpStatus.OK);
+        int pageSize = Math.min(limit, PostCursor.MAX_LIMIT);
+        long[] followerIds = socialGraph.followers(userId, after, pageSize);
+        String nextCursor = followerIds.length < pageSize ? null : String.valueOf(followerIds[followerIds.length - 1]);
+        return new ResponseEntity<>(new FollowerResponse(findUserSummaries(followerIds), socialGraph.followerCount(userId), nextCursor), HttpStatus.OK);
     }
 
     @GetMapping("/{userId}/posts")
-    public ResponseEntity<PostResponse> findUserPosts(@PathVariable long userId) {
-        LOGGER.info("Got GET request for all posts userId: " + userId);
-        Optional<User> user = userRepository.findById(userId);
-        if (!user.isPresent()) {
-            LOGGER.warning("User not found for id: " + userId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        List<Post> posts = user.get().getPosts();
-        posts.sort(new ReverseChronologicalPostComparator());
-        return new ResponseEntity<>(new PostResponse(posts), HttpStatus.OK);
+    public DeferredResult<ResponseEntity<PostResponse>> findUserPosts(@PathVariable long userId,
+                                                                      @RequestParam(required = false) String before,
+                                                                      @RequestParam(defaultValue = PostCursor.DEFAULT_LIMIT) int limit) {
+        return readExecutor.submit(() -> {
+            PostCursor cursor = PostCursor.parse(before);
+            if (cursor == null || limit < 1) {
+                LOGGER.warning(() -> "Incorrect page request, before: " + before + " limit: " + limit);
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            if (!userCache.existsById(userId)) {
+                LOGGER.warning(() -> "User not found for id: " + userId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            int pageSize = Math.min(limit, PostCursor.MAX_LIMIT);
+            List<PostView> posts = postRepository.findUserPostsBefore(userId, cursor.getId(), PageRequest.of(0, pageSize));
+            return new ResponseEntity<>(new PostResponse(posts, PostCursor.next(posts, pageSize)), HttpStatus.OK);
+        });
     }
 
     @GetMapping("/{userId}/timeline")
-    public ResponseEntity<PostResponse> findUserFoloweePosts(@PathVariable long userId) {
-        LOGGER.info("Got GET timeline request for userId: " + userId);
-        Optional<User> user = userRepository.findById(userId);
-        if (!user.isPresent()) {
-            LOGGER.warning("User not found for id: " + userId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    public DeferredResult<ResponseEntity<PostResponse>> findUserFoloweePosts(@PathVariable long userId,
+                                                                             @RequestParam(required = false) String before,
+                                                                             @RequestParam(defaultValue = PostCursor.DEFAULT_LIMIT) int limit,
+                                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null && userCache.existsById(userId)) {
+            String etag = timelineStore.etag(userId);
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ReadExecutor.completed(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+            }
         }
-        List<Post> posts = user.get().getFollowees().stream().map(User::getPosts).flatMap(List::stream).sorted(new ReverseChronologicalPostComparator()).collect(Collectors.toList());
-        return new ResponseEntity<>(new PostResponse(posts), HttpStatus.OK);
+        return readExecutor.submit(() -> {
+            PostCursor cursor = PostCursor.parse(before);
+            if (cursor == null || limit < 1) {
+                LOGGER.warning(() -> "Incorrect page request, before: " + before + " limit: " + limit);
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            if (!userCache.existsById(userId)) {
+                LOGGER.warning(() -> "User not found for id: " + userId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            String etag = timelineStore.etag(userId);
+            int pageSize = Math.min(limit, PostCursor.MAX_LIMIT);
+            List<PostView> posts = findTimelinePage(userId, cursor, pageSize);
+            return ResponseEntity.ok().eTag(etag).body(new PostResponse(posts, PostCursor.next(posts, pageSize)));
+        });
     }
 
     @GetMapping("/{userId}/posts/{postId}")
-    public ResponseEntity<PostResponse> findUserPost(@PathVariable long userId, @PathVariable long postId) {
-        LOGGER.info("Got GET request for userId: " + userId + " postId: " + postId);
-        Optional<User> user = userRepository.findById(userId);
-        if (!user.isPresent()) {
-            LOGGER.warning("User not found for: " + userId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        Optional<Post> post = user.get().getPosts().stream().filter(p -> p.getId() == postId).findAny();
+    public ResponseEntity<PostResponse> findUserPost(@PathVariable long userId, @PathVariable long postId,
+                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<Post> post = postCache.findByIdAndAuthorId(postId, userId);
         if (!post.isPresent()) {
-            LOGGER.warning("Post not found for id: " + postId);
+            LOGGER.warning(() -> "Post not found for id: " + postId + " userId: " + userId);
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(new PostResponse(post.get()), HttpStatus.OK);
+        return PostResponses.found(post.get(), ifNoneMatch);
     }
 
     @PostMapping("/{userId}/posts")
-    public ResponseEntity<PostResponse> createUserPost(@PathVariable long userId, @RequestBody @Valid PostRequest postRequest, BindingResult bindingResult) {
-        LOGGER.info("Got POST request for userId: " + userId + " post: " + postRequest);
+    public DeferredResult<ResponseEntity<PostResponse>> createUserPost(@PathVariable long userId, @RequestBody @Valid PostRequest postRequest, BindingResult bindingResult) {
+        return writeShards.submit(userId, () -> {
+            if (bindingResult.hasErrors()) {
+                LOGGER.warning(() -> "Post has incorrect size! Post: " + postRequest.getText());
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            Post post;
+            try {
+                post = postRepository.save(new Post(userId, postRequest));
+            } catch (DataIntegrityViolationException e) {
+                LOGGER.warning(() -> "User not found for id: " + userId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            postCache.put(post);
+            postIndex.add(post.getId(), post.getText());
+            tagIndex.add(post.getId(), post.getText());
+            timelineStore.publish(userId, post.getId());
+            return new ResponseEntity<>(new PostResponse(post), HttpStatus.OK);
+        });
+    }
+
+    @PostMapping("/{userId}/posts:batch")
+    public DeferredResult<ResponseEntity<PostResponse>> createUserPosts(@PathVariable long userId, @RequestBody @Valid PostBatchRequest batchRequest, BindingResult bindingResult) {
+        return writeShards.submit(userId, () -> {
+            if (bindingResult.hasErrors()) {
+                LOGGER.warning(() -> "Batch is empty, too large or has posts of incorrect size! Batch: " + batchRequest);
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            if (!userCache.existsById(userId)) {
+                LOGGER.warning(() -> "User not found for id: " + userId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            List<Post> posts = batchRequest.getPosts().stream()
+                    .map(postRequest -> new Post(userId, postRequest))
+                    .collect(Collectors.toList());
+            return savePosts(posts);
+        });
+    }
+
+    @PostMapping("/posts:batch")
+    public DeferredResult<ResponseEntity<PostResponse>> createPosts(@RequestBody @Valid UserPostBatchRequest batchRequest, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
-            LOGGER.warning("Post has incorrect size! Post: " + postRequest.getText());
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            LOGGER.warning(() -> "Batch is empty, too large or has posts of incorrect size! Batch: " + batchRequest);
+            return ReadExecutor.completed(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
         }
-        Optional<User> user = userRepository.findById(userId);
-        if (!user.isPresent()) {
-            LOGGER.warning("User not found for id: " + userId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        Set<Long> ids = user.get().getPosts().stream().map(Post::getId).collect(Collectors.toSet());
-        user.get().getPosts().add(new Post(postRequest));
-        User updatedUser = userRepository.save(user.get());
-        ids.forEach(id -> updatedUser.getPosts().removeIf(p -> p.getId() == id));
-        Optional<Post> post = updatedUser.getPosts().stream().filter(p -> p.getText().equals(postRequest.getText())).findFirst();
-        return new ResponseEntity<>(new PostResponse(post.get()), HttpStatus.OK);
+        long[] authorIds = batchRequest.getPosts().stream().mapToLong(UserPostRequest::getAuthorId).distinct().toArray();
+        return writeShards.submitAll(authorIds, () -> {
+            for (long authorId : authorIds) {
+                if (!userCache.existsById(authorId)) {
+                    LOGGER.warning(() -> "User not found for id: " + authorId);
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+            }
+            List<Post> posts = batchRequest.getPosts().stream()
+                    .map(postRequest -> new Post(postRequest.getAuthorId(), postRequest))
+                    .collect(Collectors.toList());
+            return savePosts(posts);
+        });
     }
 
     @PutMapping("/{userId}/posts/{postId}")
-    public ResponseEntity<PostResponse> modifyUserPost(@PathVariable long userId, @PathVariable long postId, @RequestBody @Valid PostRequest postRequest, BindingResult bindingResult) {
-        LOGGER.info("Got PUT request for userId: " + userId + " postId: " + postId + ", postRequest: " + postRequest);
-        if (bindingResult.hasErrors()) {
-            LOGGER.warning("Post has incorrect size! Post: " + postRequest.getText());
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        }
-        Optional<User> user = userRepository.findById(userId);
-        if (!user.isPresent()) {
-            LOGGER.warning("User not found for id: " + userId);
+    public DeferredResult<ResponseEntity<PostResponse>> modifyUserPost(@PathVariable long userId, @PathVariable long postId, @RequestBody @Valid PostRequest postRequest, BindingResult bindingResult,
+                                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return writeShards.submit(userId, () -> {
+            if (bindingResult.hasErrors()) {
+                LOGGER.warning(() -> "Post has incorrect size! Post: " + postRequest.getText());
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            return PostResponses.edited(postId, postEditor.updateText(postId, userId, postRequest.getText(), ifMatch));
+        });
+    }
+
+    @DeleteMapping("/{userId}/posts/{postId}")
+    public DeferredResult<ResponseEntity<Post>> deleteUserPost(@PathVariable long userId, @PathVariable long postId) {
+        return writeShards.submit(userId, () -> {
+            Optional<Post> post = postCache.findByIdAndAuthorId(postId, userId);
+            if (!post.isPresent()) {
+                LOGGER.warning(() -> "Post not found for id: " + postId + " userId: " + userId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            if (postRepository.deleteByIdAndAuthorId(postId, userId) == 0) {
+                postCache.evict(postId);
+                LOGGER.warning(() -> "Post not found for id: " + postId + " userId: " + userId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            postCache.evict(postId);
+            postIndex.remove(postId, post.get().getText());
+            tagIndex.remove(postId, post.get().getText());
+            timelineStore.retract(userId, postId);
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
+    }
+
+    private ResponseEntity<PostResponse> savePosts(List<Post> posts) {
+        Iterable<Post> savedPosts;
+        try {
+            savedPosts = postRepository.saveAll(posts);
+        } catch (DataIntegrityViolationException e) {
+            LOGGER.warning(() -> "Batch rejected, author not found: " + e.getMessage());
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        Optional<Post> post = user.get().getPosts().stream().filter(p -> p.getId() == postId).findAny();
-        if (!post.isPresent()) {
-            LOGGER.warning("Post not found for id: " + postId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        List<PostView> views = new ArrayList<>(posts.size());
+        for (Post post : savedPosts) {
+            postIndex.add(post.getId(), post.getText());
+            tagIndex.add(post.getId(), post.getText());
+            timelineStore.publish(post.getAuthorId(), post.getId());
+            views.add(PostView.of(post));
         }
-        post.get().setText(postRequest.getText());
-        User updatedUser = userRepository.save(user.get());
-        Optional<Post> updatedPost = updatedUser.getPosts().stream().filter(p -> p.getId() == postId).findAny();
-        return new ResponseEntity<>(new PostResponse(updatedPost.get()), HttpStatus.OK);
+        return new ResponseEntity<>(new PostResponse(views), HttpStatus.OK);
     }
 
-    @DeleteMapping("/{userId}/posts/{postId}")
-    public ResponseEntity<Post> deleteUserPost(@PathVariable long userId, @PathVariable long postId) {
-        LOGGER.info("Got DELETE request for userId: " + userId + " postId: " + postId);
-        Optional<User> user = userRepository.findById(userId);
-        if (!user.isPresent()) {
-            LOGGER.warning("User not found for id: " + userId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    private List<PostView> findTimelinePage(long userId, PostCursor cursor, int limit) {
+        timelineMetrics.record(TimelineMetrics.Path.READ);
+        List<PostView> posts = findPushedPage(userId, cursor, limit);
+        long[] pulledFollowees = timelineStore.pulledFollowees(userId);
+        if (pulledFollowees.length == 0) {
+            return posts;
         }
-        Optional<Post> post = user.get().getPosts().stream().filter(p -> p.getId() == postId).findAny();
-        if (!post.isPresent()) {
-            LOGGER.warning("Post not found for id: " + postId);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        timelineMetrics.record(TimelineMetrics.Path.PULLED);
+        return timelineAssembler.combine(posts, timelineAssembler.assemble(pulledFollowees, cursor, limit), limit);
+    }
+
+    private List<PostView> findPushedPage(long userId, PostCursor cursor, int limit) {
+        if (!timelineStore.isMaterialized(userId)) {
+            timelineMetrics.record(TimelineMetrics.Path.REBUILT);
+            List<PostView> posts = timelineStore.rebuild(userId);
+            if (cursor.isFirst()) {
+                return posts.subList(0, Math.min(limit, posts.size()));
+            }
+        }
+        long[] postIds = cursor.isFirst()
+                ? timelineStore.read(userId, limit)
+                : timelineStore.readAfter(userId, cursor.getId(), limit);
+        if (postIds == null) {
+            timelineMetrics.record(TimelineMetrics.Path.ASSEMBLED);
+            return timelineAssembler.assemble(timelineStore.pushedFollowees(userId), cursor, limit);
+        }
+        timelineMetrics.record(TimelineMetrics.Path.MATERIALIZED);
+        List<PostView> posts = postCache.findViewsInOrder(postIds);
+        if (posts.size() < limit && timelineStore.isTruncated(userId)) {
+            timelineMetrics.record(TimelineMetrics.Path.TOPPED_UP);
+            PostCursor last = posts.isEmpty() ? cursor : PostCursor.of(posts.get(posts.size() - 1));
+            posts.addAll(timelineAssembler.assemble(timelineStore.pushedFollowees(userId), last, limit - posts.size()));
+        }
+        return posts;
+    }
+
+    private List<UserSummary> findUserSummaries(long[] userIds) {
+        if (userIds.length == 0) {
+            return Collections.emptyList();
         }
-        user.get().getPosts().remove(post.get());
-        userRepository.save(user.get());
-        return new ResponseEntity<>(HttpStatus.OK);
+        return userRepository.findSummariesByIdIn(LongStream.of(userIds).boxed().collect(Collectors.toList()));
     }
 }
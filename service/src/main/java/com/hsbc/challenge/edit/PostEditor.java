@@ -0,0 +1,119 @@
+package com.hsbc.challenge.edit;
+
+import com.hsbc.challenge.cache.PostCache;
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.search.PostIndex;
+import com.hsbc.challenge.search.TagIndex;
+import com.hsbc.challenge.timeline.TimelineStore;
+import com.hsbc.challenge.util.ETags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Edits posts with optimistic concurrency: the text is replaced by a single conditional update which succeeds only
+ * if the version read is still current. A request with {@code If-Match} fails once the version moved on, a request
+ * without it re-reads the post and retries after a short jittered backoff, so concurrent writers never lose an update
+ * and never hold a lock.
+ * <p>
+ * Edits run on the author's write shard, as do creates and deletes, so the search indexes are given the replaced
+ * text of each committed version in commit order.
+ */
+@Component
+public class PostEditor {
+
+    public enum Outcome {
+        UPDATED, NOT_FOUND, PRECONDITION_FAILED, CONFLICT
+    }
+
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @Value("${posts.update.max-attempts:8}")
+    private int maxAttempts;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private PostCache postCache;
+
+    @Autowired
+    private TimelineStore timelineStore;
+
+    @Autowired
+    private PostIndex postIndex;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    public PostEditor() {
+    }
+
+    public PostEditor(PostRepository postRepository, PostCache postCache, TimelineStore timelineStore, PostIndex postIndex, TagIndex tagIndex, int maxAttempts) {
+        this.postRepository = postRepository;
+        this.postCache = postCache;
+        this.timelineStore = timelineStore;
+        this.postIndex = postIndex;
+        this.tagIndex = tagIndex;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Result updateText(long id, long authorId, String text, String ifMatch) {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            Optional<Post> current = postCache.findByIdAndAuthorId(id, authorId);
+            if (!current.isPresent()) {
+                return new Result(Outcome.NOT_FOUND, null);
+            }
+            Post post = current.get();
+            if (ifMatch != null && !ETags.matches(ifMatch, ETags.of(post.getVersion()))) {
+                return new Result(Outcome.PRECONDITION_FAILED, post);
+            }
+            if (postRepository.updateText(id, post.getVersion(), text) == 1) {
+                Post updated = copy(post, text);
+                postCache.putIfNewer(updated);
+                postIndex.update(id, post.getText(), text);
+                tagIndex.update(id, post.getText(), text);
+                timelineStore.edit(updated.getAuthorId());
+                return new Result(Outcome.UPDATED, updated);
+            }
+            postCache.evict(id);
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(BACKOFF_NANOS << attempt));
+        }
+        return new Result(Outcome.CONFLICT, null);
+    }
+
+    private static Post copy(Post post, String text) {
+        Post updated = new Post();
+        updated.setId(post.getId());
+        updated.setAuthorId(post.getAuthorId());
+        updated.setText(text);
+        updated.setCreationDateTime(post.getCreationDateTime());
+        updated.setVersion(post.getVersion() + 1);
+        return updated;
+    }
+
+    public static class Result {
+
+        private final Outcome outcome;
+        private final Post post;
+
+        private Result(Outcome outcome, Post post) {
+            this.outcome = outcome;
+            this.post = post;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public Post getPost() {
+            return post;
+        }
+    }
+}
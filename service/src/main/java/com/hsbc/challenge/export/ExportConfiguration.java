@@ -0,0 +1,40 @@
+package com.hsbc.challenge.export;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Runs streamed responses, which are the NDJSON exports, on a fixed pool of one thread per export permit instead of
+ * a new thread per request, and lets them run for the export timeout instead of the container's default async
+ * timeout, which would cut a long export off mid-stream. Requests answered through a {@code DeferredResult} set
+ * their own timeouts.
+ */
+@Configuration
+public class ExportConfiguration implements WebMvcConfigurer {
+
+    @Value("${export.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${export.timeout-ms:600000}")
+    private long timeoutMillis;
+
+    @Bean
+    public ThreadPoolTaskExecutor exportExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setThreadNamePrefix("export-");
+        executor.setDaemon(true);
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(exportExecutor());
+        configurer.setDefaultTimeout(timeoutMillis);
+    }
+}
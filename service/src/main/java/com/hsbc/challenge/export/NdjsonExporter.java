@@ -0,0 +1,103 @@
+package com.hsbc.challenge.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.model.UserSummary;
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Writes whole tables as newline delimited JSON, one row per line. Rows are read from a forward-only database
+ * cursor and written as they arrive, so memory use does not depend on the number of rows. Every export holds a
+ * database connection while it runs, so at most {@code export.max-concurrent} run at a time.
+ */
+@Component
+public class NdjsonExporter {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${export.max-concurrent:4}")
+    private int maxConcurrent;
+
+    private Semaphore permits;
+
+    public NdjsonExporter() {
+    }
+
+    public NdjsonExporter(UserRepository userRepository, PostRepository postRepository, ObjectMapper objectMapper, int maxConcurrent) {
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.objectMapper = objectMapper;
+        this.maxConcurrent = maxConcurrent;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * The export holding one of the export permits until it finishes, or null if they are all taken.
+     */
+    public StreamingResponseBody admit(StreamingResponseBody export) {
+        if (!permits.tryAcquire()) {
+            return null;
+        }
+        return out -> {
+            try {
+                export.writeTo(out);
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    @Transactional(readOnly = true)
+    public void exportUsers(OutputStream out) throws IOException {
+        try (Stream<UserSummary> users = userRepository.streamAllSummaries()) {
+            write(users, out);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportPosts(OutputStream out) throws IOException {
+        try (Stream<PostView> posts = postRepository.streamAll()) {
+            write(posts, out);
+        }
+    }
+
+    private void write(Stream<?> rows, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            Iterator<?> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+                generator.writeRaw('\n');
+            }
+        }
+    }
+}
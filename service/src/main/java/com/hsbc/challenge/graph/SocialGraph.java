@@ -0,0 +1,115 @@
+package com.hsbc.challenge.graph;
+
+import com.hsbc.challenge.model.Follow;
+import com.hsbc.challenge.repository.FollowRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Follower/followee graph persisted in the follows table and cached as sorted {@code long[]} adjacency lists
+ * in both directions, so membership checks are a binary search and no {@code User} entity is loaded. Cached
+ * arrays are replaced on every change and must not be modified by callers.
+ * <p>
+ * Changes of one follower are expected to be serialized by the caller, as on the follower's write shard; each array
+ * is replaced atomically, so changes of different followers touching the same followee do not need a lock. A
+ * duplicate follow which slips through is still rejected by the unique constraint.
+ */
+@Component
+public class SocialGraph {
+
+    @Autowired
+    private FollowRepository followRepository;
+
+    private final Map<Long, long[]> followees = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> followers = new ConcurrentHashMap<>();
+
+    public SocialGraph() {
+    }
+
+    public SocialGraph(FollowRepository followRepository) {
+        this.followRepository = followRepository;
+    }
+
+    public boolean isFollowing(long userId, long followeeId) {
+        return Arrays.binarySearch(followees(userId), followeeId) >= 0;
+    }
+
+    public long[] followees(long userId) {
+        return followees.computeIfAbsent(userId, id -> toSortedArray(followRepository.findFolloweeIds(id)));
+    }
+
+    public long[] followers(long userId) {
+        return followers.computeIfAbsent(userId, id -> toSortedArray(followRepository.findFollowerIds(id)));
+    }
+
+    public long[] followers(long userId, long after, int limit) {
+        long[] ids = followers(userId);
+        int from = Arrays.binarySearch(ids, after);
+        from = from >= 0 ? from + 1 : -from - 1;
+        return Arrays.copyOfRange(ids, from, Math.min(ids.length, from + limit));
+    }
+
+    public int followerCount(long userId) {
+        return followers(userId).length;
+    }
+
+    public boolean follow(long userId, long followeeId) {
+        if (isFollowing(userId, followeeId)) {
+            return false;
+        }
+        try {
+            followRepository.save(new Follow(userId, followeeId));
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+        followees.computeIfPresent(userId, (id, ids) -> insert(ids, followeeId));
+        followers.computeIfPresent(followeeId, (id, ids) -> insert(ids, userId));
+        return true;
+    }
+
+    public boolean unfollow(long userId, long followeeId) {
+        if (!isFollowing(userId, followeeId)) {
+            return false;
+        }
+        int deleted = followRepository.deleteFollow(userId, followeeId);
+        followees.computeIfPresent(userId, (id, ids) -> remove(ids, followeeId));
+        followers.computeIfPresent(followeeId, (id, ids) -> remove(ids, userId));
+        return deleted > 0;
+    }
+
+    private static long[] toSortedArray(List<Long> ids) {
+        long[] array = ids.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(array);
+        return array;
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        int insertion = -index - 1;
+        long[] updated = new long[ids.length + 1];
+        System.arraycopy(ids, 0, updated, 0, insertion);
+        updated[insertion] = id;
+        System.arraycopy(ids, insertion, updated, insertion + 1, ids.length - insertion);
+        return updated;
+    }
+
+    private static long[] remove(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        long[] updated = new long[ids.length - 1];
+        System.arraycopy(ids, 0, updated, 0, index);
+        System.arraycopy(ids, index + 1, updated, index, ids.length - index - 1);
+        return updated;
+    }
+}
@@ -0,0 +1,160 @@
+package com.hsbc.challenge.log;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One structured record per request, written by request threads into a preallocated ring buffer and formatted and
+ * logged by a single background thread. Request threads never block and never format: when the ring is full the
+ * record is dropped and counted. When the access logger is not enabled for INFO nothing is recorded at all.
+ */
+@Component
+public class AccessLog {
+
+    static final Logger LOGGER = Logger.getLogger("com.hsbc.challenge.access");
+
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Value("${access-log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${access-log.capacity:8192}")
+    private int capacity;
+
+    private Slot[] slots;
+    private int mask;
+
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+
+    private final LongAdder dropped = new LongAdder();
+    private final StringBuilder line = new StringBuilder(128);
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public AccessLog() {
+    }
+
+    AccessLog(int capacity) {
+        this.enabled = true;
+        this.capacity = capacity;
+        allocate();
+    }
+
+    @PostConstruct
+    void start() {
+        allocate();
+        running = true;
+        writer = new Thread(this::run, "access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(1));
+    }
+
+    public boolean isEnabled() {
+        return enabled && LOGGER.isLoggable(Level.INFO);
+    }
+
+    public void record(String method, String route, Map<String, String> ids, int status, long latencyNanos) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+        Slot slot = slots[(int) sequence & mask];
+        slot.method = method;
+        slot.route = route;
+        slot.ids = ids;
+        slot.status = status;
+        slot.latencyNanos = latencyNanos;
+        slot.published = sequence;
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("logged", tail);
+        stats.put("pending", head.get() - tail);
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    int drain(Consumer<String> sink) {
+        int drained = 0;
+        long next = tail;
+        Slot slot = slots[(int) next & mask];
+        while (slot.published == next) {
+            sink.accept(format(slot));
+            slot.ids = null;
+            tail = ++next;
+            drained++;
+            slot = slots[(int) next & mask];
+        }
+        return drained;
+    }
+
+    private void run() {
+        while (running) {
+            if (drain(LOGGER::info) == 0) {
+                LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+            }
+        }
+        drain(LOGGER::info);
+    }
+
+    private String format(Slot slot) {
+        line.setLength(0);
+        line.append("method=").append(slot.method)
+                .append(" route=").append(slot.route);
+        if (slot.ids != null) {
+            slot.ids.forEach((name, value) -> line.append(' ').append(name).append('=').append(value));
+        }
+        line.append(" status=").append(slot.status)
+                .append(" latencyMicros=").append(TimeUnit.NANOSECONDS.toMicros(slot.latencyNanos));
+        return line.toString();
+    }
+
+    private void allocate() {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i - size);
+        }
+        mask = size - 1;
+    }
+
+    private static class Slot {
+
+        private volatile long published;
+        private String method;
+        private String route;
+        private Map<String, String> ids;
+        private int status;
+        private long latencyNanos;
+
+        private Slot(long published) {
+            this.published = published;
+        }
+    }
+}
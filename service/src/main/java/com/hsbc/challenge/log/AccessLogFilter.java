@@ -0,0 +1,98 @@
+package com.hsbc.challenge.log;
+
+import com.hsbc.challenge.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Records each request in the route timers and the {@link AccessLog} once its response is complete, keyed by the
+ * matched route pattern and the path variables, so asynchronous requests are recorded with their final status and
+ * full latency.
+ */
+@Component
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    static final String UNMATCHED_ROUTE = "unmatched";
+
+    @Autowired
+    private AccessLog accessLog;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    public AccessLogFilter() {
+    }
+
+    AccessLogFilter(AccessLog accessLog, MetricsRegistry metricsRegistry) {
+        this.accessLog = accessLog;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (isAsyncStarted(request)) {
+                request.getAsyncContext().addListener(new CompletionListener(request, start));
+            } else {
+                record(request, response.getStatus(), start);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void record(HttpServletRequest request, int status, long start) {
+        long latencyNanos = System.nanoTime() - start;
+        String route = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        metricsRegistry.requestTimer(request.getMethod(), route == null ? UNMATCHED_ROUTE : route).record(latencyNanos);
+        if (accessLog.isEnabled()) {
+            accessLog.record(request.getMethod(),
+                    route == null ? request.getRequestURI() : route,
+                    (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE),
+                    status,
+                    latencyNanos);
+        }
+    }
+
+    private class CompletionListener implements AsyncListener {
+
+        private final HttpServletRequest request;
+        private final long start;
+
+        private CompletionListener(HttpServletRequest request, long start) {
+            this.request = request;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            record(request, ((HttpServletResponse) event.getSuppliedResponse()).getStatus(), start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.hsbc.challenge.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histogram of one operation, with throughput measured since the timer was created.
+ */
+public class LatencyTimer {
+
+    private final Histogram histogram = new Histogram();
+    private final long createdAt = System.nanoTime();
+
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    public long count() {
+        return histogram.count();
+    }
+
+    public Map<String, Number> snapshot() {
+        long count = histogram.count();
+        double seconds = Math.max(1, System.nanoTime() - createdAt) / (double) TimeUnit.SECONDS.toNanos(1);
+        Map<String, Number> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", count);
+        snapshot.put("ratePerSecond", round(count / seconds));
+        snapshot.put("meanMicros", round(histogram.mean() / 1000));
+        snapshot.put("p50Micros", micros(histogram.percentile(50)));
+        snapshot.put("p90Micros", micros(histogram.percentile(90)));
+        snapshot.put("p99Micros", micros(histogram.percentile(99)));
+        snapshot.put("p999Micros", micros(histogram.percentile(99.9)));
+        snapshot.put("maxMicros", micros(histogram.max()));
+        return snapshot;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,43 @@
+package com.hsbc.challenge.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency timers of HTTP routes, keyed by route pattern and method, and of repository methods.
+ */
+@Component
+public class MetricsRegistry {
+
+    private final Map<String, Map<String, LatencyTimer>> requests = new ConcurrentHashMap<>();
+    private final Map<String, LatencyTimer> repositories = new ConcurrentHashMap<>();
+
+    public LatencyTimer requestTimer(String method, String route) {
+        Map<String, LatencyTimer> byMethod = requests.get(route);
+        if (byMethod == null) {
+            byMethod = requests.computeIfAbsent(route, key -> new ConcurrentHashMap<>());
+        }
+        LatencyTimer timer = byMethod.get(method);
+        return timer != null ? timer : byMethod.computeIfAbsent(method, key -> new LatencyTimer());
+    }
+
+    public LatencyTimer repositoryTimer(String name) {
+        return repositories.computeIfAbsent(name, key -> new LatencyTimer());
+    }
+
+    public Map<String, Map<String, Number>> requests() {
+        Map<String, Map<String, Number>> snapshot = new TreeMap<>();
+        requests.forEach((route, byMethod) ->
+                byMethod.forEach((method, timer) -> snapshot.put(method + " " + route, timer.snapshot())));
+        return snapshot;
+    }
+
+    public Map<String, Map<String, Number>> repositories() {
+        Map<String, Map<String, Number>> snapshot = new TreeMap<>();
+        repositories.forEach((name, timer) -> snapshot.put(name, timer.snapshot()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,26 @@
+package com.hsbc.challenge.repository;
+
+import com.hsbc.challenge.model.Follow;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface FollowRepository extends CrudRepository<Follow, Long> {
+
+    @Query("select f.followeeId from Follow f where f.followerId = :followerId")
+    List<Long> findFolloweeIds(@Param("followerId") long followerId);
+
+    @Query("select f.followerId from Follow f where f.followeeId = :followeeId")
+    List<Long> findFollowerIds(@Param("followeeId") long followeeId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Follow f where f.followerId = :followerId and f.followeeId = :followeeId")
+    int deleteFollow(@Param("followerId") long followerId, @Param("followeeId") long followeeId);
+}
@@ -2,11 +2,58 @@ package com.hsbc.challenge.repository;
 
 
 import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 
 @Repository
 public interface PostRepository extends CrudRepository<Post, Long> {
 
+    String FETCH_SIZE = "500";
+
+    String VIEW = "select new com.hsbc.challenge.model.PostView(p.id, p.authorId, p.text, p.creationDateTime) from Post p ";
+
+    @Query(VIEW +
+            "where p.id < :id " +
+            "order by p.id desc")
+    List<PostView> findPostsBefore(@Param("id") long id, Pageable pageable);
+
+    @Query(VIEW +
+            "where p.authorId = :authorId and p.id < :id " +
+            "order by p.id desc")
+    List<PostView> findUserPostsBefore(@Param("authorId") long authorId, @Param("id") long id, Pageable pageable);
+
+    Optional<Post> findByIdAndAuthorId(long id, long authorId);
+
+    @Transactional
+    @Modifying
+    @Query("update Post p set p.text = :text, p.version = p.version + 1 where p.id = :id and p.version = :version")
+    int updateText(@Param("id") long id, @Param("version") long version, @Param("text") String text);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Post p where p.id = :id and p.authorId = :authorId")
+    int deleteByIdAndAuthorId(@Param("id") long id, @Param("authorId") long authorId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = FETCH_SIZE))
+    @Query(VIEW + "order by p.id desc")
+    Stream<PostView> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = FETCH_SIZE))
+    @Query(VIEW + "order by p.id")
+    Stream<PostView> streamAllInIdOrder();
 }
@@ -1,10 +1,38 @@
 package com.hsbc.challenge.repository;
 
 import com.hsbc.challenge.model.User;
+import com.hsbc.challenge.model.UserSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface UserRepository extends CrudRepository<User, Long> {
 
+    String FETCH_SIZE = "500";
+
+    String SUMMARY = "select new com.hsbc.challenge.model.UserSummary(u.id, u.username, " +
+            "(select count(f) from Follow f where f.followeeId = u.id), " +
+            "(select count(f) from Follow f where f.followerId = u.id)) " +
+            "from User u ";
+
+    @Query(SUMMARY + "where u.id > :id order by u.id")
+    List<UserSummary> findSummariesAfter(@Param("id") long id, Pageable pageable);
+
+    @Query(SUMMARY + "where u.id in :ids order by u.id")
+    List<UserSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = FETCH_SIZE))
+    @Query(SUMMARY + "order by u.id")
+    Stream<UserSummary> streamAllSummaries();
 }
@@ -0,0 +1,25 @@
+package com.hsbc.challenge.search;
+
+import com.hsbc.challenge.repository.PostRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Full-text index of posts, one term per distinct word as split by {@link Tokenizer}.
+ */
+@Component
+public class PostIndex extends TermIndex {
+
+    public PostIndex() {
+    }
+
+    public PostIndex(PostRepository postRepository) {
+        super(postRepository);
+    }
+
+    @Override
+    protected Set<String> terms(String text) {
+        return Tokenizer.terms(text);
+    }
+}
@@ -0,0 +1,239 @@
+package com.hsbc.challenge.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of post ids stored in blocks of about {@value #BLOCK_SIZE} ids. A block keeps its first id in full and
+ * the following ids as variable length deltas, so a block can be skipped by its first id and only the blocks a query
+ * touches are decoded. Post ids grow with time, so new posts are appended to the last block without decoding it;
+ * edits and deletes re-encode a single block. Not thread safe, guarded by {@link PostIndex}.
+ */
+class PostingList {
+
+    static final int BLOCK_SIZE = 128;
+
+    private byte[][] blocks = new byte[4][];
+    private long[] firsts = new long[4];
+    private long[] lasts = new long[4];
+    private int[] counts = new int[4];
+    private int[] lengths = new int[4];
+    private int blockCount;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean add(long id) {
+        if (blockCount == 0 || id > lasts[blockCount - 1]) {
+            append(id);
+            return true;
+        }
+        int block = blockFor(id);
+        long[] ids = decode(block, new long[counts[block] + 1]);
+        int count = counts[block];
+        int position = Arrays.binarySearch(ids, 0, count, id);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        System.arraycopy(ids, position, ids, position + 1, count - position);
+        ids[position] = id;
+        count++;
+        size++;
+        if (count > 2 * BLOCK_SIZE) {
+            insertBlock(block + 1);
+            encode(block + 1, ids, count / 2, count);
+            encode(block, ids, 0, count / 2);
+        } else {
+            encode(block, ids, 0, count);
+        }
+        return true;
+    }
+
+    boolean remove(long id) {
+        if (blockCount == 0 || id < firsts[0] || id > lasts[blockCount - 1]) {
+            return false;
+        }
+        int block = blockFor(id);
+        long[] ids = decode(block, new long[counts[block]]);
+        int count = counts[block];
+        int position = Arrays.binarySearch(ids, 0, count, id);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(ids, position + 1, ids, position, count - position - 1);
+        count--;
+        size--;
+        if (count == 0) {
+            removeBlock(block);
+        } else {
+            encode(block, ids, 0, count);
+        }
+        return true;
+    }
+
+    Reader reader() {
+        return new Reader();
+    }
+
+    /**
+     * Query-time view remembering the last decoded block, as candidates are probed in descending order.
+     */
+    class Reader {
+
+        private final long[] buffer = new long[2 * BLOCK_SIZE];
+        private int decoded = -1;
+
+        int size() {
+            return size;
+        }
+
+        boolean contains(long id) {
+            if (blockCount == 0 || id < firsts[0] || id > lasts[blockCount - 1]) {
+                return false;
+            }
+            int block = blockFor(id);
+            if (id > lasts[block]) {
+                return false;
+            }
+            load(block);
+            return Arrays.binarySearch(buffer, 0, counts[block], id) >= 0;
+        }
+
+        /**
+         * Visits ids lower than {@code before}, highest first, while the visitor returns true.
+         */
+        void descending(long before, IdVisitor visitor) {
+            if (blockCount == 0 || before <= firsts[0]) {
+                return;
+            }
+            for (int block = blockFor(before - 1); block >= 0; block--) {
+                load(block);
+                for (int i = counts[block] - 1; i >= 0; i--) {
+                    if (buffer[i] < before && !visitor.visit(buffer[i])) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void load(int block) {
+            if (decoded != block) {
+                decode(block, buffer);
+                decoded = block;
+            }
+        }
+    }
+
+    interface IdVisitor {
+
+        boolean visit(long id);
+    }
+
+    private int blockFor(long id) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firsts[middle] <= id) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private void append(long id) {
+        int last = blockCount - 1;
+        if (last < 0 || counts[last] >= BLOCK_SIZE) {
+            insertBlock(blockCount);
+            last = blockCount - 1;
+            blocks[last] = new byte[16];
+            firsts[last] = id;
+        } else {
+            byte[] bytes = blocks[last];
+            if (lengths[last] + 10 > bytes.length) {
+                blocks[last] = bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            lengths[last] = writeVarLong(bytes, lengths[last], id - lasts[last]);
+        }
+        lasts[last] = id;
+        counts[last]++;
+        size++;
+    }
+
+    private long[] decode(int block, long[] ids) {
+        byte[] bytes = blocks[block];
+        long id = firsts[block];
+        ids[0] = id;
+        int offset = 0;
+        for (int i = 1; i < counts[block]; i++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[offset++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += delta;
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    private void encode(int block, long[] ids, int from, int to) {
+        byte[] bytes = new byte[Math.max(16, (to - from) * 10)];
+        int length = 0;
+        for (int i = from + 1; i < to; i++) {
+            length = writeVarLong(bytes, length, ids[i] - ids[i - 1]);
+        }
+        blocks[block] = Arrays.copyOf(bytes, Math.max(16, length + 10));
+        lengths[block] = length;
+        firsts[block] = ids[from];
+        lasts[block] = ids[to - 1];
+        counts[block] = to - from;
+    }
+
+    private void insertBlock(int block) {
+        if (blockCount == firsts.length) {
+            int capacity = blockCount * 2;
+            blocks = Arrays.copyOf(blocks, capacity);
+            firsts = Arrays.copyOf(firsts, capacity);
+            lasts = Arrays.copyOf(lasts, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        int moved = blockCount - block;
+        System.arraycopy(blocks, block, blocks, block + 1, moved);
+        System.arraycopy(firsts, block, firsts, block + 1, moved);
+        System.arraycopy(lasts, block, lasts, block + 1, moved);
+        System.arraycopy(counts, block, counts, block + 1, moved);
+        System.arraycopy(lengths, block, lengths, block + 1, moved);
+        counts[block] = 0;
+        lengths[block] = 0;
+        blockCount++;
+    }
+
+    private void removeBlock(int block) {
+        int moved = blockCount - block - 1;
+        System.arraycopy(blocks, block + 1, blocks, block, moved);
+        System.arraycopy(firsts, block + 1, firsts, block, moved);
+        System.arraycopy(lasts, block + 1, lasts, block, moved);
+        System.arraycopy(counts, block + 1, counts, block, moved);
+        System.arraycopy(lengths, block + 1, lengths, block, moved);
+        blockCount--;
+        blocks[blockCount] = null;
+    }
+
+    private static int writeVarLong(byte[] bytes, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+}
@@ -0,0 +1,42 @@
+package com.hsbc.challenge.search;
+
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.trending.TrendingTags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Index of posts by the #hashtags and @mentions found by {@link Tags}. Hashtags of newly created posts are counted
+ * by {@link TrendingTags}; edits do not count, so re-tagging a post cannot inflate a trend, and neither do rebuilds,
+ * so a restart does not replay old posts into the trends.
+ */
+@Component
+public class TagIndex extends TermIndex {
+
+    @Autowired
+    private TrendingTags trendingTags;
+
+    public TagIndex() {
+    }
+
+    public TagIndex(PostRepository postRepository, TrendingTags trendingTags) {
+        super(postRepository);
+        this.trendingTags = trendingTags;
+    }
+
+    @Override
+    protected Set<String> terms(String text) {
+        return Tags.extract(text);
+    }
+
+    @Override
+    protected void created(long id, Set<String> terms) {
+        for (String term : terms) {
+            if (term.charAt(0) == Tags.HASHTAG) {
+                trendingTags.record(term.substring(1));
+            }
+        }
+    }
+}
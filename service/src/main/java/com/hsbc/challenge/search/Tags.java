@@ -0,0 +1,60 @@
+package com.hsbc.challenge.search;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Extracts #hashtags and @mentions from post text. A tag starts with its sign at the beginning of the text or after a
+ * character which cannot be part of a tag (so e-mail addresses are not mentions) and runs over letters, digits and
+ * underscores. Tags are returned lower case with their sign, {@code #tag} or {@code @user}.
+ */
+public class Tags {
+
+    public static final char HASHTAG = '#';
+    public static final char MENTION = '@';
+
+    private Tags() {
+    }
+
+    public static Set<String> extract(String text) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (text == null) {
+            return tags;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char sign = text.charAt(i);
+            if ((sign != HASHTAG && sign != MENTION) || (i > 0 && isTagChar(text.charAt(i - 1)))) {
+                continue;
+            }
+            int end = i + 1;
+            while (end < text.length() && isTagChar(text.charAt(end))) {
+                end++;
+            }
+            if (end > i + 1 && end - i - 1 <= Tokenizer.MAX_TERM_LENGTH) {
+                tags.add(sign + text.substring(i + 1, end).toLowerCase(Locale.ROOT));
+            }
+            i = end - 1;
+        }
+        return tags;
+    }
+
+    /**
+     * Index term of a tag or user name given without its sign, or null if it cannot appear in a post.
+     */
+    public static String term(char sign, String name) {
+        if (name.isEmpty() || name.length() > Tokenizer.MAX_TERM_LENGTH) {
+            return null;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!isTagChar(name.charAt(i))) {
+                return null;
+            }
+        }
+        return sign + name.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isTagChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,277 @@
+package com.hsbc.challenge.search;
+
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index of post text: every term maps to the {@link PostingList} of ids of posts containing it. Subclasses
+ * decide which terms a text has. Kept up to date on every post change and rebuilt from {@link PostRepository} on
+ * startup. A query returns ids of posts containing all its terms, newest first, by walking the shortest posting list
+ * and probing the others.
+ * <p>
+ * Changes of a post are made on its author's write shard, so they reach the index in the order they were committed.
+ * The index may still lag behind the posts, so pages of posts are checked against the current text before they are
+ * served.
+ */
+public abstract class TermIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(TermIndex.class.getName());
+
+    @Autowired
+    private PostRepository postRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, PostingList> terms = new HashMap<>();
+    private long documents;
+    private List<Change> journal;
+    private long rebuilds;
+    private long lastRebuildMillis;
+
+    protected TermIndex() {
+    }
+
+    protected TermIndex(PostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
+
+    protected abstract Set<String> terms(String text);
+
+    /**
+     * Called after a newly created post was indexed with its terms; edits and rebuilds do not call it.
+     */
+    protected void created(long id, Set<String> terms) {
+    }
+
+    public void add(long id, String text) {
+        apply(new Change(id, null, text));
+    }
+
+    public void update(long id, String oldText, String newText) {
+        apply(new Change(id, oldText, newText));
+    }
+
+    public void remove(long id, String text) {
+        apply(new Change(id, text, null));
+    }
+
+    /**
+     * Ids of posts lower than {@code before} containing every term of the query, newest first.
+     */
+    public long[] search(String query, long before, int limit) {
+        return find(terms(query), before, limit);
+    }
+
+    /**
+     * Posts lower than {@code before} containing every term of the query, newest first, loaded by the given loader.
+     */
+    public List<PostView> search(String query, long before, int limit, Function<long[], List<PostView>> loader) {
+        return find(terms(query), before, limit, loader);
+    }
+
+    /**
+     * Posts lower than {@code before} containing every one of the given terms, newest first. Hits whose current text,
+     * as loaded, no longer has all the terms, or which are gone, are skipped and the index is read on until the page is
+     * full or there are no more hits.
+     */
+    public List<PostView> find(Set<String> queryTerms, long before, int limit, Function<long[], List<PostView>> loader) {
+        List<PostView> page = new ArrayList<>(limit);
+        long cursor = before;
+        while (page.size() < limit) {
+            int wanted = limit - page.size();
+            long[] ids = find(queryTerms, cursor, wanted);
+            for (PostView post : loader.apply(ids)) {
+                if (terms(post.getText()).containsAll(queryTerms)) {
+                    page.add(post);
+                }
+            }
+            if (ids.length < wanted) {
+                break;
+            }
+            cursor = ids[ids.length - 1];
+        }
+        return page;
+    }
+
+    /**
+     * Ids of posts lower than {@code before} containing every one of the given terms, newest first.
+     */
+    public long[] find(Set<String> queryTerms, long before, int limit) {
+        if (queryTerms.isEmpty()) {
+            return new long[0];
+        }
+        lock.readLock().lock();
+        try {
+            List<PostingList.Reader> readers = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                PostingList postings = terms.get(term);
+                if (postings == null) {
+                    return new long[0];
+                }
+                readers.add(postings.reader());
+            }
+            readers.sort(Comparator.comparingInt(PostingList.Reader::size));
+            PostingList.Reader shortest = readers.get(0);
+            List<PostingList.Reader> others = readers.subList(1, readers.size());
+            long[] ids = new long[Math.min(limit, shortest.size())];
+            int[] found = new int[1];
+            shortest.descending(before, id -> {
+                for (PostingList.Reader other : others) {
+                    if (!other.contains(id)) {
+                        return true;
+                    }
+                }
+                ids[found[0]++] = id;
+                return found[0] < ids.length;
+            });
+            return Arrays.copyOf(ids, found[0]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the index with one built from the repository. Posts are read in id order, so most postings are
+     * appended, into a new index built without holding the lock; changes made meanwhile are journaled and replayed
+     * before the new index is swapped in.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            journal = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<String, PostingList> rebuilt = new HashMap<>();
+        long rebuiltDocuments = 0;
+        try {
+            try (Stream<PostView> posts = postRepository.streamAllInIdOrder()) {
+                Iterator<PostView> iterator = posts.iterator();
+                while (iterator.hasNext()) {
+                    PostView post = iterator.next();
+                    rebuiltDocuments += new Change(post.getId(), null, post.getText()).applyTo(rebuilt);
+                }
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                journal = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Change change : journal) {
+                rebuiltDocuments += change.applyTo(rebuilt);
+            }
+            journal = null;
+            terms = rebuilt;
+            documents = rebuiltDocuments;
+            rebuilds++;
+            lastRebuildMillis = System.currentTimeMillis() - start;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOGGER.info(() -> getClass().getSimpleName() + " rebuilt, posts: " + documents + " terms: " + terms.size() + " in " + lastRebuildMillis + "ms");
+    }
+
+    public Map<String, Long> stats() {
+        lock.readLock().lock();
+        try {
+            long postings = 0;
+            for (PostingList list : terms.values()) {
+                postings += list.size();
+            }
+            Map<String, Long> stats = new LinkedHashMap<>();
+            stats.put("posts", documents);
+            stats.put("terms", (long) terms.size());
+            stats.put("postings", postings);
+            stats.put("rebuilds", rebuilds);
+            stats.put("lastRebuildMillis", lastRebuildMillis);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            documents += change.applyTo(terms);
+            if (journal != null) {
+                journal.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (change.insert && !change.added.isEmpty()) {
+            created(change.id, change.added);
+        }
+    }
+
+    /**
+     * Replacement of the text of one post; a missing old text is an insert, a missing new text a delete.
+     */
+    private class Change {
+
+        private final long id;
+        private final Set<String> removed;
+        private final Set<String> added;
+        private final boolean insert;
+        private final boolean delete;
+
+        private Change(long id, String oldText, String newText) {
+            this.id = id;
+            Set<String> oldTerms = terms(oldText);
+            Set<String> newTerms = terms(newText);
+            this.removed = new HashSet<>(oldTerms);
+            this.removed.removeAll(newTerms);
+            this.added = new LinkedHashSet<>(newTerms);
+            this.added.removeAll(oldTerms);
+            this.insert = oldText == null;
+            this.delete = newText == null;
+        }
+
+        /**
+         * Applies the term difference and returns the change in the number of indexed posts.
+         */
+        private int applyTo(Map<String, PostingList> terms) {
+            boolean wasIndexed = false;
+            for (String term : removed) {
+                PostingList postings = terms.get(term);
+                if (postings != null && postings.remove(id)) {
+                    wasIndexed = true;
+                    if (postings.size() == 0) {
+                        terms.remove(term);
+                    }
+                }
+            }
+            boolean isIndexed = false;
+            for (String term : added) {
+                isIndexed |= terms.computeIfAbsent(term, key -> new PostingList()).add(id);
+            }
+            if (insert) {
+                return isIndexed ? 1 : 0;
+            }
+            if (delete) {
+                return wasIndexed ? -1 : 0;
+            }
+            return 0;
+        }
+    }
+}
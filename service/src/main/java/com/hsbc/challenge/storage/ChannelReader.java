@@ -0,0 +1,89 @@
+package com.hsbc.challenge.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Sequential reader of a file through a direct buffer which is refilled as records are consumed, so files larger
+ * than a single mapping can be read at channel speed. Optionally keeps a CRC32 of the bytes consumed so far.
+ */
+class ChannelReader {
+
+    private final FileChannel channel;
+    private final CRC32 checksum;
+    private ByteBuffer buffer;
+    private long bufferStart;
+    private int checksummed;
+
+    ChannelReader(FileChannel channel, int bufferBytes) {
+        this(channel, bufferBytes, null);
+    }
+
+    ChannelReader(FileChannel channel, int bufferBytes, CRC32 checksum) {
+        this.channel = channel;
+        this.checksum = checksum;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+        this.buffer.flip();
+    }
+
+    /**
+     * Makes at least {@code bytes} unread bytes available from the buffer position and returns false if the file
+     * ends before that.
+     */
+    boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        if (position() + bytes > channel.size()) {
+            return false;
+        }
+        updateChecksum();
+        bufferStart += buffer.position();
+        checksummed = 0;
+        if (bytes > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer, bufferStart + buffer.position()) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * File offset of the buffer position.
+     */
+    long position() {
+        return bufferStart + buffer.position();
+    }
+
+    /**
+     * CRC32 of everything consumed up to the buffer position.
+     */
+    long checksum() {
+        updateChecksum();
+        return checksum.getValue();
+    }
+
+    private void updateChecksum() {
+        if (checksum != null && buffer.position() > checksummed) {
+            ByteBuffer consumed = buffer.duplicate();
+            consumed.position(checksummed).limit(buffer.position());
+            checksum.update(consumed);
+            checksummed = buffer.position();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.hsbc.challenge.storage;
+
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostIdGenerator;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link PostRepository} backed by a {@link PostLog} instead of JPA, selected with {@code storage.engine=log}. Posts
+ * are written and read without entity hydration or dirty checking; users stay in the database, so authors are checked
+ * there and an unknown author fails the write with {@link DataIntegrityViolationException} like the foreign key does.
+ * Segments are compacted in the background.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "storage.engine", havingValue = "log")
+public class LogPostRepository implements PostRepository {
+
+    private static final Logger LOGGER = Logger.getLogger(LogPostRepository.class.getName());
+
+    @Value("${storage.log.directory:data/posts}")
+    private String directory;
+
+    @Value("${storage.log.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${storage.log.force-on-write:false}")
+    private boolean forceOnWrite;
+
+    @Value("${storage.log.compaction-interval-seconds:60}")
+    private long compactionIntervalSeconds;
+
+    @Value("${storage.log.compaction-garbage-ratio:0.5}")
+    private double compactionGarbageRatio;
+
+    @Value("${spring.jpa.properties." + PostIdGenerator.NODE_SETTING + ":0}")
+    private long node;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private PostLog log;
+    private PostIdGenerator idGenerator;
+    private ScheduledExecutorService compactor;
+
+    public LogPostRepository() {
+    }
+
+    public LogPostRepository(UserRepository userRepository, String directory, int segmentBytes, double compactionGarbageRatio) {
+        this.userRepository = userRepository;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        idGenerator = new PostIdGenerator(node);
+        log = new PostLog(Paths.get(directory), segmentBytes, forceOnWrite);
+        log.open();
+        if (compactionIntervalSeconds > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "post-log-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compact, compactionIntervalSeconds, compactionIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        log.close();
+    }
+
+    /**
+     * Compacts segments with at least the configured share of garbage and returns their number.
+     */
+    public int compact() {
+        try {
+            return log.compact(compactionGarbageRatio);
+        } catch (RuntimeException e) {
+            LOGGER.warning(() -> "Post log compaction failed: " + e);
+            return 0;
+        }
+    }
+
+    public Map<String, Long> stats() {
+        return log.stats();
+    }
+
+    @Override
+    public <S extends Post> S save(S post) {
+        requireAuthors(Collections.singleton(post.getAuthorId()));
+        log.put(prepare(post));
+        return post;
+    }
+
+    @Override
+    public <S extends Post> Iterable<S> saveAll(Iterable<S> posts) {
+        List<S> list = StreamSupport.stream(posts.spliterator(), false).collect(Collectors.toList());
+        requireAuthors(list.stream().map(Post::getAuthorId).collect(Collectors.toSet()));
+        list.forEach(this::prepare);
+        log.putAll(list);
+        return list;
+    }
+
+    @Override
+    public Optional<Post> findById(Long id) {
+        return Optional.ofNullable(log.read(id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return log.contains(id);
+    }
+
+    @Override
+    public Iterable<Post> findAll() {
+        return log.posts(log.ids()).collect(Collectors.toList());
+    }
+
+    @Override
+    public Iterable<Post> findAllById(Iterable<Long> ids) {
+        return StreamSupport.stream(ids.spliterator(), false).map(log::read).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public long count() {
+        return log.size();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        if (!log.delete(id)) {
+            throw new EmptyResultDataAccessException("No post with id " + id, 1);
+        }
+    }
+
+    @Override
+    public void delete(Post post) {
+        log.delete(post.getId());
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Post> posts) {
+        posts.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        log.ids().forEach(log::delete);
+    }
+
+    @Override
+    public List<PostView> findPostsBefore(long id, Pageable pageable) {
+        return page(log.ids().headSet(id, false).descendingSet(), pageable);
+    }
+
+    @Override
+    public List<PostView> findUserPostsBefore(long authorId, long id, Pageable pageable) {
+        return page(log.ids(authorId).headSet(id, false).descendingSet(), pageable);
+    }
+
+    @Override
+    public Optional<Post> findByIdAndAuthorId(long id, long authorId) {
+        return findById(id).filter(post -> post.getAuthorId() == authorId);
+    }
+
+    @Override
+    public int updateText(long id, long version, String text) {
+        return log.updateText(id, version, text) ? 1 : 0;
+    }
+
+    @Override
+    public int deleteByIdAndAuthorId(long id, long authorId) {
+        return findByIdAndAuthorId(id, authorId).isPresent() && log.delete(id) ? 1 : 0;
+    }
+
+    @Override
+    public Stream<PostView> streamAll() {
+        return log.posts(log.ids().descendingSet()).map(PostView::of);
+    }
+
+    @Override
+    public Stream<PostView> streamAllInIdOrder() {
+        return log.posts(log.ids()).map(PostView::of);
+    }
+
+    private List<PostView> page(NavigableSet<Long> ids, Pageable pageable) {
+        Stream<Post> posts = log.posts(ids);
+        if (pageable.isPaged()) {
+            posts = posts.skip(pageable.getOffset()).limit(pageable.getPageSize());
+        }
+        return posts.map(PostView::of).collect(Collectors.toList());
+    }
+
+    private Post prepare(Post post) {
+        if (post.getId() == 0) {
+            post.setId(idGenerator.nextId());
+            post.setCreationDateTime(new Date(PostIdGenerator.timestamp(post.getId())));
+        } else if (post.getCreationDateTime() == null) {
+            post.setCreationDateTime(new Date());
+        }
+        return post;
+    }
+
+    private void requireAuthors(Set<Long> authorIds) {
+        for (long authorId : authorIds) {
+            if (!userRepository.existsById(authorId)) {
+                throw new DataIntegrityViolationException("Author not found: " + authorId);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.hsbc.challenge.storage;
+
+import com.hsbc.challenge.model.Follow;
+import com.hsbc.challenge.repository.FollowRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link FollowRepository} served from the {@link MemoryStore}, selected with {@code storage.engine=memory}. Follows
+ * are kept by follower and followee, so lookups by follow id scan them.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "storage.engine", havingValue = "memory")
+public class MemoryFollowRepository implements FollowRepository {
+
+    @Autowired
+    private MemoryStore store;
+
+    public MemoryFollowRepository() {
+    }
+
+    public MemoryFollowRepository(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Long> findFolloweeIds(long followerId) {
+        return store.followeeIds(followerId);
+    }
+
+    @Override
+    public List<Long> findFollowerIds(long followeeId) {
+        return store.followerIds(followeeId);
+    }
+
+    @Override
+    public int deleteFollow(long followerId, long followeeId) {
+        return store.unfollow(followerId, followeeId) ? 1 : 0;
+    }
+
+    @Override
+    public <S extends Follow> S save(S follow) {
+        store.saveFollow(follow);
+        return follow;
+    }
+
+    @Override
+    public <S extends Follow> Iterable<S> saveAll(Iterable<S> follows) {
+        List<S> list = StreamSupport.stream(follows.spliterator(), false).collect(Collectors.toList());
+        list.forEach(store::saveFollow);
+        return list;
+    }
+
+    @Override
+    public Optional<Follow> findById(Long id) {
+        return store.follows().filter(follow -> follow.getId() == id).findFirst();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public Iterable<Follow> findAll() {
+        return store.follows().collect(Collectors.toList());
+    }
+
+    @Override
+    public Iterable<Follow> findAllById(Iterable<Long> ids) {
+        Set<Long> wanted = StreamSupport.stream(ids.spliterator(), false).collect(Collectors.toSet());
+        return store.follows().filter(follow -> wanted.contains(follow.getId())).collect(Collectors.toList());
+    }
+
+    @Override
+    public long count() {
+        return store.followCount();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        Follow follow = findById(id).orElseThrow(() -> new EmptyResultDataAccessException("No follow with id " + id, 1));
+        delete(follow);
+    }
+
+    @Override
+    public void delete(Follow follow) {
+        store.unfollow(follow.getFollowerId(), follow.getFolloweeId());
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Follow> follows) {
+        follows.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        store.follows().collect(Collectors.toList()).forEach(this::delete);
+    }
+}
@@ -0,0 +1,164 @@
+package com.hsbc.challenge.storage;
+
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostIdGenerator;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link PostRepository} served from the {@link MemoryStore}, selected with {@code storage.engine=memory}. Ids come
+ * from the {@link PostIdGenerator} as with JPA, and a batch is stored in a single group commit.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "storage.engine", havingValue = "memory")
+public class MemoryPostRepository implements PostRepository {
+
+    @Value("${spring.jpa.properties." + PostIdGenerator.NODE_SETTING + ":0}")
+    private long node;
+
+    @Autowired
+    private MemoryStore store;
+
+    private PostIdGenerator idGenerator;
+
+    public MemoryPostRepository() {
+    }
+
+    public MemoryPostRepository(MemoryStore store) {
+        this.store = store;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        idGenerator = new PostIdGenerator(node);
+    }
+
+    @Override
+    public <S extends Post> S save(S post) {
+        store.savePosts(Collections.singletonList(prepare(post)));
+        return post;
+    }
+
+    @Override
+    public <S extends Post> Iterable<S> saveAll(Iterable<S> posts) {
+        List<S> list = StreamSupport.stream(posts.spliterator(), false).collect(Collectors.toList());
+        list.forEach(this::prepare);
+        store.savePosts(list);
+        return list;
+    }
+
+    @Override
+    public Optional<Post> findById(Long id) {
+        return Optional.ofNullable(store.post(id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return store.postExists(id);
+    }
+
+    @Override
+    public Iterable<Post> findAll() {
+        return store.posts(store.postIds()).collect(Collectors.toList());
+    }
+
+    @Override
+    public Iterable<Post> findAllById(Iterable<Long> ids) {
+        return StreamSupport.stream(ids.spliterator(), false).map(store::post).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public long count() {
+        return store.postCount();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        if (!store.deletePost(id)) {
+            throw new EmptyResultDataAccessException("No post with id " + id, 1);
+        }
+    }
+
+    @Override
+    public void delete(Post post) {
+        store.deletePost(post.getId());
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Post> posts) {
+        posts.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        store.postIds().forEach(store::deletePost);
+    }
+
+    @Override
+    public List<PostView> findPostsBefore(long id, Pageable pageable) {
+        return page(store.postIds().headSet(id, false).descendingSet(), pageable);
+    }
+
+    @Override
+    public List<PostView> findUserPostsBefore(long authorId, long id, Pageable pageable) {
+        return page(store.postIds(authorId).headSet(id, false).descendingSet(), pageable);
+    }
+
+    @Override
+    public Optional<Post> findByIdAndAuthorId(long id, long authorId) {
+        return findById(id).filter(post -> post.getAuthorId() == authorId);
+    }
+
+    @Override
+    public int updateText(long id, long version, String text) {
+        return store.updateText(id, version, text) ? 1 : 0;
+    }
+
+    @Override
+    public int deleteByIdAndAuthorId(long id, long authorId) {
+        return findByIdAndAuthorId(id, authorId).isPresent() && store.deletePost(id) ? 1 : 0;
+    }
+
+    @Override
+    public Stream<PostView> streamAll() {
+        return store.views(store.postIds().descendingSet());
+    }
+
+    @Override
+    public Stream<PostView> streamAllInIdOrder() {
+        return store.views(store.postIds());
+    }
+
+    private List<PostView> page(NavigableSet<Long> ids, Pageable pageable) {
+        Stream<PostView> views = store.views(ids);
+        if (pageable.isPaged()) {
+            views = views.skip(pageable.getOffset()).limit(pageable.getPageSize());
+        }
+        return views.collect(Collectors.toList());
+    }
+
+    private Post prepare(Post post) {
+        if (post.getId() == 0) {
+            post.setId(idGenerator.nextId());
+            post.setCreationDateTime(new Date(PostIdGenerator.timestamp(post.getId())));
+        } else if (post.getCreationDateTime() == null) {
+            post.setCreationDateTime(new Date());
+        }
+        return post;
+    }
+}
@@ -0,0 +1,802 @@
+package com.hsbc.challenge.storage;
+
+import com.hsbc.challenge.model.Follow;
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.model.User;
+import com.hsbc.challenge.model.UserSummary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Users, follows and posts held in memory and made durable by a {@link WriteAheadLog} and periodic
+ * {@link Snapshot snapshots}, selected with {@code storage.engine=memory}. Every mutation is encoded as a journal
+ * record and applied by decoding that same record, so replaying the journal rebuilds exactly the state that was
+ * served. Mutations are validated and appended in sequence number order under the lock, the caller then waits for the
+ * group commit outside the lock and only then applies the records that became durable, so reads, which take no lock,
+ * never see a change which could still be lost. Until a record is applied, validation of later writes sees its effect
+ * through the staged changes. When the journal fails it rejects every further write and the failed changes are
+ * dropped without ever becoming visible.
+ * <p>
+ * On start the latest valid snapshot is loaded and only the journal written since it was started is replayed. The
+ * previous snapshot and the journal since it are kept as a fallback.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.engine", havingValue = "memory")
+public class MemoryStore {
+
+    private static final Logger LOGGER = Logger.getLogger(MemoryStore.class.getName());
+
+    static final byte USER = 1;
+    static final byte USER_DELETE = 2;
+    static final byte FOLLOW = 3;
+    static final byte UNFOLLOW = 4;
+    static final byte POST = 5;
+    static final byte POST_DELETE = 6;
+
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    @Value("${storage.memory.directory:data/memory}")
+    private String directory;
+
+    @Value("${storage.memory.sync:true}")
+    private boolean sync;
+
+    @Value("${storage.memory.snapshot-interval-seconds:300}")
+    private long snapshotIntervalSeconds;
+
+    @Value("${storage.memory.snapshot-min-records:10000}")
+    private long snapshotMinRecords;
+
+    @Value("${storage.memory.snapshot-on-shutdown:true}")
+    private boolean snapshotOnShutdown;
+
+    private final ConcurrentSkipListMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final Map<Long, ConcurrentSkipListMap<Long, Long>> followees = new ConcurrentHashMap<>();
+    private final Map<Long, ConcurrentSkipListSet<Long>> followers = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> followeeCounts = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> followerCounts = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, StoredPost> posts = new ConcurrentSkipListMap<>();
+    private final Map<Long, ConcurrentSkipListSet<Long>> authors = new ConcurrentHashMap<>();
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private final Map<Key, Pending> staged = new HashMap<>();
+    private final Encoder encoder = new Encoder();
+    private final Object snapshotLock = new Object();
+
+    private Path path;
+    private WriteAheadLog journal;
+    private ScheduledExecutorService snapshotter;
+    private volatile long followCount;
+    private long nextLsn;
+    private long nextUserId = 1;
+    private long nextFollowId = 1;
+    private volatile long snapshotLsn;
+    private volatile long snapshots;
+    private volatile long lastSnapshotMillis;
+    private long recoveryMillis;
+
+    public MemoryStore() {
+    }
+
+    public MemoryStore(String directory, boolean sync) {
+        this(directory, sync, null);
+    }
+
+    MemoryStore(String directory, boolean sync, WriteAheadLog journal) {
+        this.directory = directory;
+        this.sync = sync;
+        this.journal = journal;
+        init();
+    }
+
+    @PostConstruct
+    synchronized void init() {
+        long started = System.currentTimeMillis();
+        path = Paths.get(directory);
+        long fromLsn = 1;
+        for (Path file : Snapshot.files(path)) {
+            try {
+                Snapshot snapshot = Snapshot.read(file, this::apply);
+                fromLsn = snapshot.lsn;
+                nextUserId = Math.max(nextUserId, snapshot.nextUserId);
+                nextFollowId = Math.max(nextFollowId, snapshot.nextFollowId);
+                break;
+            } catch (DataAccessResourceFailureException e) {
+                LOGGER.warning(() -> "Skipping unreadable snapshot " + file + ": " + e.getMessage());
+                clear();
+            }
+        }
+        snapshotLsn = fromLsn;
+        if (journal == null) {
+            journal = new WriteAheadLog(path, sync);
+        }
+        nextLsn = journal.replay(fromLsn, (lsn, type, payload) -> apply(type, payload));
+        journal.open(nextLsn);
+        recoveryMillis = System.currentTimeMillis() - started;
+        LOGGER.info(() -> "Memory store loaded, users: " + users.size() + " follows: " + followCount + " posts: "
+                + posts.size() + " snapshot: " + snapshotLsn + " journal: " + (nextLsn - snapshotLsn) + " in "
+                + recoveryMillis + " ms");
+        if (snapshotIntervalSeconds > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "memory-store-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::snapshotIfDue, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        if (snapshotOnShutdown && journalled() > 0) {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                LOGGER.warning(() -> "Snapshot on shutdown failed: " + e);
+            }
+        }
+        journal.close();
+    }
+
+    /**
+     * Writes a snapshot and drops the journal files and snapshots no longer needed for recovery. Returns the
+     * journal sequence number the snapshot starts at.
+     */
+    public long snapshot() {
+        synchronized (snapshotLock) {
+            long started = System.currentTimeMillis();
+            long lsn;
+            long userSequence;
+            long followSequence;
+            synchronized (this) {
+                lsn = nextLsn;
+                journal.roll(lsn);
+                publish(lsn - 1);
+                userSequence = nextUserId;
+                followSequence = nextFollowId;
+            }
+            Encoder snapshotEncoder = new Encoder();
+            Snapshot snapshot;
+            try (Snapshot.Writer writer = new Snapshot.Writer(path, lsn, userSequence, followSequence)) {
+                users.values().forEach(user -> writer.write(USER, snapshotEncoder.user(user.getId(), user.getUsername())));
+                followees.forEach((followerId, follows) -> follows.forEach((followeeId, id) ->
+                        writer.write(FOLLOW, snapshotEncoder.follow(id, followerId, followeeId))));
+                posts.values().forEach(post -> writer.write(POST, snapshotEncoder.post(post)));
+                snapshot = writer.commit();
+            }
+            List<Path> files = Snapshot.files(path);
+            for (Path file : files.subList(Math.min(SNAPSHOTS_KEPT, files.size()), files.size())) {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    LOGGER.warning(() -> "Cannot delete snapshot: " + e);
+                }
+            }
+            journal.truncateBefore(Snapshot.lsn(files.get(Math.min(SNAPSHOTS_KEPT, files.size()) - 1)));
+            snapshotLsn = lsn;
+            snapshots++;
+            lastSnapshotMillis = System.currentTimeMillis() - started;
+            LOGGER.info(() -> "Snapshot " + snapshot.path + " written, records: " + snapshot.records + " in "
+                    + lastSnapshotMillis + " ms");
+            return lsn;
+        }
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("users", (long) users.size());
+        stats.put("follows", followCount);
+        stats.put("posts", (long) posts.size());
+        stats.put("snapshotLsn", snapshotLsn);
+        stats.put("snapshots", snapshots);
+        stats.put("lastSnapshotMillis", lastSnapshotMillis);
+        stats.put("recoveryMillis", recoveryMillis);
+        journal.stats().forEach((key, value) -> stats.put("journal." + key, value));
+        return stats;
+    }
+
+    // users
+
+    public User saveUser(User user) {
+        long lsn;
+        synchronized (this) {
+            if (user.getId() == 0) {
+                user.setId(nextUserId++);
+            }
+            lsn = commit(USER, encoder.user(user.getId(), user.getUsername()));
+        }
+        awaitDurable(lsn);
+        return user;
+    }
+
+    /**
+     * Deletes the user, refusing like a foreign key would while the user still has posts or follows.
+     */
+    public boolean deleteUser(long id) {
+        long lsn;
+        while (true) {
+            long settle;
+            synchronized (this) {
+                settle = pending.isEmpty() ? 0 : pending.peekLast().lsn;
+                if (settle == 0) {
+                    if (!users.containsKey(id)) {
+                        return false;
+                    }
+                    if (!postIds(id).isEmpty() || !followeeIds(id).isEmpty() || !followerIds(id).isEmpty()) {
+                        throw new DataIntegrityViolationException("User " + id + " still has posts or follows");
+                    }
+                    lsn = commit(USER_DELETE, encoder.id(id));
+                    break;
+                }
+            }
+            // posts and follows are checked on the applied state, so staged changes are settled first
+            awaitDurable(settle);
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    public Optional<User> user(long id) {
+        return Optional.ofNullable(users.get(id)).map(MemoryStore::copy);
+    }
+
+    public boolean userExists(long id) {
+        return users.containsKey(id);
+    }
+
+    public long userCount() {
+        return users.size();
+    }
+
+    public Stream<User> users() {
+        return users.values().stream().map(MemoryStore::copy);
+    }
+
+    public Stream<UserSummary> summaries() {
+        return users.values().stream().map(this::summary);
+    }
+
+    public Stream<UserSummary> summariesAfter(long id) {
+        return users.tailMap(id, false).values().stream().map(this::summary);
+    }
+
+    public List<UserSummary> summaries(Collection<Long> ids) {
+        return ids.stream()
+                .distinct()
+                .sorted()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(this::summary)
+                .collect(Collectors.toList());
+    }
+
+    // follows
+
+    /**
+     * Stores the follow, failing with {@link DataIntegrityViolationException} like the unique and foreign key
+     * constraints do if it exists already or either user does not.
+     */
+    public Follow saveFollow(Follow follow) {
+        long lsn;
+        synchronized (this) {
+            if (!stagedUserExists(follow.getFollowerId()) || !stagedUserExists(follow.getFolloweeId())) {
+                throw new DataIntegrityViolationException("User not found: " + follow.getFollowerId() + " or " + follow.getFolloweeId());
+            }
+            if (stagedFollowing(follow.getFollowerId(), follow.getFolloweeId())) {
+                throw new DataIntegrityViolationException("Already following: " + follow.getFollowerId() + " -> " + follow.getFolloweeId());
+            }
+            if (follow.getId() == 0) {
+                follow.setId(nextFollowId++);
+            }
+            lsn = commit(FOLLOW, encoder.follow(follow.getId(), follow.getFollowerId(), follow.getFolloweeId()));
+        }
+        awaitDurable(lsn);
+        return follow;
+    }
+
+    public boolean unfollow(long followerId, long followeeId) {
+        long lsn;
+        synchronized (this) {
+            if (!stagedFollowing(followerId, followeeId)) {
+                return false;
+            }
+            lsn = commit(UNFOLLOW, encoder.unfollow(followerId, followeeId));
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    public boolean isFollowing(long followerId, long followeeId) {
+        Map<Long, Long> follows = followees.get(followerId);
+        return follows != null && follows.containsKey(followeeId);
+    }
+
+    public List<Long> followeeIds(long followerId) {
+        Map<Long, Long> follows = followees.get(followerId);
+        return follows == null ? Collections.emptyList() : new ArrayList<>(follows.keySet());
+    }
+
+    public List<Long> followerIds(long followeeId) {
+        Set<Long> ids = followers.get(followeeId);
+        return ids == null ? Collections.emptyList() : new ArrayList<>(ids);
+    }
+
+    /**
+     * All follows, ordered by follower and followee rather than by id.
+     */
+    public Stream<Follow> follows() {
+        return followees.entrySet().stream().flatMap(follower -> follower.getValue().entrySet().stream()
+                .map(followee -> follow(followee.getValue(), follower.getKey(), followee.getKey())));
+    }
+
+    public long followCount() {
+        return followCount;
+    }
+
+    // posts
+
+    /**
+     * Stores the posts in one group commit. Authors must exist and a stored post is replaced only if the version
+     * matches, as with a JPA {@code @Version}; nothing is written if any post fails. Versions of replaced posts are
+     * incremented.
+     */
+    public void savePosts(Collection<? extends Post> batch) {
+        long lsn = 0;
+        synchronized (this) {
+            for (Post post : batch) {
+                if (!stagedUserExists(post.getAuthorId())) {
+                    throw new DataIntegrityViolationException("Author not found: " + post.getAuthorId());
+                }
+                StoredPost stored = stagedPost(post.getId());
+                if (stored != null && stored.version != post.getVersion()) {
+                    throw new OptimisticLockingFailureException("Post " + post.getId() + " was modified, version: " + stored.version);
+                }
+            }
+            for (Post post : batch) {
+                if (stagedPost(post.getId()) != null) {
+                    post.setVersion(post.getVersion() + 1);
+                }
+                lsn = commit(POST, encoder.post(post.getId(), post.getAuthorId(), post.getCreationDateTime().getTime(),
+                        post.getVersion(), post.getText()));
+            }
+        }
+        awaitDurable(lsn);
+    }
+
+    public boolean updateText(long id, long version, String text) {
+        long lsn;
+        synchronized (this) {
+            StoredPost post = stagedPost(id);
+            if (post == null || post.version != version) {
+                return false;
+            }
+            lsn = commit(POST, encoder.post(id, post.authorId, post.created, version + 1, text));
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    public boolean deletePost(long id) {
+        long lsn;
+        synchronized (this) {
+            if (stagedPost(id) == null) {
+                return false;
+            }
+            lsn = commit(POST_DELETE, encoder.id(id));
+        }
+        awaitDurable(lsn);
+        return true;
+    }
+
+    public Post post(long id) {
+        StoredPost post = posts.get(id);
+        return post == null ? null : post.toPost();
+    }
+
+    public boolean postExists(long id) {
+        return posts.containsKey(id);
+    }
+
+    public long postCount() {
+        return posts.size();
+    }
+
+    /**
+     * Ids of all posts in ascending order, a live view.
+     */
+    public NavigableSet<Long> postIds() {
+        return posts.keySet();
+    }
+
+    /**
+     * Ids of the author's posts in ascending order, a live view.
+     */
+    public NavigableSet<Long> postIds(long authorId) {
+        NavigableSet<Long> ids = authors.get(authorId);
+        return ids == null ? Collections.emptyNavigableSet() : ids;
+    }
+
+    public Stream<Post> posts(NavigableSet<Long> ids) {
+        return stored(ids).map(StoredPost::toPost);
+    }
+
+    public Stream<PostView> views(NavigableSet<Long> ids) {
+        return stored(ids).map(StoredPost::toView);
+    }
+
+    private Stream<StoredPost> stored(NavigableSet<Long> ids) {
+        return ids.stream().map(posts::get).filter(Objects::nonNull);
+    }
+
+    // journal
+
+    /**
+     * Appends the record and stages it; called holding the store lock, the caller then passes the returned sequence
+     * number to {@link #awaitDurable} after releasing it.
+     */
+    private long commit(byte type, ByteBuffer payload) {
+        journal.append(nextLsn, type, payload);
+        Pending record = new Pending(nextLsn, type, payload);
+        pending.add(record);
+        staged.put(record.key, record);
+        return nextLsn++;
+    }
+
+    /**
+     * Waits for the record to become durable and applies it together with every durable record before it. If the
+     * journal failed, the records which did not become durable are dropped; the journal rejects further writes.
+     */
+    private void awaitDurable(long lsn) {
+        try {
+            journal.awaitDurable(lsn);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                publish(journal.durableLsn());
+                pending.clear();
+                staged.clear();
+            }
+            throw e;
+        }
+        publish(lsn);
+    }
+
+    private synchronized void publish(long lsn) {
+        while (!pending.isEmpty() && pending.peek().lsn <= lsn) {
+            Pending record = pending.poll();
+            apply(record.type, record.payload.duplicate());
+            staged.remove(record.key, record);
+        }
+    }
+
+    private boolean stagedUserExists(long id) {
+        Pending record = staged.get(new Key(USER, id, 0));
+        return record == null ? users.containsKey(id) : record.type == USER;
+    }
+
+    private boolean stagedFollowing(long followerId, long followeeId) {
+        Pending record = staged.get(new Key(FOLLOW, followerId, followeeId));
+        return record == null ? isFollowing(followerId, followeeId) : record.type == FOLLOW;
+    }
+
+    private StoredPost stagedPost(long id) {
+        Pending record = staged.get(new Key(POST, id, 0));
+        return record == null ? posts.get(id) : record.post;
+    }
+
+    private synchronized long journalled() {
+        return nextLsn - snapshotLsn;
+    }
+
+    private void snapshotIfDue() {
+        try {
+            if (journalled() >= Math.max(1, snapshotMinRecords)) {
+                snapshot();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warning(() -> "Snapshot failed: " + e);
+        }
+    }
+
+    private void apply(byte type, ByteBuffer payload) {
+        switch (type) {
+            case USER: {
+                long id = payload.getLong();
+                users.put(id, user(id, string(payload)));
+                nextUserId = Math.max(nextUserId, id + 1);
+                break;
+            }
+            case USER_DELETE:
+                users.remove(payload.getLong());
+                break;
+            case FOLLOW: {
+                long id = payload.getLong();
+                long followerId = payload.getLong();
+                long followeeId = payload.getLong();
+                if (followees.computeIfAbsent(followerId, key -> new ConcurrentSkipListMap<>()).put(followeeId, id) == null) {
+                    followCount++;
+                    followeeCounts.merge(followerId, 1, Integer::sum);
+                    followerCounts.merge(followeeId, 1, Integer::sum);
+                }
+                followers.computeIfAbsent(followeeId, key -> new ConcurrentSkipListSet<>()).add(followerId);
+                nextFollowId = Math.max(nextFollowId, id + 1);
+                break;
+            }
+            case UNFOLLOW: {
+                long followerId = payload.getLong();
+                long followeeId = payload.getLong();
+                Map<Long, Long> follows = followees.get(followerId);
+                if (follows != null && follows.remove(followeeId) != null) {
+                    followCount--;
+                    followeeCounts.computeIfPresent(followerId, (key, count) -> count > 1 ? count - 1 : null);
+                    followerCounts.computeIfPresent(followeeId, (key, count) -> count > 1 ? count - 1 : null);
+                }
+                Set<Long> ids = followers.get(followeeId);
+                if (ids != null) {
+                    ids.remove(followerId);
+                }
+                break;
+            }
+            case POST: {
+                StoredPost post = new StoredPost(payload.getLong(), payload.getLong(), payload.getLong(), payload.getLong(), string(payload));
+                StoredPost previous = posts.put(post.id, post);
+                if (previous != null && previous.authorId != post.authorId) {
+                    postIds(previous.authorId).remove(previous.id);
+                }
+                authors.computeIfAbsent(post.authorId, key -> new ConcurrentSkipListSet<>()).add(post.id);
+                break;
+            }
+            case POST_DELETE: {
+                StoredPost removed = posts.remove(payload.getLong());
+                if (removed != null) {
+                    postIds(removed.authorId).remove(removed.id);
+                }
+                break;
+            }
+            default:
+                throw new DataAccessResourceFailureException("Unknown record type: " + type);
+        }
+    }
+
+    private void clear() {
+        users.clear();
+        followees.clear();
+        followers.clear();
+        followeeCounts.clear();
+        followerCounts.clear();
+        posts.clear();
+        authors.clear();
+        followCount = 0;
+        nextUserId = 1;
+        nextFollowId = 1;
+        snapshotLsn = 0;
+    }
+
+    /**
+     * Summary with follow counts kept on apply; the skip lists would have to be walked to be sized.
+     */
+    private UserSummary summary(User user) {
+        return new UserSummary(user.getId(), user.getUsername(), followerCounts.getOrDefault(user.getId(), 0),
+                followeeCounts.getOrDefault(user.getId(), 0));
+    }
+
+    private static User copy(User user) {
+        return user(user.getId(), user.getUsername());
+    }
+
+    private static User user(long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+
+    private static Follow follow(long id, long followerId, long followeeId) {
+        Follow follow = new Follow(followerId, followeeId);
+        follow.setId(id);
+        return follow;
+    }
+
+    private static String string(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Record appended to the journal but not applied yet, with the key it changes.
+     */
+    private static final class Pending {
+
+        final long lsn;
+        final byte type;
+        final ByteBuffer payload;
+        final Key key;
+        final StoredPost post;
+
+        Pending(long lsn, byte type, ByteBuffer payload) {
+            this.lsn = lsn;
+            this.type = type;
+            this.payload = ByteBuffer.allocate(payload.remaining()).put(payload.duplicate());
+            this.payload.flip();
+            ByteBuffer in = payload.duplicate();
+            switch (type) {
+                case USER:
+                case USER_DELETE:
+                    key = new Key(USER, in.getLong(), 0);
+                    post = null;
+                    break;
+                case FOLLOW:
+                    in.getLong();
+                    key = new Key(FOLLOW, in.getLong(), in.getLong());
+                    post = null;
+                    break;
+                case UNFOLLOW:
+                    key = new Key(FOLLOW, in.getLong(), in.getLong());
+                    post = null;
+                    break;
+                case POST:
+                    post = new StoredPost(in.getLong(), in.getLong(), in.getLong(), in.getLong(), string(in));
+                    key = new Key(POST, post.id, 0);
+                    break;
+                case POST_DELETE:
+                    key = new Key(POST, in.getLong(), 0);
+                    post = null;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown record type: " + type);
+            }
+        }
+    }
+
+    private static final class Key {
+
+        final byte kind;
+        final long first;
+        final long second;
+
+        Key(byte kind, long first, long second) {
+            this.kind = kind;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return kind == key.kind && first == key.first && second == key.second;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, first, second);
+        }
+    }
+
+    private static final class StoredPost {
+
+        final long id;
+        final long authorId;
+        final long created;
+        final long version;
+        final String text;
+
+        StoredPost(long id, long authorId, long created, long version, String text) {
+            this.id = id;
+            this.authorId = authorId;
+            this.created = created;
+            this.version = version;
+            this.text = text;
+        }
+
+        Post toPost() {
+            Post post = new Post();
+            post.setId(id);
+            post.setAuthorId(authorId);
+            post.setCreationDateTime(new Date(created));
+            post.setVersion(version);
+            post.setText(text);
+            return post;
+        }
+
+        PostView toView() {
+            return new PostView(id, authorId, text, new Date(created));
+        }
+    }
+
+    /**
+     * Encodes record payloads into a reused buffer, returned ready to read.
+     */
+    private static final class Encoder {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        ByteBuffer id(long id) {
+            return ready(start(8).putLong(id));
+        }
+
+        ByteBuffer user(long id, String username) {
+            byte[] bytes = bytes(username);
+            ByteBuffer out = start(8 + 4 + length(bytes)).putLong(id);
+            return ready(string(out, bytes));
+        }
+
+        ByteBuffer follow(long id, long followerId, long followeeId) {
+            return ready(start(24).putLong(id).putLong(followerId).putLong(followeeId));
+        }
+
+        ByteBuffer unfollow(long followerId, long followeeId) {
+            return ready(start(16).putLong(followerId).putLong(followeeId));
+        }
+
+        ByteBuffer post(StoredPost post) {
+            return post(post.id, post.authorId, post.created, post.version, post.text);
+        }
+
+        ByteBuffer post(long id, long authorId, long created, long version, String text) {
+            byte[] bytes = bytes(text);
+            ByteBuffer out = start(32 + 4 + length(bytes)).putLong(id).putLong(authorId).putLong(created).putLong(version);
+            return ready(string(out, bytes));
+        }
+
+        private ByteBuffer start(int bytes) {
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        private static ByteBuffer ready(ByteBuffer out) {
+            out.flip();
+            return out;
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static int length(byte[] bytes) {
+            return bytes == null ? 0 : bytes.length;
+        }
+
+        private static ByteBuffer string(ByteBuffer out, byte[] bytes) {
+            if (bytes == null) {
+                return out.putInt(-1);
+            }
+            return out.putInt(bytes.length).put(bytes);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.hsbc.challenge.storage;
+
+import com.hsbc.challenge.model.User;
+import com.hsbc.challenge.model.UserSummary;
+import com.hsbc.challenge.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link UserRepository} served from the {@link MemoryStore}, selected with {@code storage.engine=memory}.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "storage.engine", havingValue = "memory")
+public class MemoryUserRepository implements UserRepository {
+
+    @Autowired
+    private MemoryStore store;
+
+    public MemoryUserRepository() {
+    }
+
+    public MemoryUserRepository(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public <S extends User> S save(S user) {
+        store.saveUser(user);
+        return user;
+    }
+
+    @Override
+    public <S extends User> Iterable<S> saveAll(Iterable<S> users) {
+        List<S> list = StreamSupport.stream(users.spliterator(), false).collect(Collectors.toList());
+        list.forEach(store::saveUser);
+        return list;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return store.user(id);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return store.userExists(id);
+    }
+
+    @Override
+    public Iterable<User> findAll() {
+        return store.users().collect(Collectors.toList());
+    }
+
+    @Override
+    public Iterable<User> findAllById(Iterable<Long> ids) {
+        return StreamSupport.stream(ids.spliterator(), false)
+                .map(store::user)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long count() {
+        return store.userCount();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        if (!store.deleteUser(id)) {
+            throw new EmptyResultDataAccessException("No user with id " + id, 1);
+        }
+    }
+
+    @Override
+    public void delete(User user) {
+        store.deleteUser(user.getId());
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends User> users) {
+        users.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        store.users().forEach(this::delete);
+    }
+
+    @Override
+    public List<UserSummary> findSummariesAfter(long id, Pageable pageable) {
+        Stream<UserSummary> summaries = store.summariesAfter(id);
+        if (pageable.isPaged()) {
+            summaries = summaries.skip(pageable.getOffset()).limit(pageable.getPageSize());
+        }
+        return summaries.collect(Collectors.toList());
+    }
+
+    @Override
+    public List<UserSummary> findSummariesByIdIn(Collection<Long> ids) {
+        return store.summaries(ids);
+    }
+
+    @Override
+    public Stream<UserSummary> streamAllSummaries() {
+        return store.summaries();
+    }
+}
@@ -0,0 +1,507 @@
+package com.hsbc.challenge.storage;
+
+import com.hsbc.challenge.model.Post;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.logging.Logger;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Posts stored as records appended to memory mapped segment files. Every write, including an edit, appends a full
+ * record and every delete appends a tombstone; an in-memory index maps each post id to the location of its latest
+ * record, and each author to the ids of their posts. On open the segments are replayed in order to rebuild the index,
+ * a torn record at the end of the last segment ends the replay.
+ * <p>
+ * Record layout: length of the rest of the record, type, id, author id, creation millis, version, text length,
+ * UTF-8 text and a CRC32 of everything after the length.
+ * <p>
+ * Sealed segments whose records are mostly superseded are compacted: the live records are copied into a new file
+ * which atomically replaces the segment, so the order of segments, and of records across them, never changes.
+ * Tombstones are kept until their segment is the oldest one, as an older segment may still hold the deleted post.
+ * Writes are serialized, reads take no lock. Replaced buffers are left to the garbage collector rather than unmapped,
+ * so readers still holding them stay safe.
+ */
+class PostLog implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(PostLog.class.getName());
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final int TYPE = 4;
+    private static final int ID = 5;
+    private static final int AUTHOR_ID = 13;
+    private static final int CREATED = 21;
+    private static final int VERSION = 29;
+    private static final int TEXT_LENGTH = 37;
+    private static final int TEXT = 41;
+    private static final int OVERHEAD = TEXT + 4;
+
+    private static final String SUFFIX = ".log";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean forceOnWrite;
+
+    private final ConcurrentSkipListMap<Long, Long> locations = new ConcurrentSkipListMap<>();
+    private final Map<Long, ConcurrentSkipListSet<Long>> authors = new ConcurrentHashMap<>();
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final TreeMap<Long, Segment> ordered = new TreeMap<>();
+    private final Object compactionLock = new Object();
+    private final CRC32 crc = new CRC32();
+
+    private Segment active;
+    private ByteBuffer writer;
+    private int nextSegmentId;
+    private long compactions;
+
+    PostLog(Path directory, int segmentBytes, boolean forceOnWrite) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.forceOnWrite = forceOnWrite;
+    }
+
+    synchronized void open() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    if (name.endsWith(COMPACTING_SUFFIX)) {
+                        Files.delete(path);
+                    } else if (name.endsWith(SUFFIX)) {
+                        files.add(path);
+                    }
+                }
+            }
+            files.sort(Comparator.comparingLong(PostLog::sequence));
+            for (Path path : files) {
+                Segment segment = Segment.map(nextSegmentId++, sequence(path), path, -1, true);
+                register(segment);
+                segment.writePosition = scan(segment, (type, id, position, size) -> replay(segment, type, id, position, size));
+            }
+            if (ordered.isEmpty()) {
+                roll();
+            } else {
+                active = ordered.lastEntry().getValue();
+                writer = active.view();
+                clearTail(active);
+            }
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot open post log in " + directory, e);
+        }
+        LOGGER.info(() -> "Post log opened, posts: " + locations.size() + " segments: " + ordered.size());
+    }
+
+    Post read(long id) {
+        while (true) {
+            Long location = locations.get(id);
+            if (location == null) {
+                return null;
+            }
+            Segment segment = segments.get(segmentId(location));
+            if (segment != null) {
+                return decode(segment, offset(location));
+            }
+        }
+    }
+
+    boolean contains(long id) {
+        return locations.containsKey(id);
+    }
+
+    int size() {
+        return locations.size();
+    }
+
+    /**
+     * Ids of all posts in ascending order, a live view.
+     */
+    NavigableSet<Long> ids() {
+        return locations.keySet();
+    }
+
+    /**
+     * Ids of the author's posts in ascending order, a live view.
+     */
+    NavigableSet<Long> ids(long authorId) {
+        NavigableSet<Long> ids = authors.get(authorId);
+        return ids == null ? Collections.emptyNavigableSet() : ids;
+    }
+
+    Stream<Post> posts(NavigableSet<Long> ids) {
+        return ids.stream().map(this::read).filter(Objects::nonNull);
+    }
+
+    /**
+     * Writes the post. A stored post is replaced only if the version matches, as with a JPA {@code @Version}, and the
+     * version of the written post is incremented.
+     */
+    synchronized void put(Post post) {
+        Long previous = locations.get(post.getId());
+        if (previous != null) {
+            long version = segments.get(segmentId(previous)).buffer.getLong(offset(previous) + VERSION);
+            if (version != post.getVersion()) {
+                throw new OptimisticLockingFailureException("Post " + post.getId() + " was modified, version: " + version);
+            }
+            post.setVersion(version + 1);
+        }
+        write(post.getId(), post.getAuthorId(), post.getCreationDateTime().getTime(), post.getVersion(), post.getText());
+    }
+
+    synchronized void putAll(Collection<? extends Post> posts) {
+        for (Post post : posts) {
+            put(post);
+        }
+    }
+
+    synchronized boolean updateText(long id, long version, String text) {
+        Post post = read(id);
+        if (post == null || post.getVersion() != version) {
+            return false;
+        }
+        write(id, post.getAuthorId(), post.getCreationDateTime().getTime(), version + 1, text);
+        return true;
+    }
+
+    synchronized boolean delete(long id) {
+        if (!locations.containsKey(id)) {
+            return false;
+        }
+        long location = append(DELETE, id, 0, 0, 0, new byte[0]);
+        active.tombstoneBytes += recordSize(active, offset(location));
+        unindex(id);
+        return true;
+    }
+
+    /**
+     * Compacts every sealed segment with at least the given share of superseded bytes and returns their number.
+     */
+    int compact(double minGarbageRatio) {
+        synchronized (compactionLock) {
+            int compacted = 0;
+            for (Segment segment : candidates(minGarbageRatio)) {
+                compact(segment);
+                compacted++;
+            }
+            return compacted;
+        }
+    }
+
+    synchronized Map<String, Long> stats() {
+        long bytes = 0;
+        long garbage = 0;
+        long tombstones = 0;
+        for (Segment segment : ordered.values()) {
+            bytes += segment.writePosition;
+            garbage += segment.garbageBytes;
+            tombstones += segment.tombstoneBytes;
+        }
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("posts", (long) locations.size());
+        stats.put("segments", (long) ordered.size());
+        stats.put("bytes", bytes);
+        stats.put("garbageBytes", garbage);
+        stats.put("tombstoneBytes", tombstones);
+        stats.put("compactions", compactions);
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (active != null) {
+            active.buffer.force();
+        }
+    }
+
+    private void write(long id, long authorId, long created, long version, String text) {
+        long location = append(PUT, id, authorId, created, version, text.getBytes(StandardCharsets.UTF_8));
+        index(id, location, authorId);
+    }
+
+    private long append(byte type, long id, long authorId, long created, long version, byte[] text) {
+        int size = OVERHEAD + text.length;
+        if (size > segmentBytes) {
+            throw new InvalidDataAccessApiUsageException("Post " + id + " does not fit in a segment, bytes: " + size);
+        }
+        if (active.writePosition + size > active.capacity()) {
+            roll();
+        }
+        int position = active.writePosition;
+        writer.position(position + TYPE);
+        writer.put(type).putLong(id).putLong(authorId).putLong(created).putLong(version).putInt(text.length).put(text);
+        writer.putInt(checksum(active, position, size));
+        writer.putInt(position, size - TYPE);
+        active.writePosition = position + size;
+        if (forceOnWrite) {
+            active.buffer.force();
+        }
+        return location(active.id, position);
+    }
+
+    private void roll() {
+        long sequence = active == null ? 1 : active.sequence + 1;
+        try {
+            if (active != null) {
+                active.buffer.force();
+            }
+            Segment segment = Segment.map(nextSegmentId++, sequence, directory.resolve(String.format("%016d%s", sequence, SUFFIX)), segmentBytes, true);
+            register(segment);
+            active = segment;
+            writer = segment.view();
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot create post log segment " + sequence, e);
+        }
+    }
+
+    private void replay(Segment segment, byte type, long id, int position, int size) {
+        if (type == PUT) {
+            index(id, location(segment.id, position), segment.buffer.getLong(position + AUTHOR_ID));
+        } else {
+            segment.tombstoneBytes += size;
+            unindex(id);
+        }
+    }
+
+    private void index(long id, long location, long authorId) {
+        Long previous = locations.put(id, location);
+        authors.computeIfAbsent(authorId, key -> new ConcurrentSkipListSet<>()).add(id);
+        if (previous != null) {
+            long previousAuthorId = release(previous);
+            if (previousAuthorId != authorId) {
+                removeAuthorId(previousAuthorId, id);
+            }
+        }
+    }
+
+    private void unindex(long id) {
+        Long previous = locations.remove(id);
+        if (previous != null) {
+            removeAuthorId(release(previous), id);
+        }
+    }
+
+    /**
+     * Counts the superseded record as garbage of its segment and returns its author id.
+     */
+    private long release(long location) {
+        Segment segment = segments.get(segmentId(location));
+        segment.garbageBytes += recordSize(segment, offset(location));
+        return segment.buffer.getLong(offset(location) + AUTHOR_ID);
+    }
+
+    private void removeAuthorId(long authorId, long id) {
+        Set<Long> ids = authors.get(authorId);
+        if (ids != null) {
+            ids.remove(id);
+        }
+    }
+
+    private synchronized List<Segment> candidates(double minGarbageRatio) {
+        List<Segment> candidates = new ArrayList<>();
+        Segment oldest = ordered.firstEntry().getValue();
+        for (Segment segment : ordered.values()) {
+            if (segment != active && segment.garbageRatio(segment == oldest) >= minGarbageRatio) {
+                candidates.add(segment);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Copies the live records without holding the write lock, then swaps the new file in. Records superseded while
+     * copying are counted as garbage of the new file, which is still older than the records superseding them.
+     */
+    private void compact(Segment segment) {
+        boolean oldest;
+        synchronized (this) {
+            oldest = ordered.firstKey() == segment.sequence;
+        }
+        ByteBuffer source = segment.view();
+        ByteBuffer target = ByteBuffer.allocate(segment.writePosition);
+        LongStream.Builder moves = LongStream.builder();
+        long[] tombstoneBytes = new long[1];
+        scan(segment, (type, id, position, size) -> {
+            if (type == PUT) {
+                Long location = locations.get(id);
+                if (location == null || location != location(segment.id, position)) {
+                    return;
+                }
+                moves.add((long) position << 32 | target.position());
+            } else if (oldest) {
+                return;
+            } else {
+                tombstoneBytes[0] += size;
+            }
+            source.limit(position + size).position(position);
+            target.put(source);
+        });
+        target.flip();
+        int length = target.limit();
+        try {
+            Path compacted = segment.path.resolveSibling(segment.path.getFileName() + COMPACTING_SUFFIX);
+            if (length > 0) {
+                try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    while (target.hasRemaining()) {
+                        channel.write(target);
+                    }
+                    channel.force(true);
+                }
+            }
+            synchronized (this) {
+                active.buffer.force();
+            }
+            if (length > 0) {
+                Files.move(compacted, segment.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.delete(segment.path);
+            }
+            swap(segment, length, moves.build().toArray(), tombstoneBytes[0]);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot compact post log segment " + segment.path, e);
+        }
+        LOGGER.info(() -> "Compacted " + segment.path + " from " + segment.writePosition + " to " + length + " bytes");
+    }
+
+    private synchronized void swap(Segment segment, int length, long[] moves, long tombstoneBytes) throws IOException {
+        compactions++;
+        if (length == 0) {
+            ordered.remove(segment.sequence);
+            segments.remove(segment.id);
+            return;
+        }
+        Segment replacement = Segment.map(nextSegmentId++, segment.sequence, segment.path, -1, false);
+        replacement.writePosition = length;
+        replacement.tombstoneBytes = tombstoneBytes;
+        register(replacement);
+        for (long move : moves) {
+            int from = (int) (move >>> 32);
+            int to = (int) move;
+            long id = segment.buffer.getLong(from + ID);
+            if (!locations.replace(id, location(segment.id, from), location(replacement.id, to))) {
+                replacement.garbageBytes += recordSize(segment, from);
+            }
+        }
+        segments.remove(segment.id);
+    }
+
+    /**
+     * Zeroes whatever follows the last valid record of the active segment, so records appended there can never run
+     * into the remains of a torn write.
+     */
+    private void clearTail(Segment segment) {
+        ByteBuffer view = segment.view();
+        int position = segment.writePosition;
+        while (position + 8 <= segment.capacity() && view.getLong(position) == 0) {
+            position += 8;
+        }
+        while (position < segment.capacity() && view.get(position) == 0) {
+            position++;
+        }
+        if (position < segment.capacity()) {
+            LOGGER.warning(() -> "Clearing torn records at the end of " + segment.path + " from position " + segment.writePosition);
+            for (int i = segment.writePosition; i < segment.capacity(); i++) {
+                view.put(i, (byte) 0);
+            }
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * Visits the records of the segment in order and returns the position after the last valid one.
+     */
+    private int scan(Segment segment, RecordVisitor visitor) {
+        ByteBuffer view = segment.view();
+        CRC32 checksum = new CRC32();
+        int position = 0;
+        while (position + OVERHEAD <= segment.capacity()) {
+            int size = view.getInt(position) + TYPE;
+            if (size == TYPE) {
+                break;
+            }
+            if (size < OVERHEAD || position + size > segment.capacity()
+                    || view.getInt(position + TEXT_LENGTH) != size - OVERHEAD
+                    || view.getInt(position + size - 4) != checksum(checksum, segment, position, size)) {
+                int end = position;
+                LOGGER.warning(() -> "Invalid record in " + segment.path + " at position " + end + ", ignoring the rest of the segment");
+                break;
+            }
+            visitor.visit(view.get(position + TYPE), view.getLong(position + ID), position, size);
+            position += size;
+        }
+        return position;
+    }
+
+    private int checksum(Segment segment, int position, int size) {
+        return checksum(crc, segment, position, size);
+    }
+
+    private static int checksum(CRC32 checksum, Segment segment, int position, int size) {
+        ByteBuffer body = segment.view();
+        body.limit(position + size - 4).position(position + TYPE);
+        checksum.reset();
+        checksum.update(body);
+        return (int) checksum.getValue();
+    }
+
+    private void register(Segment segment) {
+        segments.put(segment.id, segment);
+        ordered.put(segment.sequence, segment);
+    }
+
+    private static Post decode(Segment segment, int position) {
+        ByteBuffer view = segment.view();
+        Post post = new Post();
+        post.setId(view.getLong(position + ID));
+        post.setAuthorId(view.getLong(position + AUTHOR_ID));
+        post.setCreationDateTime(new Date(view.getLong(position + CREATED)));
+        post.setVersion(view.getLong(position + VERSION));
+        byte[] text = new byte[view.getInt(position + TEXT_LENGTH)];
+        view.position(position + TEXT);
+        view.get(text);
+        post.setText(new String(text, StandardCharsets.UTF_8));
+        return post;
+    }
+
+    private static int recordSize(Segment segment, int position) {
+        return segment.buffer.getInt(position) + TYPE;
+    }
+
+    private static long sequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static long location(int segmentId, int position) {
+        return (long) segmentId << 32 | position;
+    }
+
+    private static int segmentId(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    private interface RecordVisitor {
+
+        void visit(byte type, long id, int position, int size);
+    }
+}
@@ -0,0 +1,59 @@
+package com.hsbc.challenge.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One file of the {@link PostLog}, mapped into memory. Segments are ordered by their sequence, which is the file
+ * name; the id is assigned when the file is mapped and is what record locations refer to, so a segment rewritten by
+ * compaction gets a new id and stale locations can be recognized. Mutable fields are guarded by the log.
+ */
+class Segment {
+
+    final int id;
+    final long sequence;
+    final Path path;
+    final MappedByteBuffer buffer;
+
+    int writePosition;
+    long garbageBytes;
+    long tombstoneBytes;
+
+    private Segment(int id, long sequence, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.sequence = sequence;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static Segment map(int id, long sequence, Path path, int capacity, boolean writable) throws IOException {
+        StandardOpenOption[] options = writable
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            int size = capacity < 0 ? (int) channel.size() : capacity;
+            MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, size);
+            return new Segment(id, sequence, path, buffer);
+        }
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Independent view for bulk reads and writes, positions of the shared buffer are never used.
+     */
+    ByteBuffer view() {
+        return buffer.duplicate();
+    }
+
+    double garbageRatio(boolean includeTombstones) {
+        long garbage = garbageBytes + (includeTombstones ? tombstoneBytes : 0);
+        return writePosition == 0 ? 0 : (double) garbage / writePosition;
+    }
+}
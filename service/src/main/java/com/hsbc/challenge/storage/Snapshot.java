@@ -0,0 +1,226 @@
+package com.hsbc.challenge.storage;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Binary snapshot of the in-memory store, named after the journal sequence number it was started at: every record
+ * before it is included, so recovery replays the journal from that number on. A snapshot is written while writes
+ * continue and may also hold some later changes, which is harmless as every journal record sets the full state of
+ * what it touches.
+ * <p>
+ * Layout: magic, format, sequence number and the user and follow id sequences, then records of length, type and
+ * payload, ended by a zero length, the record count and a CRC32 of everything before it.
+ */
+class Snapshot {
+
+    static final int MAGIC = 0x534e4150;
+    static final int FORMAT = 1;
+
+    private static final int HEADER = 4 + 4 + 8 + 8 + 8;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_BYTES = 4 << 20;
+
+    /**
+     * Receives the records of a snapshot; the payload is positioned at its start and limited to its end.
+     */
+    interface RecordHandler {
+        void handle(byte type, ByteBuffer payload);
+    }
+
+    final Path path;
+    final long lsn;
+    final long nextUserId;
+    final long nextFollowId;
+    final long records;
+
+    private Snapshot(Path path, long lsn, long nextUserId, long nextFollowId, long records) {
+        this.path = path;
+        this.lsn = lsn;
+        this.nextUserId = nextUserId;
+        this.nextFollowId = nextFollowId;
+        this.records = records;
+    }
+
+    /**
+     * Snapshot files in the directory, latest first. Unfinished temporary files are deleted.
+     */
+    static List<Path> files(Path directory) {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.delete(path);
+                } else if (name.endsWith(SUFFIX)) {
+                    files.add(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot list snapshots in " + directory, e);
+        }
+        files.sort(Comparator.comparingLong(Snapshot::lsn).reversed());
+        return files;
+    }
+
+    /**
+     * Reads the snapshot, handing every record to the handler, and verifies its checksum.
+     */
+    static Snapshot read(Path path, RecordHandler handler) {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            ChannelReader reader = new ChannelReader(channel, BUFFER_BYTES, new CRC32());
+            if (!reader.fill(HEADER)) {
+                throw new DataAccessResourceFailureException("Not a snapshot: " + path);
+            }
+            ByteBuffer buffer = reader.buffer();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                throw new DataAccessResourceFailureException("Not a snapshot: " + path);
+            }
+            long lsn = buffer.getLong();
+            long nextUserId = buffer.getLong();
+            long nextFollowId = buffer.getLong();
+            long records = 0;
+            while (true) {
+                if (!reader.fill(4)) {
+                    throw new DataAccessResourceFailureException("Truncated snapshot: " + path);
+                }
+                buffer = reader.buffer();
+                int length = buffer.getInt();
+                if (length == 0) {
+                    break;
+                }
+                if (length < 1 || !reader.fill(length)) {
+                    throw new DataAccessResourceFailureException("Truncated snapshot: " + path);
+                }
+                buffer = reader.buffer();
+                int end = buffer.position() + length;
+                byte type = buffer.get();
+                ByteBuffer payload = buffer.slice();
+                payload.limit(length - 1);
+                handler.handle(type, payload);
+                buffer.position(end);
+                records++;
+            }
+            if (!reader.fill(8) || reader.buffer().getLong() != records) {
+                throw new DataAccessResourceFailureException("Truncated snapshot: " + path);
+            }
+            long checksum = reader.checksum();
+            if (!reader.fill(4) || (int) checksum != reader.buffer().getInt()) {
+                throw new DataAccessResourceFailureException("Snapshot checksum mismatch: " + path);
+            }
+            return new Snapshot(path, lsn, nextUserId, nextFollowId, records);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot read snapshot " + path, e);
+        }
+    }
+
+    static long lsn(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Writes a snapshot to a temporary file which {@link #commit()} forces and renames into place.
+     */
+    static class Writer implements Closeable {
+
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final CRC32 checksum = new CRC32();
+        private final long lsn;
+        private final long nextUserId;
+        private final long nextFollowId;
+        private long records;
+        private boolean committed;
+
+        Writer(Path directory, long lsn, long nextUserId, long nextFollowId) {
+            this.target = directory.resolve(String.format("%s%020d%s", PREFIX, lsn, SUFFIX));
+            this.temp = directory.resolve(target.getFileName() + TEMP_SUFFIX);
+            this.lsn = lsn;
+            this.nextUserId = nextUserId;
+            this.nextFollowId = nextFollowId;
+            try {
+                Files.createDirectories(directory);
+                channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new DataAccessResourceFailureException("Cannot create snapshot " + temp, e);
+            }
+            buffer.putInt(MAGIC).putInt(FORMAT).putLong(lsn).putLong(nextUserId).putLong(nextFollowId);
+        }
+
+        void write(byte type, ByteBuffer payload) {
+            ensure(4 + 1 + payload.remaining());
+            buffer.putInt(1 + payload.remaining()).put(type).put(payload.duplicate());
+            records++;
+        }
+
+        Snapshot commit() {
+            ensure(4 + 8);
+            buffer.putInt(0).putLong(records);
+            flush();
+            buffer.putInt((int) checksum.getValue());
+            try {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+                channel.close();
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new DataAccessResourceFailureException("Cannot write snapshot " + target, e);
+            }
+            committed = true;
+            return new Snapshot(target, lsn, nextUserId, nextFollowId, records);
+        }
+
+        @Override
+        public void close() {
+            if (!committed) {
+                try {
+                    channel.close();
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // the temporary file is deleted on the next start
+                }
+            }
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new DataAccessResourceFailureException("Cannot write snapshot " + temp, e);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.hsbc.challenge.storage;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Journal of mutations with group commit. Records are appended to an in-memory batch by the writers, a single
+ * thread writes the whole batch and forces it to disk while the next batch fills, then wakes every writer whose
+ * record it covered; under load one fsync is shared by many writes.
+ * <p>
+ * Record layout: length of the rest of the record, CRC32 of what follows it, log sequence number, type and payload.
+ * The journal is split into files named after the sequence number of their first record; a snapshot rolls to a new
+ * file so the files it covers can be deleted once it is written.
+ */
+class WriteAheadLog implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+
+    static final int HEADER = 4 + 4 + 8 + 1;
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    /**
+     * Receives the records found on replay; the payload is positioned at its start and limited to its end.
+     */
+    interface RecordHandler {
+        void handle(long lsn, byte type, ByteBuffer payload);
+    }
+
+    private final Path directory;
+    private final boolean sync;
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private long fileStartLsn;
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appendedLsn;
+    private long durableLsn;
+    private boolean closed;
+    private IOException failure;
+    private Thread writer;
+
+    private long batches;
+    private long records;
+    private long bytes;
+
+    WriteAheadLog(Path directory, boolean sync) {
+        this.directory = directory;
+        this.sync = sync;
+    }
+
+    /**
+     * Replays the records from {@code fromLsn} on and returns the sequence number following the last one. A torn
+     * record ends the replay and is cut off if it is in the last file; anywhere else the journal is corrupt.
+     */
+    long replay(long fromLsn, RecordHandler handler) {
+        long nextLsn = fromLsn;
+        List<Path> files = files();
+        for (int i = 0; i < files.size(); i++) {
+            Path path = files.get(i);
+            try (FileChannel file = FileChannel.open(path, READ, WRITE)) {
+                ChannelReader reader = new ChannelReader(file, READ_BUFFER_BYTES);
+                long valid = 0;
+                while (reader.fill(4)) {
+                    int length = reader.buffer().getInt(reader.buffer().position());
+                    if (length < HEADER - 4 || !reader.fill(4 + length)) {
+                        break;
+                    }
+                    ByteBuffer buffer = reader.buffer();
+                    int start = buffer.position();
+                    int checksum = buffer.getInt(start + 4);
+                    ByteBuffer body = buffer.duplicate();
+                    body.position(start + 8).limit(start + 4 + length);
+                    crc.reset();
+                    crc.update(body.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    long lsn = body.getLong();
+                    byte type = body.get();
+                    if (lsn >= fromLsn) {
+                        handler.handle(lsn, type, body.slice());
+                        nextLsn = Math.max(nextLsn, lsn + 1);
+                    }
+                    buffer.position(start + 4 + length);
+                    valid = reader.position();
+                }
+                if (valid < file.size()) {
+                    if (i < files.size() - 1) {
+                        throw new DataAccessResourceFailureException("Corrupt journal file " + path + " at " + valid);
+                    }
+                    long torn = valid;
+                    LOGGER.warning(() -> "Cutting off torn journal tail of " + path + " at " + torn);
+                    file.truncate(valid);
+                    file.force(true);
+                }
+            } catch (IOException e) {
+                throw new DataAccessResourceFailureException("Cannot replay journal file " + path, e);
+            }
+        }
+        return nextLsn;
+    }
+
+    /**
+     * Starts appending to a new file beginning at {@code nextLsn}.
+     */
+    void open(long nextLsn) {
+        synchronized (lock) {
+            appendedLsn = nextLsn - 1;
+            durableLsn = nextLsn - 1;
+            switchFile(nextLsn);
+        }
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends a record to the current batch. Callers append in sequence number order and then wait for
+     * {@link #awaitDurable(long)}.
+     */
+    void append(long lsn, byte type, ByteBuffer payload) {
+        synchronized (lock) {
+            checkOpen();
+            int length = HEADER - 4 + payload.remaining();
+            if (pending.remaining() < 4 + length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + 4 + length));
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            int start = pending.position();
+            pending.putInt(length).putInt(0).putLong(lsn).put(type).put(payload.duplicate());
+            ByteBuffer body = pending.duplicate();
+            body.position(start + 8).limit(pending.position());
+            crc.reset();
+            crc.update(body);
+            pending.putInt(start + 4, (int) crc.getValue());
+            appendedLsn = lsn;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until every record up to {@code lsn} has been written and, when syncing, forced to disk.
+     */
+    void awaitDurable(long lsn) {
+        synchronized (lock) {
+            boolean interrupted = false;
+            while (durableLsn < lsn && failure == null && !closed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durableLsn < lsn) {
+                throw new DataAccessResourceFailureException("Journal write failed", failure);
+            }
+        }
+    }
+
+    long durableLsn() {
+        synchronized (lock) {
+            return durableLsn;
+        }
+    }
+
+    /**
+     * Waits for the pending batch to be written and continues in a new file starting at {@code nextLsn}. The
+     * caller holds back appends while rolling.
+     */
+    void roll(long nextLsn) {
+        synchronized (lock) {
+            awaitDurable(appendedLsn);
+            if (nextLsn != fileStartLsn) {
+                switchFile(nextLsn);
+            }
+        }
+    }
+
+    /**
+     * Deletes the files holding only records before {@code lsn}.
+     */
+    void truncateBefore(long lsn) {
+        List<Path> files = files();
+        for (int i = 0; i < files.size() - 1; i++) {
+            if (startLsn(files.get(i + 1)) <= lsn && startLsn(files.get(i)) != fileStartLsn) {
+                try {
+                    Files.delete(files.get(i));
+                } catch (IOException e) {
+                    LOGGER.warning(() -> "Cannot delete journal file: " + e);
+                }
+            }
+        }
+    }
+
+    Map<String, Long> stats() {
+        synchronized (lock) {
+            Map<String, Long> stats = new LinkedHashMap<>();
+            stats.put("durableLsn", durableLsn);
+            stats.put("batches", batches);
+            stats.put("records", records);
+            stats.put("bytes", bytes);
+            return stats;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            if (failure == null && channel != null) {
+                awaitDurable(appendedLsn);
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            if (writer != null) {
+                writer.join();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.warning(() -> "Cannot close journal: " + e);
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer batch;
+            FileChannel target;
+            long upTo;
+            int count;
+            synchronized (lock) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = spare;
+                spare = null;
+                target = channel;
+                count = (int) (appendedLsn - durableLsn);
+                upTo = appendedLsn;
+            }
+            IOException error = null;
+            batch.flip();
+            int size = batch.remaining();
+            try {
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                if (sync) {
+                    target.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (lock) {
+                batch.clear();
+                spare = batch;
+                if (error == null) {
+                    durableLsn = upTo;
+                    batches++;
+                    records += count;
+                    bytes += size;
+                } else {
+                    IOException cause = error;
+                    LOGGER.severe(() -> "Journal write failed, rejecting further writes: " + cause);
+                    failure = error;
+                }
+                lock.notifyAll();
+                if (failure != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void switchFile(long startLsn) {
+        try {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+            }
+            Files.createDirectories(directory);
+            channel = FileChannel.open(directory.resolve(name(startLsn)), CREATE, WRITE, TRUNCATE_EXISTING);
+            fileStartLsn = startLsn;
+        } catch (IOException e) {
+            failure = e;
+            throw new DataAccessResourceFailureException("Cannot open journal file in " + directory, e);
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null || closed) {
+            throw new DataAccessResourceFailureException("Journal is not writable", failure);
+        }
+    }
+
+    private List<Path> files() {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot list journal files in " + directory, e);
+        }
+        files.sort(Comparator.comparingLong(WriteAheadLog::startLsn));
+        return files;
+    }
+
+    private static String name(long startLsn) {
+        return String.format("%s%020d%s", PREFIX, startLsn, SUFFIX);
+    }
+
+    private static long startLsn(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,151 @@
+package com.hsbc.challenge.timeline;
+
+import java.util.Arrays;
+
+/**
+ * Bounded ring of post ids kept newest first. When full, pushing a new post evicts the oldest one. Post ids are
+ * time-ordered, so a page after a cursor starts at the first id lower than the cursor, even if that post is gone.
+ * Pushes from different write shards may arrive out of id order, so a post is inserted at its sorted position and a
+ * post already in the ring is ignored.
+ */
+class Timeline {
+
+    private final long[] postIds;
+    private final long[] authorIds;
+    private int head;
+    private int size;
+    private boolean truncated;
+    private volatile long lastRead;
+
+    Timeline(int capacity) {
+        this.postIds = new long[capacity];
+        this.authorIds = new long[capacity];
+    }
+
+    void touch(long now) {
+        lastRead = now;
+    }
+
+    long lastRead() {
+        return lastRead;
+    }
+
+    synchronized void push(long postId, long authorId) {
+        int position = position(postId);
+        if (position < 0) {
+            return;
+        }
+        if (position == size && (truncated || size == postIds.length)) {
+            // older than every kept post while older ones were dropped, it is served from the repository instead
+            truncated = true;
+            return;
+        }
+        head = (head - 1 + postIds.length) % postIds.length;
+        for (int i = 0; i < position; i++) {
+            postIds[physical(i)] = postIds[physical(i + 1)];
+            authorIds[physical(i)] = authorIds[physical(i + 1)];
+        }
+        postIds[physical(position)] = postId;
+        authorIds[physical(position)] = authorId;
+        if (size < postIds.length) {
+            size++;
+        } else {
+            truncated = true;
+        }
+    }
+
+    synchronized boolean append(long postId, long authorId) {
+        if (size == postIds.length) {
+            truncated = true;
+            return false;
+        }
+        int index = physical(size);
+        postIds[index] = postId;
+        authorIds[index] = authorId;
+        size++;
+        return true;
+    }
+
+    synchronized void remove(long postId) {
+        retain(postId, postIds);
+    }
+
+    synchronized void removeAuthor(long authorId) {
+        retain(authorId, authorIds);
+    }
+
+    synchronized long[] slice(int limit) {
+        return slice(0, limit);
+    }
+
+    synchronized long[] sliceAfter(long postId, int limit) {
+        for (int i = 0; i < size; i++) {
+            if (postIds[physical(i)] < postId) {
+                return slice(i, limit);
+            }
+        }
+        return truncated ? null : new long[0];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    synchronized void clear() {
+        head = 0;
+        size = 0;
+        truncated = false;
+        Arrays.fill(postIds, 0);
+        Arrays.fill(authorIds, 0);
+    }
+
+    private long[] slice(int from, int limit) {
+        int length = Math.max(0, Math.min(limit, size - from));
+        long[] slice = new long[length];
+        for (int i = 0; i < length; i++) {
+            slice[i] = postIds[physical(from + i)];
+        }
+        return slice;
+    }
+
+    private void retain(long rejected, long[] keys) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int from = physical(i);
+            if (keys[from] != rejected) {
+                int to = physical(kept++);
+                postIds[to] = postIds[from];
+                authorIds[to] = authorIds[from];
+            }
+        }
+        size = kept;
+    }
+
+    /**
+     * Logical index the post belongs at, or -1 if it is already in the ring.
+     */
+    private int position(long postId) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long id = postIds[physical(middle)];
+            if (id == postId) {
+                return -1;
+            } else if (id > postId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int physical(int logical) {
+        return (head + logical) % postIds.length;
+    }
+}
@@ -0,0 +1,116 @@
+package com.hsbc.challenge.timeline;
+
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.util.PostCursor;
+import com.hsbc.challenge.util.ReverseChronologicalPostComparator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Assembles a timeline on read with a k-way merge. Posts of every author are an already sorted stream fetched
+ * lazily in growing batches, so only about {@code limit} posts are loaded instead of all posts of all authors.
+ */
+@Component
+public class TimelineAssembler {
+
+    private static final int MIN_BATCH = 4;
+    private static final int MAX_BATCH = 256;
+
+    private static final Comparator<PostView> ORDER = new ReverseChronologicalPostComparator();
+
+    @Autowired
+    private PostRepository postRepository;
+
+    public TimelineAssembler() {
+    }
+
+    public TimelineAssembler(PostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
+
+    public List<PostView> assemble(long[] authorIds, PostCursor cursor, int limit) {
+        List<PostView> posts = new ArrayList<>(Math.min(limit, MAX_BATCH));
+        merge(authorIds, cursor, limit, (authorId, post) -> posts.add(post));
+        return posts;
+    }
+
+    public List<PostView> combine(List<PostView> first, List<PostView> second, int limit) {
+        List<PostView> posts = new ArrayList<>(Math.min(limit, first.size() + second.size()));
+        Set<Long> ids = new HashSet<>();
+        int i = 0;
+        int j = 0;
+        while (posts.size() < limit && (i < first.size() || j < second.size())) {
+            PostView post = j == second.size() || (i < first.size() && ORDER.compare(first.get(i), second.get(j)) <= 0)
+                    ? first.get(i++)
+                    : second.get(j++);
+            if (ids.add(post.getId())) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+    public void merge(long[] authorIds, PostCursor cursor, int limit, BiConsumer<Long, PostView> consumer) {
+        if (authorIds.length == 0 || limit < 1) {
+            return;
+        }
+        int batch = Math.min(limit, Math.max(MIN_BATCH, limit / authorIds.length + 1));
+        PriorityQueue<Source> heads = new PriorityQueue<>(authorIds.length, (s1, s2) -> ORDER.compare(s1.head, s2.head));
+        for (long authorId : authorIds) {
+            Source source = new Source(authorId, cursor, batch);
+            if (source.advance()) {
+                heads.add(source);
+            }
+        }
+        int count = 0;
+        while (!heads.isEmpty()) {
+            Source source = heads.poll();
+            consumer.accept(source.authorId, source.head);
+            if (++count == limit) {
+                return;
+            }
+            if (source.advance()) {
+                heads.add(source);
+            }
+        }
+    }
+
+    private class Source {
+
+        private final long authorId;
+        private PostCursor cursor;
+        private int batch;
+        private Iterator<PostView> buffer = Collections.emptyIterator();
+        private boolean exhausted;
+        private PostView head;
+
+        private Source(long authorId, PostCursor cursor, int batch) {
+            this.authorId = authorId;
+            this.cursor = cursor;
+            this.batch = batch;
+        }
+
+        private boolean advance() {
+            if (!buffer.hasNext() && !exhausted) {
+                fetch();
+            }
+            head = buffer.hasNext() ? buffer.next() : null;
+            return head != null;
+        }
+
+        private void fetch() {
+            List<PostView> page = postRepository.findUserPostsBefore(authorId, cursor.getId(), PageRequest.of(0, batch));
+            exhausted = page.size() < batch;
+            if (!page.isEmpty()) {
+                cursor = PostCursor.of(page.get(page.size() - 1));
+            }
+            buffer = page.iterator();
+            batch = Math.min(batch * 2, MAX_BATCH);
+        }
+    }
+}
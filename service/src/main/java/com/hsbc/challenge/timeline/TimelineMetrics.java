@@ -0,0 +1,52 @@
+package com.hsbc.challenge.timeline;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts timeline reads by the path that served them.
+ */
+@Component
+public class TimelineMetrics {
+
+    public enum Path {
+        READ("reads"),
+        MATERIALIZED("materialized"),
+        REBUILT("rebuilt"),
+        ASSEMBLED("assembled"),
+        TOPPED_UP("toppedUp"),
+        PULLED("pulled");
+
+        private final String label;
+
+        Path(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Map<Path, LongAdder> counters = new EnumMap<>(Path.class);
+
+    public TimelineMetrics() {
+        for (Path path : Path.values()) {
+            counters.put(path, new LongAdder());
+        }
+    }
+
+    public void record(Path path) {
+        counters.get(path).increment();
+    }
+
+    public long count(Path path) {
+        return counters.get(path).sum();
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        counters.forEach((path, counter) -> snapshot.put(path.label, counter.sum()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,248 @@
+package com.hsbc.challenge.timeline;
+
+import com.hsbc.challenge.graph.SocialGraph;
+import com.hsbc.challenge.metrics.Histogram;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.util.PostCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.LongStream;
+
+/**
+ * Materialized timelines (fan-out on write). Posts are pushed to the materialized timelines of the author's
+ * followers, found through the followers index; timelines are built lazily on the first read. Authors with more
+ * followers than the celebrity threshold are never pushed, their posts are pulled and merged on read instead.
+ * <p>
+ * The mode of an author is decided on first use and kept; it flips to pulled above the threshold and back to pushed
+ * only at half of it, so an author hovering around the threshold does not flip on every follow. A flip drops the
+ * materialized timelines of the author's followers, which are then rebuilt in the new mode on their next read.
+ * <p>
+ * At most {@code timeline.max-materialized} timelines are kept. Once a tenth more have been built, the least
+ * recently read are dropped in one sweep, and are rebuilt like any other missing timeline when they are read again.
+ */
+@Component
+public class TimelineStore {
+
+    private static final Logger LOGGER = Logger.getLogger(TimelineStore.class.getName());
+
+    @Value("${timeline.capacity:800}")
+    private int capacity;
+
+    @Value("${timeline.celebrity-threshold:10000}")
+    private int celebrityThreshold;
+
+    @Value("${timeline.max-materialized:100000}")
+    private int maxMaterialized;
+
+    @Autowired
+    private TimelineAssembler timelineAssembler;
+
+    @Autowired
+    private SocialGraph socialGraph;
+
+    private final Map<Long, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Map<Long, Boolean> celebrities = new ConcurrentHashMap<>();
+    private final TimelineVersions versions = new TimelineVersions();
+    private final Object sweepLock = new Object();
+
+    public TimelineStore() {
+    }
+
+    public TimelineStore(int capacity, int celebrityThreshold, TimelineAssembler timelineAssembler, SocialGraph socialGraph) {
+        this(capacity, celebrityThreshold, 100000, timelineAssembler, socialGraph);
+    }
+
+    public TimelineStore(int capacity, int celebrityThreshold, int maxMaterialized, TimelineAssembler timelineAssembler, SocialGraph socialGraph) {
+        this.capacity = capacity;
+        this.celebrityThreshold = celebrityThreshold;
+        this.maxMaterialized = maxMaterialized;
+        this.timelineAssembler = timelineAssembler;
+        this.socialGraph = socialGraph;
+    }
+
+    public long[] read(long userId, int limit) {
+        Timeline timeline = timelines.get(userId);
+        if (timeline == null) {
+            return null;
+        }
+        timeline.touch(System.nanoTime());
+        return timeline.slice(limit);
+    }
+
+    public long[] readAfter(long userId, long postId, int limit) {
+        Timeline timeline = timelines.get(userId);
+        if (timeline == null) {
+            return null;
+        }
+        timeline.touch(System.nanoTime());
+        return timeline.sliceAfter(postId, limit);
+    }
+
+    public boolean isTruncated(long userId) {
+        Timeline timeline = timelines.get(userId);
+        return timeline == null || timeline.isTruncated();
+    }
+
+    public boolean isMaterialized(long userId) {
+        return timelines.containsKey(userId);
+    }
+
+    /**
+     * Tag of the current content of the user's timeline. Followers' versions are bumped after every post change of a
+     * pushed author and every follow change, the versions of pulled (celebrity) authors are mixed in on read. Taken
+     * before the timeline is read, the tag can only be older than the content served with it, never newer.
+     */
+    public String etag(long userId) {
+        long version = versions.user(userId);
+        for (long authorId : pulledFollowees(userId)) {
+            version = 31 * version + versions.author(authorId);
+        }
+        return versions.etag(version);
+    }
+
+    public Histogram sizeDistribution() {
+        Histogram sizes = new Histogram();
+        timelines.values().forEach(timeline -> sizes.record(timeline.size()));
+        return sizes;
+    }
+
+    public boolean isCelebrity(long authorId) {
+        return celebrities.computeIfAbsent(authorId, id -> socialGraph.followerCount(id) > celebrityThreshold);
+    }
+
+    public long[] pushedFollowees(long userId) {
+        return LongStream.of(socialGraph.followees(userId)).filter(id -> !isCelebrity(id)).toArray();
+    }
+
+    public long[] pulledFollowees(long userId) {
+        return LongStream.of(socialGraph.followees(userId)).filter(this::isCelebrity).toArray();
+    }
+
+    /**
+     * Rebuilds the timeline from the repository under the timeline's lock. A post saved during the merge is also
+     * pushed by {@link #publish}, which waits for the lock and then finds the post already in the ring.
+     */
+    public List<PostView> rebuild(long userId) {
+        long[] followeeIds = pushedFollowees(userId);
+        List<PostView> posts = new ArrayList<>();
+        Timeline timeline = timelines.computeIfAbsent(userId, id -> new Timeline(capacity));
+        timeline.touch(System.nanoTime());
+        synchronized (timeline) {
+            timeline.clear();
+            timelineAssembler.merge(followeeIds, PostCursor.parse(null), capacity + 1, (authorId, post) -> {
+                if (timeline.append(post.getId(), authorId)) {
+                    posts.add(post);
+                }
+            });
+        }
+        sweepIfFull();
+        return posts;
+    }
+
+    /**
+     * Drops the least recently read timelines down to the limit once it is exceeded by a tenth, so that the sort of
+     * the read times is paid once per many rebuilds.
+     */
+    private void sweepIfFull() {
+        if (timelines.size() <= maxMaterialized + maxMaterialized / 10) {
+            return;
+        }
+        synchronized (sweepLock) {
+            int excess = timelines.size() - maxMaterialized;
+            if (excess <= maxMaterialized / 10) {
+                return;
+            }
+            long[] reads = timelines.values().stream().mapToLong(Timeline::lastRead).sorted().toArray();
+            long cutoff = reads[Math.min(excess, reads.length) - 1];
+            int dropped = 0;
+            for (Iterator<Timeline> iterator = timelines.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().lastRead() <= cutoff) {
+                    iterator.remove();
+                    dropped++;
+                }
+            }
+            int evicted = dropped;
+            LOGGER.info(() -> "Dropped " + evicted + " least recently read timelines, kept: " + timelines.size());
+        }
+    }
+
+    public void publish(long authorId, long postId) {
+        versions.bumpAuthor(authorId);
+        if (isCelebrity(authorId)) {
+            return;
+        }
+        for (long userId : socialGraph.followers(authorId)) {
+            Timeline timeline = timelines.get(userId);
+            if (timeline != null) {
+                timeline.push(postId, authorId);
+            }
+            versions.bumpUser(userId);
+        }
+    }
+
+    public void edit(long authorId) {
+        versions.bumpAuthor(authorId);
+        if (isCelebrity(authorId)) {
+            return;
+        }
+        for (long userId : socialGraph.followers(authorId)) {
+            versions.bumpUser(userId);
+        }
+    }
+
+    public void retract(long authorId, long postId) {
+        versions.bumpAuthor(authorId);
+        if (isCelebrity(authorId)) {
+            return;
+        }
+        for (long userId : socialGraph.followers(authorId)) {
+            Timeline timeline = timelines.get(userId);
+            if (timeline != null) {
+                timeline.remove(postId);
+            }
+            versions.bumpUser(userId);
+        }
+    }
+
+    public void follow(long userId, long followeeId) {
+        updateMode(followeeId);
+        if (isMaterialized(userId)) {
+            rebuild(userId);
+        }
+        versions.bumpUser(userId);
+    }
+
+    public void unfollow(long userId, long followeeId) {
+        Timeline timeline = timelines.get(userId);
+        if (timeline != null) {
+            timeline.removeAuthor(followeeId);
+        }
+        versions.bumpUser(userId);
+        updateMode(followeeId);
+    }
+
+    private void updateMode(long authorId) {
+        Boolean celebrity = celebrities.get(authorId);
+        if (celebrity == null) {
+            return;
+        }
+        int followers = socialGraph.followerCount(authorId);
+        boolean updated = followers > (celebrity ? celebrityThreshold / 2 : celebrityThreshold);
+        if (updated == celebrity || !celebrities.replace(authorId, celebrity, updated)) {
+            return;
+        }
+        LOGGER.info(() -> "Posts of author " + authorId + " are " + (updated ? "pulled" : "pushed") + " from now on, followers: " + followers);
+        for (long userId : socialGraph.followers(authorId)) {
+            timelines.remove(userId);
+            versions.bumpUser(userId);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.hsbc.challenge.timeline;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory change counters of timelines and of authors. The counters restart with the process, so tags built from
+ * them carry the process start time and are never mistaken for tags handed out before a restart.
+ */
+class TimelineVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final Map<Long, AtomicLong> users = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> authors = new ConcurrentHashMap<>();
+
+    void bumpUser(long userId) {
+        users.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    void bumpAuthor(long authorId) {
+        authors.computeIfAbsent(authorId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    long user(long userId) {
+        AtomicLong version = users.get(userId);
+        return version == null ? 0 : version.get();
+    }
+
+    long author(long authorId) {
+        AtomicLong version = authors.get(authorId);
+        return version == null ? 0 : version.get();
+    }
+
+    String etag(long version) {
+        return "\"" + epoch + "." + Long.toHexString(version) + "\"";
+    }
+}
@@ -0,0 +1,128 @@
+package com.hsbc.challenge.trending;
+
+import com.hsbc.challenge.model.TrendingTag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashtags used most often within a sliding window. Uses are counted by a {@link WindowedSketch}, so memory does not
+ * depend on the number of distinct tags, and the heaviest tags are kept as candidates in a min-heap of fixed size: a
+ * tag enters when its estimate beats the smallest candidate. Candidate counts are re-estimated whenever a bucket of
+ * the window expires, so trend queries read only the heap.
+ */
+@Component
+public class TrendingTags {
+
+    @Value("${tags.trending.window-seconds:3600}")
+    private long windowSeconds;
+
+    @Value("${tags.trending.buckets:12}")
+    private int bucketCount;
+
+    @Value("${tags.trending.sketch-width:8192}")
+    private int sketchWidth;
+
+    @Value("${tags.trending.candidates:200}")
+    private int capacity;
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private WindowedSketch sketch;
+    private final Map<String, Candidate> candidates = new HashMap<>();
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>(Comparator.comparingLong((Candidate candidate) -> candidate.count));
+    private long recorded;
+
+    public TrendingTags() {
+    }
+
+    public TrendingTags(long windowSeconds, int bucketCount, int sketchWidth, int capacity, LongSupplier clock) {
+        this.windowSeconds = windowSeconds;
+        this.bucketCount = bucketCount;
+        this.sketchWidth = sketchWidth;
+        this.capacity = capacity;
+        this.clock = clock;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        sketch = new WindowedSketch(sketchWidth, bucketCount, windowSeconds * 1000);
+        sketch.advance(clock.getAsLong());
+    }
+
+    public synchronized void record(String tag) {
+        advance();
+        sketch.increment(tag);
+        recorded++;
+        long count = sketch.estimate(tag);
+        Candidate candidate = candidates.get(tag);
+        if (candidate != null) {
+            heap.remove(candidate);
+            candidate.count = count;
+            heap.offer(candidate);
+        } else if (candidates.size() < capacity) {
+            offer(new Candidate(tag, count));
+        } else if (count > heap.peek().count) {
+            candidates.remove(heap.poll().tag);
+            offer(new Candidate(tag, count));
+        }
+    }
+
+    public synchronized List<TrendingTag> trending(int limit) {
+        advance();
+        List<Candidate> top = new ArrayList<>(heap);
+        top.sort(Comparator.comparingLong((Candidate candidate) -> candidate.count).reversed().thenComparing(candidate -> candidate.tag));
+        List<TrendingTag> tags = new ArrayList<>(Math.min(limit, top.size()));
+        for (Candidate candidate : top.subList(0, Math.min(limit, top.size()))) {
+            tags.add(new TrendingTag(candidate.tag, candidate.count));
+        }
+        return tags;
+    }
+
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public synchronized Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("recorded", recorded);
+        stats.put("candidates", (long) candidates.size());
+        return stats;
+    }
+
+    private void advance() {
+        if (!sketch.advance(clock.getAsLong())) {
+            return;
+        }
+        List<Candidate> current = new ArrayList<>(heap);
+        heap.clear();
+        for (Candidate candidate : current) {
+            candidate.count = sketch.estimate(candidate.tag);
+            if (candidate.count == 0) {
+                candidates.remove(candidate.tag);
+            } else {
+                heap.offer(candidate);
+            }
+        }
+    }
+
+    private void offer(Candidate candidate) {
+        candidates.put(candidate.tag, candidate);
+        heap.offer(candidate);
+    }
+
+    private static class Candidate {
+
+        private final String tag;
+        private long count;
+
+        private Candidate(String tag, long count) {
+            this.tag = tag;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.hsbc.challenge.trending;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch over a sliding time window. The window is a ring of buckets each holding its own counters; a
+ * bucket is cleared when its time slot is reused, so an estimate is the sum of the counters of the buckets in the
+ * window and events older than the window are forgotten one bucket at a time. Not thread safe.
+ */
+class WindowedSketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x97cb3127, 0xa3b195dc, 0x6c8e9cf5, 0x4c3f5a1b};
+
+    private final int[][][] buckets;
+    private final int mask;
+    private final long bucketMillis;
+    private long current;
+
+    WindowedSketch(int width, int bucketCount, long windowMillis) {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.buckets = new int[bucketCount][DEPTH][size];
+        this.mask = size - 1;
+        this.bucketMillis = Math.max(1, windowMillis / bucketCount);
+    }
+
+    /**
+     * Moves the window to the given time and returns true if any bucket expired.
+     */
+    boolean advance(long nowMillis) {
+        long slot = nowMillis / bucketMillis;
+        if (slot <= current) {
+            return false;
+        }
+        long expired = Math.min(slot - current, buckets.length);
+        for (long i = 1; i <= expired; i++) {
+            for (int[] row : buckets[(int) ((current + i) % buckets.length)]) {
+                Arrays.fill(row, 0);
+            }
+        }
+        current = slot;
+        return true;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int[][] bucket = buckets[(int) (current % buckets.length)];
+        for (int i = 0; i < DEPTH; i++) {
+            bucket[i][index(hash, i)]++;
+        }
+    }
+
+    long estimate(Object key) {
+        int hash = spread(key.hashCode());
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = index(hash, i);
+            long sum = 0;
+            for (int[][] bucket : buckets) {
+                sum += bucket[i][index];
+            }
+            estimate = Math.min(estimate, sum);
+        }
+        return estimate;
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,29 @@
+package com.hsbc.challenge.util;
+
+/**
+ * Strong entity tags derived from entity versions, and matching of {@code If-Match} and {@code If-None-Match} header
+ * values.
+ */
+public class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    public static boolean notModified(String ifNoneMatch, String etag) {
+        return ifNoneMatch != null && matches(ifNoneMatch, etag);
+    }
+
+    public static boolean matches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,58 @@
+package com.hsbc.challenge.util;
+
+import com.hsbc.challenge.model.PostView;
+
+import java.util.List;
+
+/**
+ * Keyset pagination cursor in the form of a post id. Post ids grow with creation time, so a page contains posts
+ * with ids strictly lower than the cursor, in reverse chronological order.
+ */
+public class PostCursor {
+
+    public static final String DEFAULT_LIMIT = "20";
+    public static final int MAX_LIMIT = 100;
+
+    private static final PostCursor FIRST = new PostCursor(Long.MAX_VALUE);
+
+    private final long id;
+
+    public PostCursor(long id) {
+        this.id = id;
+    }
+
+    public static PostCursor parse(String before) {
+        if (before == null) {
+            return FIRST;
+        }
+        try {
+            return new PostCursor(Long.parseLong(before.trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static PostCursor of(PostView post) {
+        return new PostCursor(post.getId());
+    }
+
+    public static String next(List<PostView> page, int limit) {
+        if (page.size() < limit) {
+            return null;
+        }
+        return of(page.get(page.size() - 1)).toString();
+    }
+
+    public boolean isFirst() {
+        return this == FIRST;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(id);
+    }
+}
@@ -1,13 +1,16 @@
 package com.hsbc.challenge.util;
 
-import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostView;
 
 import java.util.Comparator;
 
-public class ReverseChronologicalPostComparator implements Comparator<Post> {
+/**
+ * Orders posts newest first. Post ids are time-ordered, so this is a comparison of ids.
+ */
+public class ReverseChronologicalPostComparator implements Comparator<PostView> {
 
     @Override
-    public int compare(Post o1, Post o2) {
-        return o2.getCreationDateTime().compareTo(o1.getCreationDateTime());
+    public int compare(PostView o1, PostView o2) {
+        return Long.compare(o2.getId(), o1.getId());
     }
 }
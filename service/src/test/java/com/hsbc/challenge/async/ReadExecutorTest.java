@@ -0,0 +1,56 @@
+package com.hsbc.challenge.async;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReadExecutorTest {
+
+    @Test
+    public void shouldCompleteResultOnExecutorThread() throws Exception {
+        ReadExecutor executor = new ReadExecutor(1, 1, 1000);
+        CountDownLatch done = new CountDownLatch(1);
+
+        DeferredResult<ResponseEntity<String>> result = executor.submit(() -> new ResponseEntity<>(Thread.currentThread().getName(), HttpStatus.OK));
+        result.setResultHandler(value -> done.countDown());
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals("read-1", ((ResponseEntity<?>) result.getResult()).getBody());
+        assertEquals(1L, (long) executor.stats().get("completed"));
+    }
+
+    @Test
+    public void shouldRejectWith503WhenQueueIsFull() throws Exception {
+        ReadExecutor executor = new ReadExecutor(1, 1, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.submit(() -> await(release));
+            executor.submit(() -> await(release));
+
+            DeferredResult<ResponseEntity<String>> rejected = executor.submit(() -> new ResponseEntity<>(HttpStatus.OK));
+
+            assertTrue(rejected.hasResult());
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseEntity<?>) rejected.getResult()).getStatusCode());
+            assertEquals(1L, (long) executor.stats().get("rejected"));
+            assertEquals(2L, (long) executor.stats().get("submitted"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static ResponseEntity<String> await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+}
@@ -0,0 +1,214 @@
+package com.hsbc.challenge.async;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteShardsTest {
+
+    @Test
+    public void shouldRunWritesOfOneUserInOrderOnOneThread() throws Exception {
+        WriteShards shards = new WriteShards(4, 1000, 1000);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            int write = i;
+            DeferredResult<ResponseEntity<Void>> result = shards.submit(7, () -> {
+                order.add(write);
+                threads.add(Thread.currentThread().getName());
+                return new ResponseEntity<>(HttpStatus.OK);
+            });
+            result.setResultHandler(value -> done.countDown());
+        }
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), order);
+        assertEquals(Collections.singleton("write-" + shards.shardOf(7)), threads);
+        assertEquals(100L, (long) shards.stats().get("completed"));
+    }
+
+    @Test
+    public void shouldSpreadUsersEvenlyAcrossShards() {
+        WriteShards shards = new WriteShards(4, 1, 1000);
+        int[] counts = new int[4];
+
+        for (long userId = 1; userId <= 10000; userId++) {
+            counts[shards.shardOf(userId)]++;
+        }
+
+        for (int count : counts) {
+            assertTrue(count > 2000 && count < 3000, "shard count " + count);
+        }
+    }
+
+    @Test
+    public void shouldRejectWith503WhenShardQueueIsFullWithoutBlockingOtherShards() throws Exception {
+        WriteShards shards = new WriteShards(2, 1, 1000);
+        long busyUser = 1;
+        long otherUser = IntStream.range(2, 100).filter(id -> shards.shardOf(id) != shards.shardOf(busyUser)).findFirst().getAsInt();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            shards.submit(busyUser, () -> {
+                started.countDown();
+                return await(release);
+            });
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            shards.submit(busyUser, () -> new ResponseEntity<>(HttpStatus.OK));
+
+            DeferredResult<ResponseEntity<String>> rejected = shards.submit(busyUser, () -> new ResponseEntity<>(HttpStatus.OK));
+            CountDownLatch otherDone = new CountDownLatch(1);
+            shards.submit(otherUser, () -> new ResponseEntity<>(HttpStatus.OK)).setResultHandler(value -> otherDone.countDown());
+
+            assertTrue(rejected.hasResult());
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseEntity<?>) rejected.getResult()).getStatusCode());
+            assertTrue(otherDone.await(1, TimeUnit.SECONDS));
+            assertEquals(1L, (long) shards.stats().get("rejected"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void shouldAnswerStartedWriteWithItsOutcomeAndSkipWritesWhichWaitedTooLong() throws Exception {
+        WriteShards shards = new WriteShards(1, 10, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean skippedRan = new AtomicBoolean();
+
+        DeferredResult<ResponseEntity<String>> started = shards.submit(1, () -> await(release));
+        DeferredResult<ResponseEntity<String>> skipped = shards.submit(1, () -> {
+            skippedRan.set(true);
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
+        Thread.sleep(100);
+        CountDownLatch done = new CountDownLatch(2);
+        started.setResultHandler(value -> done.countDown());
+        skipped.setResultHandler(value -> done.countDown());
+        release.countDown();
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.OK, ((ResponseEntity<?>) started.getResult()).getStatusCode());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseEntity<?>) skipped.getResult()).getStatusCode());
+        assertFalse(skippedRan.get());
+        assertEquals(1L, (long) shards.stats().get("timedOut"));
+    }
+
+    @Test
+    public void shouldRunWriteOfSeveralShardsOnceWithEveryShardParked() throws Exception {
+        WriteShards shards = new WriteShards(4, 1000, 1000);
+        long[] users = LongStream.rangeClosed(1, 20).toArray();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(users.length + 1);
+
+        DeferredResult<ResponseEntity<String>> result = shards.submitAll(users, () -> {
+            sleep(50);
+            order.add("gang");
+            return new ResponseEntity<>("saved", HttpStatus.OK);
+        });
+        result.setResultHandler(value -> done.countDown());
+        for (long user : users) {
+            shards.submit(user, () -> {
+                order.add("single");
+                return new ResponseEntity<>(HttpStatus.OK);
+            }).setResultHandler(value -> done.countDown());
+        }
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals("saved", ((ResponseEntity<?>) result.getResult()).getBody());
+        assertEquals("gang", order.get(0));
+        assertEquals(1, Collections.frequency(order, "gang"));
+    }
+
+    @Test
+    public void shouldNotRunWriteOfSeveralShardsWhenAnyShardRejectsIt() throws Exception {
+        WriteShards shards = new WriteShards(2, 1, 1000);
+        long busyUser = 1;
+        long otherUser = IntStream.range(2, 100).filter(id -> shards.shardOf(id) != shards.shardOf(busyUser)).findFirst().getAsInt();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(2);
+        DeferredResult<ResponseEntity<String>> result;
+        try {
+            shards.submit(busyUser, () -> {
+                started.countDown();
+                return await(release);
+            });
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            shards.submit(busyUser, () -> new ResponseEntity<>(HttpStatus.OK));
+
+            result = shards.submitAll(new long[]{otherUser, busyUser}, () -> {
+                ran.set(true);
+                return new ResponseEntity<>(HttpStatus.OK);
+            });
+            result.setResultHandler(value -> done.countDown());
+        } finally {
+            release.countDown();
+        }
+        shards.submit(otherUser, () -> new ResponseEntity<>(HttpStatus.OK)).setResultHandler(value -> done.countDown());
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseEntity<?>) result.getResult()).getStatusCode());
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void shouldNotRunWriteOfSeveralShardsWhichWaitedTooLongInAnyQueue() throws Exception {
+        WriteShards shards = new WriteShards(2, 10, 50);
+        long busyUser = 1;
+        long otherUser = IntStream.range(2, 100).filter(id -> shards.shardOf(id) != shards.shardOf(busyUser)).findFirst().getAsInt();
+        AtomicBoolean ran = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(2);
+
+        shards.submit(busyUser, () -> {
+            sleep(100);
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
+        DeferredResult<ResponseEntity<String>> result = shards.submitAll(new long[]{busyUser, otherUser}, () -> {
+            ran.set(true);
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
+        result.setResultHandler(value -> done.countDown());
+        shards.submit(otherUser, () -> new ResponseEntity<>(HttpStatus.OK)).setResultHandler(value -> done.countDown());
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseEntity<?>) result.getResult()).getStatusCode());
+        assertFalse(ran.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ResponseEntity<String> await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+}
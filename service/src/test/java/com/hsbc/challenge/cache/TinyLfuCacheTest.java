@@ -0,0 +1,126 @@
+package com.hsbc.challenge.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TinyLfuCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void shouldLoadOnMissAndServeHits() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(10, 1000, clock::get);
+
+        assertEquals("v1", cache.get(1L, key -> "v" + key));
+        assertEquals("v1", cache.get(1L, key -> "other"));
+        assertNull(cache.get(2L, key -> null));
+
+        assertEquals(1L, (long) cache.stats().get("hits"));
+        assertEquals(2L, (long) cache.stats().get("misses"));
+        assertEquals(1L, (long) cache.stats().get("size"));
+    }
+
+    @Test
+    public void shouldExpireEntriesAfterTtl() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(10, 1000, clock::get);
+        cache.put(1L, "v1");
+
+        clock.set(999);
+        assertEquals("v1", cache.getIfPresent(1L));
+        clock.set(1000);
+        assertNull(cache.getIfPresent(1L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldKeepFrequentEntriesWhenScanningColdKeys() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(100, 1000, clock::get);
+        for (long key = 0; key < 50; key++) {
+            cache.put(key, "hot" + key);
+            for (int i = 0; i < 5; i++) {
+                cache.getIfPresent(key);
+            }
+        }
+
+        for (long key = 1000; key < 11000; key++) {
+            cache.put(key, "cold" + key);
+            cache.getIfPresent(key % 50);
+        }
+
+        for (long key = 0; key < 50; key++) {
+            assertEquals("hot" + key, cache.getIfPresent(key));
+        }
+        assertEquals(100, cache.size());
+        assertEquals(10000 - 50, (long) cache.stats().get("evictions"));
+    }
+
+    @Test
+    public void shouldSplitLargeCacheIntoSegmentsWithinCapacity() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(8192, 1000, clock::get);
+        for (long key = 0; key < 1000; key++) {
+            cache.put(key, "hot" + key);
+            for (int i = 0; i < 5; i++) {
+                cache.getIfPresent(key);
+            }
+        }
+
+        for (long key = 100_000; key < 200_000; key++) {
+            cache.put(key, "cold" + key);
+            cache.getIfPresent(key % 1000);
+        }
+
+        for (long key = 0; key < 1000; key++) {
+            assertEquals("hot" + key, cache.getIfPresent(key));
+        }
+        assertEquals(8L, (long) cache.stats().get("segments"));
+        assertEquals(8192, cache.size());
+    }
+
+    @Test
+    public void shouldInvalidateEntry() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(10, 1000, clock::get);
+        cache.put(1L, "v1");
+        cache.getIfPresent(1L);
+
+        cache.invalidate(1L);
+
+        assertNull(cache.getIfPresent(1L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldNotOverwriteValuePutWhileLoading() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(10, 1000, clock::get);
+
+        String loaded = cache.get(1L, key -> {
+            cache.put(key, "v2");
+            return "v1";
+        });
+
+        assertEquals("v1", loaded);
+        assertEquals("v2", cache.getIfPresent(1L));
+    }
+
+    @Test
+    public void shouldNotStoreValueInvalidatedWhileLoading() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(10, 1000, clock::get);
+        long generation = cache.generation(2L);
+
+        assertEquals("v1", cache.get(1L, key -> {
+            cache.invalidate(key);
+            return "v1";
+        }));
+        cache.invalidate(2L);
+
+        assertNull(cache.getIfPresent(1L));
+        assertFalse(cache.putIfUnchanged(2L, "v1", generation));
+        assertTrue(cache.putIfUnchanged(2L, "v2", cache.generation(2L)));
+        assertEquals("v2", cache.getIfPresent(2L));
+    }
+}
@@ -0,0 +1,144 @@
+package com.hsbc.challenge.controller;
+
+import com.hsbc.challenge.async.ReadExecutor;
+import com.hsbc.challenge.async.WriteShards;
+import com.hsbc.challenge.cache.PostCache;
+import com.hsbc.challenge.cache.UserCache;
+import com.hsbc.challenge.log.AccessLog;
+import com.hsbc.challenge.metrics.Histogram;
+import com.hsbc.challenge.metrics.MetricsRegistry;
+import com.hsbc.challenge.model.User;
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.repository.UserRepository;
+import com.hsbc.challenge.search.PostIndex;
+import com.hsbc.challenge.search.TagIndex;
+import com.hsbc.challenge.timeline.TimelineMetrics;
+import com.hsbc.challenge.timeline.TimelineStore;
+import com.hsbc.challenge.trending.TrendingTags;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {MetricsController.class, TimelineMetrics.class, UserCache.class, PostCache.class, ReadExecutor.class, WriteShards.class, AccessLog.class, MetricsRegistry.class, PostIndex.class, TagIndex.class, TrendingTags.class})
+@WebMvcTest(MetricsController.class)
+public class MetricsControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private TimelineMetrics timelineMetrics;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private PostRepository postRepository;
+
+    @MockBean
+    private TimelineStore timelineStore;
+
+    @Test
+    public void shouldRespondWith200AndTimelineReadCounts() throws Exception {
+        timelineMetrics.record(TimelineMetrics.Path.READ);
+        timelineMetrics.record(TimelineMetrics.Path.READ);
+        timelineMetrics.record(TimelineMetrics.Path.PULLED);
+
+        mvc.perform(get("/metrics/timeline")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reads", is(2)))
+                .andExpect(jsonPath("$.pulled", is(1)))
+                .andExpect(jsonPath("$.materialized", is(0)));
+    }
+
+    @Test
+    public void shouldRespondWith200AndCacheStatistics() throws Exception {
+        User user = new User();
+        user.setId(1);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        userCache.findById(1);
+        userCache.findById(1);
+
+        mvc.perform(get("/metrics/cache")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.hits", is(1)))
+                .andExpect(jsonPath("$.users.misses", is(1)))
+                .andExpect(jsonPath("$.users.size", is(1)))
+                .andExpect(jsonPath("$.users.hitRatio", is(0.5)))
+                .andExpect(jsonPath("$.posts.size", is(0)));
+    }
+
+    @Test
+    public void shouldRespondWith200AndExecutorStatistics() throws Exception {
+        mvc.perform(get("/metrics/executor")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queued", is(0)))
+                .andExpect(jsonPath("$.rejected", is(0)))
+                .andExpect(jsonPath("$.timedOut", is(0)));
+    }
+
+    @Test
+    public void shouldRespondWith200AndRoutePercentiles() throws Exception {
+        for (int i = 1; i <= 100; i++) {
+            metricsRegistry.requestTimer("GET", "/api/users/{userId}/timeline").record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        mvc.perform(get("/metrics/requests")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['GET /api/users/{userId}/timeline'].count", is(100)))
+                .andExpect(jsonPath("$['GET /api/users/{userId}/timeline'].p50Micros", is(both(greaterThanOrEqualTo(50000)).and(lessThan(51600)))))
+                .andExpect(jsonPath("$['GET /api/users/{userId}/timeline'].p99Micros", is(both(greaterThanOrEqualTo(99000)).and(lessThan(100001)))))
+                .andExpect(jsonPath("$['GET /api/users/{userId}/timeline'].maxMicros", is(100000)));
+    }
+
+    @Test
+    public void shouldRespondWith200AndTimelineSizeDistribution() throws Exception {
+        Histogram sizes = new Histogram();
+        sizes.record(10);
+        sizes.record(20);
+        sizes.record(800);
+        when(timelineStore.sizeDistribution()).thenReturn(sizes);
+
+        mvc.perform(get("/metrics/timeline-sizes")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count", is(3)))
+                .andExpect(jsonPath("$.p50", is(20)))
+                .andExpect(jsonPath("$.max", is(800)));
+    }
+}
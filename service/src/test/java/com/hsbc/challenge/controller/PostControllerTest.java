@@ -1,36 +1,63 @@
 package com.hsbc.challenge.controller;
 
 import com.google.gson.Gson;
+import com.hsbc.challenge.async.WriteShards;
+import com.hsbc.challenge.cache.PostCache;
+import com.hsbc.challenge.edit.PostEditor;
+import com.hsbc.challenge.export.NdjsonExporter;
 import com.hsbc.challenge.model.Post;
 import com.hsbc.challenge.model.PostRequest;
+import com.hsbc.challenge.model.PostView;
 import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.repository.UserRepository;
+import com.hsbc.challenge.search.PostIndex;
+import com.hsbc.challenge.search.TagIndex;
+import com.hsbc.challenge.timeline.TimelineStore;
 import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
-@ContextConfiguration(classes = {PostController.class})
+@ContextConfiguration(classes = {PostController.class, PostCache.class, NdjsonExporter.class, PostEditor.class, WriteShards.class, ConflictHandler.class})
 @WebMvcTest(PostController.class)
 public class PostControllerTest {
 
@@ -40,17 +67,110 @@ public class PostControllerTest {
     @MockBean
     private PostRepository postRepository;
 
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private TimelineStore timelineStore;
+
+    @MockBean
+    private PostIndex postIndex;
+
+    @MockBean
+    private TagIndex tagIndex;
+
+    @Autowired
+    private PostCache postCache;
+
+    @Autowired
+    private NdjsonExporter ndjsonExporter;
+
+    @Before
+    public void setUp() {
+        postCache.clear();
+    }
+
     @Test
     public void shouldRespondWithStatus200() throws Exception {
-        when(postRepository.findAll()).thenReturn(mock(Iterable.class));
-
         mvc.perform(get("/api/posts")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.posts", hasSize(0)));
+                .andExpect(jsonPath("$.posts", hasSize(0)))
+                .andExpect(jsonPath("$.nextCursor", nullValue()));
+
+        verify(postRepository, times(1)).findPostsBefore(eq(Long.MAX_VALUE), eq(PageRequest.of(0, 20)));
+    }
+
+    @Test
+    public void shouldRespondWith200AndPageOfPostsWithNextCursor() throws Exception {
+        Date creationDate = new Date();
+        Post post1 = createPost(5, "ala", creationDate);
+        Post post2 = createPost(4, "ma kota", creationDate);
+        when(postRepository.findPostsBefore(anyLong(), any())).thenReturn(Arrays.asList(PostView.of(post1), PostView.of(post2)));
+
+        mvc.perform(get("/api/posts?before=7&limit=2")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.posts[0].id", is((int) post1.getId())))
+                .andExpect(jsonPath("$.nextCursor", is("4")));
 
-        verify(postRepository, times(1)).findAll();
+        verify(postRepository, times(1)).findPostsBefore(eq(7L), eq(PageRequest.of(0, 2)));
+    }
+
+    @Test
+    public void shouldStreamAllPostsAsNdjson() throws Exception {
+        when(postRepository.streamAll()).thenReturn(Stream.of(
+                new PostView(5, 1, "ala", new Date(2000)),
+                new PostView(4, 2, "ma kota", new Date(1000))));
+
+        MvcResult result = mvc.perform(get("/api/posts")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(NdjsonExporter.MEDIA_TYPE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(NdjsonExporter.MEDIA_TYPE))
+                .andExpect(content().string(
+                        "{\"id\":5,\"authorId\":1,\"text\":\"ala\",\"creationDateTime\":\"1970-01-01T00:00:02.000+0000\"}\n" +
+                        "{\"id\":4,\"authorId\":2,\"text\":\"ma kota\",\"creationDateTime\":\"1970-01-01T00:00:01.000+0000\"}\n"));
+
+        verify(postRepository, never()).findPostsBefore(anyLong(), any());
+    }
+
+    @Test
+    public void shouldRespondWith503WhenTooManyExportsAreRunning() throws Exception {
+        List<StreamingResponseBody> running = new ArrayList<>();
+        StreamingResponseBody export;
+        while ((export = ndjsonExporter.admit(out -> {})) != null) {
+            running.add(export);
+        }
+        try {
+            mvc.perform(get("/api/posts")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(NdjsonExporter.MEDIA_TYPE))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            for (StreamingResponseBody finished : running) {
+                finished.writeTo(new ByteArrayOutputStream());
+            }
+        }
+
+        verify(postRepository, never()).streamAll();
+        assertEquals(4, running.size());
+    }
+
+    @Test
+    public void shouldRespondWith400WhenCursorIsIncorrect() throws Exception {
+        mvc.perform(get("/api/posts?before=abc")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(StringUtils.EMPTY));
+
+        verify(postRepository, never()).findPostsBefore(anyLong(), any());
     }
 
     @Test
@@ -81,6 +201,28 @@ public class PostControllerTest {
         verify(postRepository, times(1)).findById(eq(1L));
     }
 
+    @Test
+    public void shouldRespondWith304WhenPostIsNotModified() throws Exception {
+        Post post = createPost(1, "ala ma kota", new Date());
+        post.setVersion(2);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+
+        mvc.perform(get("/api/posts/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(content().string(StringUtils.EMPTY));
+        mvc.perform(get("/api/posts/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(jsonPath("$.posts[0].text", is(post.getText())));
+
+        verify(postRepository, times(1)).findById(eq(1L));
+    }
+
     @Test
     public void shouldRespondWith400WhenTextIsEmpty() throws Exception {
         PostRequest postRequest = new PostRequest(StringUtils.EMPTY);
@@ -115,7 +257,7 @@ public class PostControllerTest {
     public void shouldRespondWith404WhenPostDoesNotExists_Put() throws Exception {
         PostRequest postRequest = new PostRequest("123");
 
-        mvc.perform(put("/api/posts/1")
+        performAsync(put("/api/posts/1")
                 .content(new Gson().toJson(postRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
@@ -133,29 +275,119 @@ public class PostControllerTest {
         PostRequest postRequest = new PostRequest(text);
         Post post = createPost(1, "ala ma kota", creationDate);
         when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+        when(postRepository.updateText(1L, 0L, text)).thenReturn(1);
 
-        Post updatedPost = createPost(1, text, creationDate);
-        when(postRepository.save(any(Post.class))).thenReturn(updatedPost);
-
-        mvc.perform(put("/api/posts/1")
+        performAsync(put("/api/posts/1")
                 .content(new Gson().toJson(postRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
                 .andExpect(jsonPath("$.posts", hasSize(1)))
-                .andExpect(jsonPath("$.posts[0].id", is((int) updatedPost.getId())))
-                .andExpect(jsonPath("$.posts[0].text", is(text)));
+                .andExpect(jsonPath("$.posts[0].id", is((int) post.getId())))
+                .andExpect(jsonPath("$.posts[0].text", is(text)))
+                .andExpect(jsonPath("$.posts[0].creationDateTime", notNullValue()));
 
         verify(postRepository, never()).findAll();
         verify(postRepository, times(1)).findById(eq(1L));
-        ArgumentCaptor<Post> argumentCaptor = ArgumentCaptor.forClass(Post.class);
-        verify(postRepository, times(1)).save(argumentCaptor.capture());
-        Post savedPost = argumentCaptor.getAllValues().get(0);
-        assertEquals(post.getId(), savedPost.getId());
-        assertEquals(text, savedPost.getText());
-        assertEquals(post.getCreationDateTime(), savedPost.getCreationDateTime());
+        verify(postRepository, times(1)).updateText(eq(1L), eq(0L), eq(text));
+        verify(postRepository, never()).save(any(Post.class));
+        verify(timelineStore, times(1)).edit(eq(post.getAuthorId()));
+        verify(postIndex, times(1)).update(eq(1L), eq("ala ma kota"), eq(text));
+        verify(tagIndex, times(1)).update(eq(1L), eq("ala ma kota"), eq(text));
+        assertEquals("ala ma kota", post.getText());
     }
 
+    @Test
+    public void shouldRespondWith412WhenIfMatchIsStale() throws Exception {
+        Post post = createPost(1, "ala ma kota", new Date());
+        post.setVersion(3);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+
+        performAsync(put("/api/posts/1")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .content(new Gson().toJson(new PostRequest("Kota ma Ala")))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        verify(postRepository, never()).updateText(anyLong(), anyLong(), any());
+        verify(postIndex, never()).update(anyLong(), any(), any());
+    }
+
+    @Test
+    public void shouldRetryWithCurrentVersionWhenConcurrentUpdateWins() throws Exception {
+        Post stale = createPost(1, "ala ma kota", new Date());
+        Post current = createPost(1, "ala ma psa", stale.getCreationDateTime());
+        current.setVersion(1);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(stale), Optional.of(current));
+        when(postRepository.updateText(1L, 0L, "Kota ma Ala")).thenReturn(0);
+        when(postRepository.updateText(1L, 1L, "Kota ma Ala")).thenReturn(1);
+
+        performAsync(put("/api/posts/1")
+                .content(new Gson().toJson(new PostRequest("Kota ma Ala")))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(jsonPath("$.posts[0].text", is("Kota ma Ala")));
+
+        verify(postRepository, times(2)).findById(eq(1L));
+    }
+
+    @Test
+    public void shouldRespondWith412WhenIfMatchedVersionLosesRace() throws Exception {
+        Post stale = createPost(1, "ala ma kota", new Date());
+        Post current = createPost(1, "ala ma psa", stale.getCreationDateTime());
+        current.setVersion(1);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(stale), Optional.of(current));
+        when(postRepository.updateText(1L, 0L, "Kota ma Ala")).thenReturn(0);
+
+        performAsync(put("/api/posts/1")
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .content(new Gson().toJson(new PostRequest("Kota ma Ala")))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(postRepository, times(1)).updateText(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    public void shouldRespondWith200AndPostsMatchingSearchInIndexOrder() throws Exception {
+        Date creationDate = new Date();
+        Post post5 = createPost(5, "ala ma kota", creationDate);
+        Post post3 = createPost(3, "kota ma ala", creationDate);
+        when(postIndex.search(eq("ala kota"), eq(7L), eq(2), any())).thenAnswer(invocation ->
+                invocation.<Function<long[], List<PostView>>>getArgument(3).apply(new long[]{5, 4, 3}));
+        when(postRepository.findAllById(any())).thenReturn(Arrays.asList(post3, post5));
+
+        mvc.perform(get("/api/posts/search?q=ala kota&before=7&limit=2")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.posts[0].id", is(5)))
+                .andExpect(jsonPath("$.posts[1].id", is(3)))
+                .andExpect(jsonPath("$.nextCursor", is("3")));
+    }
+
+    @Test
+    public void shouldRespondWith400WhenSearchQueryIsBlank() throws Exception {
+        mvc.perform(get("/api/posts/search?q= ")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(StringUtils.EMPTY));
+        mvc.perform(get("/api/posts/search?q=ala&limit=0")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(postIndex, never()).search(any(), anyLong(), anyInt(), any());
+    }
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mvc.perform(asyncDispatch(result));
+    }
 
     private Post createPost(long id, String text, Date creationDate) {
         Post post = new Post();
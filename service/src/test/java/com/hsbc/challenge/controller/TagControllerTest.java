@@ -0,0 +1,120 @@
+package com.hsbc.challenge.controller;
+
+import com.hsbc.challenge.cache.PostCache;
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.search.TagIndex;
+import com.hsbc.challenge.trending.TrendingTags;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {TagController.class, PostCache.class, TagIndex.class, TrendingTags.class})
+@WebMvcTest(TagController.class)
+public class TagControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @MockBean
+    private PostRepository postRepository;
+
+    @Test
+    public void shouldRespondWith200AndPageOfTaggedPostsNewestFirst() throws Exception {
+        Post post1 = createPost(101, "#Java ma @ala");
+        Post post2 = createPost(102, "#java again");
+        Post post3 = createPost(103, "no tags");
+        for (Post post : Arrays.asList(post1, post2, post3)) {
+            tagIndex.add(post.getId(), post.getText());
+        }
+        when(postRepository.findAllById(any())).thenReturn(Arrays.asList(post1, post2));
+
+        mvc.perform(get("/api/tags/JAVA/posts?limit=2")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.posts[0].id", is(102)))
+                .andExpect(jsonPath("$.posts[1].id", is(101)))
+                .andExpect(jsonPath("$.nextCursor", is("101")));
+        mvc.perform(get("/api/mentions/ala/posts?before=101")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(0)))
+                .andExpect(jsonPath("$.nextCursor", nullValue()));
+    }
+
+    @Test
+    public void shouldRespondWith200AndTrendingTagsCountedOnAdd() throws Exception {
+        tagIndex.add(201, "#spring #boot");
+        tagIndex.add(202, "#spring");
+        tagIndex.update(202, "#spring", "#spring edited");
+
+        mvc.perform(get("/api/tags/trending?limit=1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags", hasSize(1)))
+                .andExpect(jsonPath("$.tags[0].tag", is("spring")))
+                .andExpect(jsonPath("$.tags[0].count", is(2)))
+                .andExpect(jsonPath("$.windowSeconds", is(3600)));
+    }
+
+    @Test
+    public void shouldNotCountHashtagsAddedByEdits() throws Exception {
+        tagIndex.add(301, "#summer");
+        tagIndex.add(302, "#winter");
+        tagIndex.update(301, "#summer", "plain");
+        tagIndex.update(301, "plain", "#summer");
+        tagIndex.update(302, "#winter", "#winter #summer");
+
+        mvc.perform(get("/api/tags/trending?limit=10")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags[?(@.tag == 'summer')].count", contains(1)))
+                .andExpect(jsonPath("$.tags[?(@.tag == 'winter')].count", contains(1)));
+    }
+
+    @Test
+    public void shouldRespondWith400WhenTagIsIncorrect() throws Exception {
+        mvc.perform(get("/api/tags/a-b/posts")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(StringUtils.EMPTY));
+        mvc.perform(get("/api/tags/trending?limit=0")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(postRepository, never()).findAllById(any());
+    }
+
+    private Post createPost(long id, String text) {
+        Post post = new Post();
+        post.setId(id);
+        post.setText(text);
+        post.setCreationDateTime(new Date());
+        return post;
+    }
+}
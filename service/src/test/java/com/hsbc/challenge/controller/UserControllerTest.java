@@ -1,65 +1,127 @@
 package com.hsbc.challenge.controller;
 
 import com.google.gson.Gson;
+import com.hsbc.challenge.async.ReadExecutor;
+import com.hsbc.challenge.async.WriteShards;
+import com.hsbc.challenge.cache.PostCache;
+import com.hsbc.challenge.cache.UserCache;
+import com.hsbc.challenge.edit.PostEditor;
+import com.hsbc.challenge.export.NdjsonExporter;
+import com.hsbc.challenge.graph.SocialGraph;
 import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostBatchRequest;
 import com.hsbc.challenge.model.PostRequest;
+import com.hsbc.challenge.model.PostView;
 import com.hsbc.challenge.model.User;
+import com.hsbc.challenge.model.UserPostBatchRequest;
+import com.hsbc.challenge.model.UserPostRequest;
 import com.hsbc.challenge.model.UserRequest;
+import com.hsbc.challenge.model.UserSummary;
+import com.hsbc.challenge.repository.PostRepository;
 import com.hsbc.challenge.repository.UserRepository;
+import com.hsbc.challenge.search.PostIndex;
+import com.hsbc.challenge.search.TagIndex;
+import com.hsbc.challenge.timeline.InMemoryUserPosts;
+import com.hsbc.challenge.timeline.TimelineAssembler;
+import com.hsbc.challenge.timeline.TimelineMetrics;
+import com.hsbc.challenge.timeline.TimelineStore;
 import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
-@ContextConfiguration(classes = {UserController.class})
+@ContextConfiguration(classes = {UserController.class, UserCache.class, PostCache.class, TimelineStore.class, TimelineAssembler.class, TimelineMetrics.class, NdjsonExporter.class, ReadExecutor.class, WriteShards.class, PostEditor.class, ConflictHandler.class})
 @WebMvcTest(UserController.class)
 public class UserControllerTest {
 
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private TimelineMetrics timelineMetrics;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private PostCache postCache;
+
     @MockBean
     private UserRepository repository;
 
+    @MockBean
+    private PostRepository postRepository;
+
+    @MockBean
+    private SocialGraph socialGraph;
+
+    @MockBean
+    private PostIndex postIndex;
+
+    @MockBean
+    private TagIndex tagIndex;
+
+    @Before
+    public void setUp() {
+        userCache.clear();
+        postCache.clear();
+        when(socialGraph.followees(anyLong())).thenReturn(new long[0]);
+        when(socialGraph.followers(anyLong())).thenReturn(new long[0]);
+    }
+
     @Test
     public void shouldRespondWith200WhenUsersDoNotExist() throws Exception {
-        when(repository.findAll()).thenReturn(mock(Iterable.class));
-
         mvc.perform(get("/api/users")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.users", hasSize(0)));
+                .andExpect(jsonPath("$.users", hasSize(0)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
 
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).findSummariesAfter(eq(0L), eq(PageRequest.of(0, 20)));
+        verify(repository, never()).findAll();
     }
 
     @Test
     public void shouldRespondWith200AndAllUsers() throws Exception {
-        User user1 = createUser(1, "user1", Collections.emptyList(), Collections.emptySet());
-        User user2 = createUser(2, "user2", Collections.emptyList(), Collections.emptySet());
-        when(repository.findAll()).thenReturn(Arrays.asList(user1, user2));
+        UserSummary user1 = new UserSummary(1, "user1", 3, 0);
+        UserSummary user2 = new UserSummary(2, "user2", 0, 1);
+        when(repository.findSummariesAfter(anyLong(), any(Pageable.class))).thenReturn(Arrays.asList(user1, user2));
 
         mvc.perform(get("/api/users")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -69,14 +131,62 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.users[0].id", is((int) user1.getId())))
                 .andExpect(jsonPath("$.users[1].id", is((int) user2.getId())))
                 .andExpect(jsonPath("$.users[0].username", is(user1.getUsername())))
-                .andExpect(jsonPath("$.users[1].username", is(user2.getUsername())));
+                .andExpect(jsonPath("$.users[1].username", is(user2.getUsername())))
+                .andExpect(jsonPath("$.users[0].followerCount", is(3)))
+                .andExpect(jsonPath("$.users[1].followeeCount", is(1)));
+
+        verify(repository, times(1)).findSummariesAfter(eq(0L), eq(PageRequest.of(0, 20)));
+    }
+
+    @Test
+    public void shouldPageUsersAfterCursor() throws Exception {
+        when(repository.findSummariesAfter(anyLong(), any(Pageable.class))).thenReturn(Arrays.asList(
+                new UserSummary(5, "user5", 0, 0),
+                new UserSummary(7, "user7", 0, 0)));
+
+        mvc.perform(get("/api/users?after=4&limit=2")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor", is("7")));
+
+        verify(repository, times(1)).findSummariesAfter(eq(4L), eq(PageRequest.of(0, 2)));
+    }
+
+    @Test
+    public void shouldRespondWith400WhenUserPageLimitIsIncorrect() throws Exception {
+        mvc.perform(get("/api/users?limit=0")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
 
-        verify(repository, times(1)).findAll();
+        verify(repository, never()).findSummariesAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void shouldStreamAllUsersAsNdjson() throws Exception {
+        when(repository.streamAllSummaries()).thenReturn(Stream.of(
+                new UserSummary(1, "user1", 0, 1),
+                new UserSummary(2, "user2", 1, 0)));
+
+        MvcResult result = mvc.perform(get("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(NdjsonExporter.MEDIA_TYPE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(NdjsonExporter.MEDIA_TYPE))
+                .andExpect(content().string(
+                        "{\"id\":1,\"username\":\"user1\",\"followerCount\":0,\"followeeCount\":1}\n" +
+                        "{\"id\":2,\"username\":\"user2\",\"followerCount\":1,\"followeeCount\":0}\n"));
+
+        verify(repository, never()).findSummariesAfter(anyLong(), any(Pageable.class));
     }
 
     @Test
     public void shouldRespondWith404WhenUserDoesNotExists_Get() throws Exception {
-        mvc.perform(get("/api/users/1")
+        performAsync(get("/api/users/1")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
@@ -86,24 +196,42 @@ public class UserControllerTest {
 
     @Test
     public void shouldRespondWith200AndUserDetails() throws Exception {
-        User user = createUser(1, "username", Collections.emptyList(), Collections.emptySet());
+        User user = createUser(1, "username");
         when(repository.findById(1L)).thenReturn(Optional.of(user));
+        when(socialGraph.followerCount(1L)).thenReturn(2);
+        when(socialGraph.followees(1L)).thenReturn(new long[]{4, 5, 6});
 
-        mvc.perform(get("/api/users/1")
+        performAsync(get("/api/users/1")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.users", hasSize(1)))
                 .andExpect(jsonPath("$.users[0].id", is((int) user.getId())))
                 .andExpect(jsonPath("$.users[0].username", is(user.getUsername())))
-                .andExpect(jsonPath("$.users[0].followees", hasSize(0)));
+                .andExpect(jsonPath("$.users[0].followerCount", is(2)))
+                .andExpect(jsonPath("$.users[0].followeeCount", is(3)));
+
+        verify(repository, times(1)).findById(eq(1L));
+    }
+
+    @Test
+    public void shouldServeRepeatedUserLookupsFromCache() throws Exception {
+        User user = createUser(1, "username");
+        when(repository.findById(1L)).thenReturn(Optional.of(user));
+
+        for (int i = 0; i < 3; i++) {
+            performAsync(get("/api/users/1")
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.users[0].username", is(user.getUsername())));
+        }
 
         verify(repository, times(1)).findById(eq(1L));
     }
 
     @Test
     public void shouldRespondWith500WhenUserNotCreated() throws Exception {
-        mvc.perform(post("/api/users")
+        performAsync(post("/api/users")
                 .content(new Gson().toJson(new UserRequest()))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isInternalServerError())
@@ -114,18 +242,17 @@ public class UserControllerTest {
     public void shouldRespondWith301WhenUserCreated() throws Exception {
         String username = "username1";
         UserRequest userRequest = new UserRequest(username);
-        User user = createUser(1, username, Collections.emptyList(), Collections.emptySet());
+        User user = createUser(1, username);
         when(repository.save(any())).thenReturn(user);
 
-        mvc.perform(post("/api/users")
+        performAsync(post("/api/users")
                 .content(new Gson().toJson(userRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.users", hasSize(1)))
                 .andExpect(jsonPath("$.users[0].id", is((int) user.getId())))
-                .andExpect(jsonPath("$.users[0].username", is(user.getUsername())))
-                .andExpect(jsonPath("$.users[0].followees", hasSize(0)));
+                .andExpect(jsonPath("$.users[0].username", is(user.getUsername())));
 
         ArgumentCaptor<User> requestCaptor = ArgumentCaptor.forClass(User.class);
         verify(repository, times(1)).save(requestCaptor.capture());
@@ -135,124 +262,142 @@ public class UserControllerTest {
 
     @Test
     public void shouldRespondWith404WhenUserNotFound_Follow() throws Exception {
-        User user = createUser(1, "username1", Collections.emptyList(), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
-
-        mvc.perform(post("/api/users/5/follow/2")
+        performAsync(post("/api/users/5/follow/2")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
         verify(repository, times(1)).findById(eq(5L));
         verify(repository, never()).findById(eq(2L));
-        verify(repository, never()).save(any());
+        verify(socialGraph, never()).follow(anyLong(), anyLong());
     }
 
     @Test
     public void shouldRespondWith404WhenFolloweeNotFound_Follow() throws Exception {
-        User user = createUser(1, "username1", Collections.emptyList(), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
 
-        mvc.perform(post("/api/users/1/follow/2")
+        performAsync(post("/api/users/1/follow/2")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
         verify(repository, times(1)).findById(eq(1L));
         verify(repository, times(1)).findById(eq(2L));
-        verify(repository, never()).save(any());
+        verify(socialGraph, never()).follow(anyLong(), anyLong());
     }
 
     @Test
     public void shouldRespondWith200AndAddFoloweeToUser() throws Exception {
-        User user = createUser(1, "username1", Collections.emptyList(), new HashSet<>());
-        User followee = createUser(2, "username2", Collections.emptyList(), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
-        when(repository.findById(2L)).thenReturn(Optional.of(followee));
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
+        when(repository.findById(2L)).thenReturn(Optional.of(createUser(2, "user2")));
+        when(socialGraph.follow(1L, 2L)).thenReturn(true);
 
-        mvc.perform(post("/api/users/1/follow/2")
+        performAsync(post("/api/users/1/follow/2")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-        verify(repository, times(1)).findById(eq(1L));
-        verify(repository, times(1)).findById(eq(2L));
-
-        ArgumentCaptor<User> requestCaptor = ArgumentCaptor.forClass(User.class);
-        verify(repository, times(1)).save(requestCaptor.capture());
-        User savedUser = requestCaptor.getAllValues().get(0);
-        assertEquals(1, user.getFollowees().size());
-        assertTrue(user.getFollowees().contains(followee));
+        verify(socialGraph, times(1)).follow(eq(1L), eq(2L));
+        verify(repository, never()).save(any());
     }
 
     @Test
     public void shouldRespondWith400WhenUserIsAlreadyFollowed() throws Exception {
-        User followee = createUser(2, "username2", Collections.emptyList(), Collections.emptySet());
-        User user = createUser(1, "username1", Collections.emptyList(), new HashSet<>(Collections.singleton(followee)));
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
+        when(socialGraph.isFollowing(1L, 2L)).thenReturn(true);
 
-        mvc.perform(post("/api/users/1/follow/2")
+        performAsync(post("/api/users/1/follow/2")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
 
-        verify(repository, times(1)).findById(eq(1L));
         verify(repository, never()).findById(eq(2L));
-        verify(repository, never()).save(any());
+        verify(socialGraph, never()).follow(anyLong(), anyLong());
     }
 
     @Test
     public void shouldRespondWith404WhenUserNotFound_Unfollow() throws Exception {
-        User user = createUser(1, "username1", Collections.emptyList(), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
-
-        mvc.perform(delete("/api/users/5/follow/2")
+        performAsync(delete("/api/users/5/follow/2")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
-        verify(repository, times(1)).findById(eq(5L));
+        verify(socialGraph, times(1)).unfollow(eq(5L), eq(2L));
         verify(repository, never()).save(any());
     }
 
     @Test
     public void shouldRespondWith404WhenFolloweeNotFound_Unfollow() throws Exception {
-        User user = createUser(1, "username1", Collections.emptyList(), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
-
-        mvc.perform(delete("/api/users/1/follow/2")
+        performAsync(delete("/api/users/1/follow/2")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
-        verify(repository, times(1)).findById(eq(1L));
-        verify(repository, never()).save(any());
+        verify(socialGraph, times(1)).unfollow(eq(1L), eq(2L));
+        verify(repository, never()).findById(anyLong());
     }
 
     @Test
     public void shouldRespondWith200AndRemoveFolloweeFromUser() throws Exception {
-        User followee = createUser(2, "username2", Collections.emptyList(), Collections.emptySet());
-        User user = createUser(1, "username1", Collections.emptyList(), new HashSet<>(Collections.singleton(followee)));
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
+        when(socialGraph.unfollow(1L, 2L)).thenReturn(true);
 
-        mvc.perform(delete("/api/users/1/follow/2")
+        performAsync(delete("/api/users/1/follow/2")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
+        verify(socialGraph, times(1)).unfollow(eq(1L), eq(2L));
+        verify(repository, never()).findById(anyLong());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    public void shouldRespondWith404WhenUserDoesNotExists_Followers() throws Exception {
+        mvc.perform(get("/api/users/1/followers")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(StringUtils.EMPTY));
+
         verify(repository, times(1)).findById(eq(1L));
+        verify(socialGraph, never()).followers(anyLong(), anyLong(), anyInt());
+    }
 
-        ArgumentCaptor<User> requestCaptor = ArgumentCaptor.forClass(User.class);
-        verify(repository, times(1)).save(requestCaptor.capture());
-        User savedUser = requestCaptor.getAllValues().get(0);
-        assertTrue(savedUser.getFollowees().isEmpty());
+    @Test
+    public void shouldRespondWith400WhenFollowersCursorIsIncorrect() throws Exception {
+        mvc.perform(get("/api/users/1/followers?after=x")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(repository, never()).findById(anyLong());
+    }
+
+    @Test
+    public void shouldRespondWith200AndPageOfFollowers() throws Exception {
+        UserSummary follower1 = new UserSummary(3, "username3", 0, 1);
+        UserSummary follower2 = new UserSummary(7, "username7", 4, 2);
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
+        when(socialGraph.followers(1L, 2L, 2)).thenReturn(new long[]{3, 7});
+        when(socialGraph.followerCount(1L)).thenReturn(5);
+        when(repository.findSummariesByIdIn(Arrays.asList(3L, 7L))).thenReturn(Arrays.asList(follower1, follower2));
+
+        mvc.perform(get("/api/users/1/followers?after=2&limit=2")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.followers", hasSize(2)))
+                .andExpect(jsonPath("$.followers[0].id", is((int) follower1.getId())))
+                .andExpect(jsonPath("$.followers[1].id", is((int) follower2.getId())))
+                .andExpect(jsonPath("$.followers[1].followerCount", is(4)))
+                .andExpect(jsonPath("$.followerCount", is(5)))
+                .andExpect(jsonPath("$.nextCursor", is("7")));
     }
 
     @Test
     public void shouldRespondWith404WhenUserDoesNotExists_Wall() throws Exception {
-        mvc.perform(get("/api/users/1/posts")
+        performAsync(get("/api/users/1/posts")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
         verify(repository, times(1)).findById(eq(1L));
+        verify(postRepository, never()).findUserPostsBefore(anyLong(), anyLong(), any());
     }
 
     @Test
@@ -260,10 +405,11 @@ public class UserControllerTest {
         Post post1 = createPost(5, "ala", createDate(5, 10, 20));
         Post post2 = createPost(15, "ala", createDate(1, 3, 3));
         Post post3 = createPost(25, "ala", createDate(5, 10, 1));
-        User user = createUser(1, "user", Arrays.asList(post1, post2, post3), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
+        when(postRepository.findUserPostsBefore(eq(1L), eq(Long.MAX_VALUE), eq(PageRequest.of(0, 20))))
+                .thenReturn(Arrays.asList(PostView.of(post1), PostView.of(post3), PostView.of(post2)));
 
-        mvc.perform(get("/api/users/1/posts")
+        performAsync(get("/api/users/1/posts")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk())
@@ -273,36 +419,63 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.posts[2].id", is((int) post2.getId())))
                 .andExpect(jsonPath("$.posts[0].text", is(post1.getText())))
                 .andExpect(jsonPath("$.posts[1].text", is(post3.getText())))
-                .andExpect(jsonPath("$.posts[2].text", is(post2.getText())));
+                .andExpect(jsonPath("$.posts[2].text", is(post2.getText())))
+                .andExpect(jsonPath("$.nextCursor", nullValue()));
 
         verify(repository, times(1)).findById(eq(1L));
     }
 
+    @Test
+    public void shouldRespondWith200AndPageOfUserPostsWithNextCursor() throws Exception {
+        Post post1 = createPost(5, "ala", createDate(5, 10, 20));
+        Post post2 = createPost(3, "ala", createDate(5, 10, 1));
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
+        when(postRepository.findUserPostsBefore(eq(1L), eq(9L), eq(PageRequest.of(0, 2))))
+                .thenReturn(Arrays.asList(PostView.of(post1), PostView.of(post2)));
+
+        performAsync(get("/api/users/1/posts?before=9&limit=2")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor", is("3")));
+    }
+
+    @Test
+    public void shouldRespondWith400WhenPageLimitIsIncorrect() throws Exception {
+        performAsync(get("/api/users/1/timeline?limit=0")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(StringUtils.EMPTY));
+
+        verify(repository, never()).findById(anyLong());
+    }
+
     @Test
     public void shouldRespondWith404WhenUserDoesNotExists_Timeline() throws Exception {
-        mvc.perform(get("/api/users/1/timeline")
+        performAsync(get("/api/users/1/timeline")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
         verify(repository, times(1)).findById(eq(1L));
+        verify(socialGraph, never()).followees(anyLong());
     }
 
     @Test
     public void shouldRespondWith200AndAllFoloweePostsWithReverseChronologicalOrder() throws Exception {
-        Post post1 = createPost(6, "ala", createDate(5, 10, 20));
-        Post post2 = createPost(7, "ala", createDate(1, 3, 3));
-        Post post3 = createPost(8, "ala", createDate(5, 10, 1));
+        Post post1 = createPost(8, "ala", createDate(5, 10, 20));
+        Post post2 = createPost(6, "ala", createDate(1, 3, 3));
+        Post post3 = createPost(7, "ala", createDate(5, 10, 1));
         Post post4 = createPost(10, "ala", createDate(6, 11, 2));
-        User followee1 = createUser(2, "username2", Arrays.asList(post1, post3), Collections.emptySet());
-        User followee2 = createUser(3, "username3", Collections.singletonList(post2), Collections.emptySet());
-        User followee3 = createUser(4, "username4", Collections.singletonList(post4), Collections.emptySet());
-
-        User user = createUser(1, "user", Collections.singletonList(createPost(10, "x", new Date())),
-                new HashSet<>(Arrays.asList(followee1, followee2, followee3)));
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
-
-        mvc.perform(get("/api/users/1/timeline")
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
+        when(socialGraph.followees(1L)).thenReturn(new long[]{2, 3, 4});
+        Map<Long, List<Post>> postsByAuthor = new HashMap<>();
+        postsByAuthor.put(2L, Arrays.asList(post1, post3));
+        postsByAuthor.put(3L, Collections.singletonList(post2));
+        postsByAuthor.put(4L, Collections.singletonList(post4));
+        InMemoryUserPosts.stub(postRepository, postsByAuthor);
+
+        performAsync(get("/api/users/1/timeline")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk())
@@ -320,144 +493,312 @@ public class UserControllerTest {
     }
 
     @Test
-    public void shouldRespondWith404WhenUserDoesNotExists_SinglePost_Get() throws Exception {
-        mvc.perform(get("/api/users/1/posts/1")
+    public void shouldRespondWith304UntilFolloweePostsChange() throws Exception {
+        Post post1 = createPost(52, "ala", createDate(5, 10, 20));
+        when(repository.findById(51L)).thenReturn(Optional.of(createUser(51, "user51")));
+        when(socialGraph.followees(51L)).thenReturn(new long[]{53});
+        when(socialGraph.followers(53L)).thenReturn(new long[]{51});
+        InMemoryUserPosts.stub(postRepository, Collections.singletonMap(53L, Collections.singletonList(post1)));
+
+        String etag = performAsync(get("/api/users/51/timeline")
                 .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isNotFound())
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        performAsync(get("/api/users/51/timeline")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
                 .andExpect(content().string(StringUtils.EMPTY));
+        verify(postRepository, times(1)).findUserPostsBefore(eq(53L), anyLong(), any());
 
-        verify(repository, times(1)).findById(eq(1L));
+        Post post2 = createPost(54, "ma kota");
+        post2.setAuthorId(53);
+        when(postRepository.save(any(Post.class))).thenReturn(post2);
+        performAsync(post("/api/users/53/posts")
+                .content(new Gson().toJson(new PostRequest(post2.getText())))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        performAsync(get("/api/users/51/timeline")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts[0].id", is(54)));
     }
 
     @Test
-    public void shouldRespondWith404WhenPostDoesNotExists_SinglePost_Get() throws Exception {
-        User user = createUser(1, "username1", Collections.emptyList(), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
+    public void shouldServeMaterializedTimelineAndPushNewFolloweePost() throws Exception {
+        Post post1 = createPost(32, "ala", createDate(5, 10, 20));
+        Post post2 = createPost(31, "ala", createDate(1, 3, 3));
+        when(repository.findById(21L)).thenReturn(Optional.of(createUser(21, "user21")));
+        when(socialGraph.followees(21L)).thenReturn(new long[]{22});
+        when(socialGraph.followers(22L)).thenReturn(new long[]{21});
+        InMemoryUserPosts.stub(postRepository, Collections.singletonMap(22L, Arrays.asList(post1, post2)));
+
+        performAsync(get("/api/users/21/timeline")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)));
+
+        Post post3 = createPost(33, "kot", createDate(7, 1, 1));
+        when(postRepository.save(any(Post.class))).thenReturn(post3);
+        performAsync(post("/api/users/22/posts")
+                .content(new Gson().toJson(new PostRequest(post3.getText())))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        when(postRepository.findAllById(any())).thenReturn(Arrays.asList(post1, post3, post2));
+        performAsync(get("/api/users/21/timeline")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(3)))
+                .andExpect(jsonPath("$.posts[0].id", is((int) post3.getId())))
+                .andExpect(jsonPath("$.posts[1].id", is((int) post1.getId())))
+                .andExpect(jsonPath("$.posts[2].id", is((int) post2.getId())));
+
+        verify(postRepository, times(1)).findAllById(eq(Arrays.asList(32L, 31L)));
+    }
 
+    @Test
+    public void shouldMergePulledCelebrityPostsIntoMaterializedTimeline() throws Exception {
+        Post post1 = createPost(53, "ala", createDate(5, 10, 20));
+        Post post2 = createPost(51, "ala", createDate(1, 3, 3));
+        Post celebrityPost = createPost(52, "kot", createDate(3, 1, 1));
+        when(repository.findById(41L)).thenReturn(Optional.of(createUser(41, "user41")));
+        when(socialGraph.followees(41L)).thenReturn(new long[]{42, 43});
+        when(socialGraph.followerCount(43L)).thenReturn(20000);
+        Map<Long, List<Post>> postsByAuthor = new HashMap<>();
+        postsByAuthor.put(42L, Arrays.asList(post1, post2));
+        postsByAuthor.put(43L, Collections.singletonList(celebrityPost));
+        InMemoryUserPosts.stub(postRepository, postsByAuthor);
+        long pulled = timelineMetrics.count(TimelineMetrics.Path.PULLED);
+        long rebuilt = timelineMetrics.count(TimelineMetrics.Path.REBUILT);
+
+        performAsync(get("/api/users/41/timeline")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(3)))
+                .andExpect(jsonPath("$.posts[0].id", is((int) post1.getId())))
+                .andExpect(jsonPath("$.posts[1].id", is((int) celebrityPost.getId())))
+                .andExpect(jsonPath("$.posts[2].id", is((int) post2.getId())));
+
+        assertEquals(pulled + 1, timelineMetrics.count(TimelineMetrics.Path.PULLED));
+        assertEquals(rebuilt + 1, timelineMetrics.count(TimelineMetrics.Path.REBUILT));
+        verify(postRepository, times(1)).findUserPostsBefore(eq(42L), anyLong(), any());
+        verify(postRepository, times(1)).findUserPostsBefore(eq(43L), anyLong(), any());
+    }
+
+    @Test
+    public void shouldRespondWith404WhenPostDoesNotExists_SinglePost_Get() throws Exception {
         mvc.perform(get("/api/users/1/posts/10")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
-        verify(repository, times(1)).findById(eq(1L));
+        verify(postRepository, times(1)).findById(eq(10L));
+        verify(repository, never()).findById(anyLong());
     }
 
     @Test
     public void shouldRespondWith200AndGetUserPost() throws Exception {
-        Post post1 = createPost(1, "Ala ma kota1");
-        Post post2 = createPost(2, "Ala ma kota2");
-        User user = createUser(10, "username1", Arrays.asList(post2, post1), Collections.emptySet());
-        when(repository.findById(10L)).thenReturn(Optional.of(user));
+        Post post = createPost(2, "Ala ma kota2");
+        post.setAuthorId(10);
+        when(postRepository.findById(2L)).thenReturn(Optional.of(post));
 
         mvc.perform(get("/api/users/10/posts/2")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.posts", hasSize(1)))
-                .andExpect(jsonPath("$.posts[0].id", is((int) post2.getId())))
-                .andExpect(jsonPath("$.posts[0].text", is(post2.getText())));
+                .andExpect(jsonPath("$.posts[0].id", is((int) post.getId())))
+                .andExpect(jsonPath("$.posts[0].text", is(post.getText())));
 
-        verify(repository, times(1)).findById(eq(10L));
+        verify(postRepository, times(1)).findById(eq(2L));
+        verify(repository, never()).findById(anyLong());
     }
 
     @Test
     public void shouldRespondWith404WhenUserDoesNotExists_SinglePost_Post() throws Exception {
         PostRequest postRequest = new PostRequest("xxx");
+        when(postRepository.save(any(Post.class))).thenThrow(new DataIntegrityViolationException("author_id"));
 
-        mvc.perform(post("/api/users/1/posts")
+        performAsync(post("/api/users/1/posts")
                 .content(new Gson().toJson(postRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
-        verify(repository, times(1)).findById(eq(1L));
-        verify(repository, never()).save(any());
+        verify(repository, never()).findById(anyLong());
+        verify(postRepository, times(1)).save(any(Post.class));
     }
 
     @Test
     public void shouldRespondWith400WhenPostTextIsEmpty() throws Exception {
         PostRequest postRequest = new PostRequest(StringUtils.EMPTY);
 
-        mvc.perform(post("/api/users/1/posts")
+        performAsync(post("/api/users/1/posts")
                 .content(new Gson().toJson(postRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string(StringUtils.EMPTY));
 
         verify(repository, never()).findById(anyLong());
-        verify(repository, never()).save(any());
+        verify(postRepository, never()).save(any());
     }
 
     @Test
     public void shouldRespondWith400WhenPostTextIsTooLong() throws Exception {
         PostRequest postRequest = new PostRequest(StringUtils.repeat("x", 141));
 
-        mvc.perform(post("/api/users/1/posts")
+        performAsync(post("/api/users/1/posts")
                 .content(new Gson().toJson(postRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string(StringUtils.EMPTY));
 
         verify(repository, never()).findById(anyLong());
-        verify(repository, never()).save(any());
+        verify(postRepository, never()).save(any());
     }
 
     @Test
     public void shouldRespondWith200AndAddPostToUser() throws Exception {
         final String postText = "Ala ma kota";
-        Post post = createPost(1, postText);
+        Date creationDate = new Date();
+        Post post = createPost(1, postText, creationDate);
         PostRequest postRequest = new PostRequest(postText);
+        when(postRepository.save(any(Post.class))).thenReturn(post);
 
-        User user = createUser(1, "username1", new ArrayList<>(), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
-        User updatedUser = createUser(1, "username1", Collections.singletonList(post), Collections.emptySet());
-        when(repository.save(any())).thenReturn(updatedUser);
-
-        mvc.perform(post("/api/users/1/posts")
+        performAsync(post("/api/users/1/posts")
                 .content(new Gson().toJson(postRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.posts", hasSize(1)))
                 .andExpect(jsonPath("$.posts[0].id", is((int) post.getId())))
-                .andExpect(jsonPath("$.posts[0].text", is(post.getText())));
+                .andExpect(jsonPath("$.posts[0].text", is(post.getText())))
+                .andExpect(jsonPath("$.posts[0].creationDateTime", notNullValue()));
 
-        verify(repository, times(1)).findById(eq(1L));
-        ArgumentCaptor<User> requestCaptor = ArgumentCaptor.forClass(User.class);
-        verify(repository, times(1)).save(requestCaptor.capture());
-        User savedUser = requestCaptor.getAllValues().get(0);
-        assertEquals(user.getId(), savedUser.getId());
-        assertEquals(user.getUsername(), savedUser.getUsername());
-        assertEquals(1, savedUser.getPosts().size());
-        assertEquals(postText, savedUser.getPosts().get(0).getText());
+        verify(repository, never()).findById(anyLong());
+        verify(repository, never()).save(any());
+        ArgumentCaptor<Post> requestCaptor = ArgumentCaptor.forClass(Post.class);
+        verify(postRepository, times(1)).save(requestCaptor.capture());
+        Post savedPost = requestCaptor.getAllValues().get(0);
+        assertEquals(1L, savedPost.getAuthorId());
+        assertEquals(postText, savedPost.getText());
+        verify(postIndex, times(1)).add(eq(1L), eq(postText));
+        verify(tagIndex, times(1)).add(eq(1L), eq(postText));
     }
 
     @Test
-    public void shouldRespondWith404WhenUserDoesNotExists_SinglePost_Put() throws Exception {
+    public void shouldRespondWith404WhenPostDoesNotExists_SinglePost_Put() throws Exception {
         PostRequest postRequest = new PostRequest("xxx");
 
-        mvc.perform(put("/api/users/1/posts/1")
+        performAsync(put("/api/users/1/posts/10")
                 .content(new Gson().toJson(postRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
-        verify(repository, times(1)).findById(eq(1L));
-        verify(repository, never()).save(any());
+        verify(postRepository, times(1)).findById(eq(10L));
+        verify(postRepository, never()).save(any());
     }
 
     @Test
-    public void shouldRespondWith404WhenPostDoesNotExists_SinglePost_Put() throws Exception {
-        User user = createUser(1, "username1", Collections.emptyList(), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
+    public void shouldRespondWith200AndAddBatchOfPostsToUser() throws Exception {
+        PostBatchRequest batchRequest = new PostBatchRequest(Arrays.asList(new PostRequest("first"), new PostRequest("second")));
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
+        when(postRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Post> posts = invocation.getArgument(0);
+            for (int i = 0; i < posts.size(); i++) {
+                posts.get(i).setId(10 + i);
+            }
+            return posts;
+        });
+
+        performAsync(post("/api/users/1/posts:batch")
+                .content(new Gson().toJson(batchRequest))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.posts[0].id", is(10)))
+                .andExpect(jsonPath("$.posts[0].authorId", is(1)))
+                .andExpect(jsonPath("$.posts[1].text", is("second")));
 
-        mvc.perform(get("/api/users/1/posts/10")
+        verify(postRepository, times(1)).saveAll(anyList());
+        verify(postRepository, never()).save(any());
+        verify(postIndex, times(1)).add(eq(10L), eq("first"));
+        verify(postIndex, times(1)).add(eq(11L), eq("second"));
+    }
+
+    @Test
+    public void shouldRespondWith400WhenBatchHasPostOfIncorrectSize() throws Exception {
+        PostBatchRequest batchRequest = new PostBatchRequest(Arrays.asList(new PostRequest("first"), new PostRequest(StringUtils.EMPTY)));
+
+        performAsync(post("/api/users/1/posts:batch")
+                .content(new Gson().toJson(batchRequest))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(StringUtils.EMPTY));
+
+        verify(repository, never()).findById(anyLong());
+        verify(postRepository, never()).saveAll(any());
+    }
+
+    @Test
+    public void shouldRespondWith400WhenBatchIsEmpty() throws Exception {
+        performAsync(post("/api/users/1/posts:batch")
+                .content(new Gson().toJson(new PostBatchRequest(Collections.emptyList())))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(postRepository, never()).saveAll(any());
+    }
+
+    @Test
+    public void shouldRespondWith200AndCreatePostsOfManyAuthorsInOneTransaction() throws Exception {
+        UserPostBatchRequest batchRequest = new UserPostBatchRequest(Arrays.asList(
+                new UserPostRequest(1, "first"), new UserPostRequest(2, "second"), new UserPostRequest(1, "third")));
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
+        when(repository.findById(2L)).thenReturn(Optional.of(createUser(2, "user2")));
+        AtomicLong ids = new AtomicLong(10);
+        when(postRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Post> posts = invocation.getArgument(0);
+            posts.forEach(post -> post.setId(ids.getAndIncrement()));
+            return posts;
+        });
+
+        performAsync(post("/api/users/posts:batch")
+                .content(new Gson().toJson(batchRequest))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(3)))
+                .andExpect(jsonPath("$.posts[0].authorId", is(1)))
+                .andExpect(jsonPath("$.posts[0].text", is("first")))
+                .andExpect(jsonPath("$.posts[1].authorId", is(2)))
+                .andExpect(jsonPath("$.posts[1].text", is("second")))
+                .andExpect(jsonPath("$.posts[2].authorId", is(1)))
+                .andExpect(jsonPath("$.posts[2].text", is("third")));
+
+        verify(postRepository, times(1)).saveAll(anyList());
+        verify(postIndex, times(3)).add(anyLong(), anyString());
+    }
+
+    @Test
+    public void shouldRespondWith404WhenAuthorOfMultiUserBatchDoesNotExist() throws Exception {
+        UserPostBatchRequest batchRequest = new UserPostBatchRequest(Arrays.asList(
+                new UserPostRequest(1, "first"), new UserPostRequest(2, "second")));
+        when(repository.findById(1L)).thenReturn(Optional.of(createUser(1, "user1")));
+
+        performAsync(post("/api/users/posts:batch")
+                .content(new Gson().toJson(batchRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
-        verify(repository, times(1)).findById(eq(1L));
-        verify(repository, never()).save(any());
+        verify(postRepository, never()).saveAll(any());
     }
 
     @Test
@@ -465,83 +806,115 @@ public class UserControllerTest {
         final String updatedText = "Ala ma kota";
         Post post = createPost(1, "X");
         PostRequest postRequest = new PostRequest(updatedText);
-        User user = createUser(1, "username1", Collections.singletonList(post), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
-        Post updatedPost = createPost(1, updatedText);
-        User updatedUser = createUser(1, "username1", Collections.singletonList(updatedPost), Collections.emptySet());
-        when(repository.save(user)).thenReturn(updatedUser);
+        post.setAuthorId(1);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+        when(postRepository.updateText(1L, 0L, updatedText)).thenReturn(1);
 
-        mvc.perform(put("/api/users/1/posts/1")
+        performAsync(put("/api/users/1/posts/1")
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
                 .content(new Gson().toJson(postRequest))
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
                 .andExpect(jsonPath("$.posts", hasSize(1)))
-                .andExpect(jsonPath("$.posts[0].id", is((int) updatedPost.getId())))
-                .andExpect(jsonPath("$.posts[0].text", is(updatedPost.getText())));
+                .andExpect(jsonPath("$.posts[0].id", is((int) post.getId())))
+                .andExpect(jsonPath("$.posts[0].text", is(updatedText)));
 
-        verify(repository, times(1)).findById(eq(1L));
-        ArgumentCaptor<User> requestCaptor = ArgumentCaptor.forClass(User.class);
-        verify(repository, times(1)).save(requestCaptor.capture());
-        User savedUser = requestCaptor.getAllValues().get(0);
-        assertEquals(user.getId(), savedUser.getId());
-        assertEquals(user.getUsername(), savedUser.getUsername());
-        assertEquals(user.getPosts().size(), savedUser.getPosts().size());
-        assertEquals(user.getPosts().get(0).getId(), savedUser.getPosts().get(0).getId());
-        assertEquals(user.getPosts().get(0).getText(), savedUser.getPosts().get(0).getText());
+        verify(postRepository, times(1)).findById(eq(1L));
+        verify(postRepository, times(1)).updateText(eq(1L), eq(0L), eq(updatedText));
+        verify(postRepository, never()).save(any());
+        verify(repository, never()).save(any());
     }
 
     @Test
-    public void shouldRespondWith404WhenUserDoesNotExists_SinglePost_Delete() throws Exception {
-        mvc.perform(delete("/api/users/1/posts/1")
+    public void shouldRespondWith404WhenModifiedPostBelongsToOtherUser() throws Exception {
+        Post post = createPost(1, "X");
+        post.setAuthorId(2);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+
+        performAsync(put("/api/users/1/posts/1")
+                .content(new Gson().toJson(new PostRequest("Ala ma kota")))
                 .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isNotFound())
-                .andExpect(content().string(StringUtils.EMPTY));
+                .andExpect(status().isNotFound());
 
-        verify(repository, times(1)).findById(eq(1L));
-        verify(repository, never()).save(any());
+        verify(postRepository, never()).updateText(anyLong(), anyLong(), any());
     }
 
     @Test
-    public void shouldRespondWith404WhenPostDoesNotExists_SinglePost_Delete() throws Exception {
-        User user = createUser(1, "username1", Collections.emptyList(), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
+    public void shouldServeModifiedPostFromCache() throws Exception {
+        Post post = createPost(1, "X");
+        post.setAuthorId(1);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+        when(postRepository.updateText(1L, 0L, "Ala ma kota")).thenReturn(1);
 
-        mvc.perform(delete("/api/users/1/posts/10")
+        performAsync(put("/api/users/1/posts/1")
+                .content(new Gson().toJson(new PostRequest("Ala ma kota")))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mvc.perform(get("/api/users/1/posts/1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.posts[0].text", is("Ala ma kota")));
+
+        verify(postRepository, times(1)).findById(eq(1L));
+    }
+
+    @Test
+    public void shouldRespondWith404WhenPostDoesNotExists_SinglePost_Delete() throws Exception {
+        performAsync(delete("/api/users/1/posts/10")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string(StringUtils.EMPTY));
 
-        verify(repository, times(1)).findById(eq(1L));
-        verify(repository, never()).save(any());
+        verify(postRepository, times(1)).findById(eq(10L));
+        verify(postRepository, never()).deleteByIdAndAuthorId(anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldRespondWith409WhenDeleteConflictsWithConcurrentWrite() throws Exception {
+        Post post = createPost(1, "x");
+        post.setAuthorId(1);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+        when(postRepository.deleteByIdAndAuthorId(1L, 1L)).thenThrow(new OptimisticLockingFailureException("stale post"));
+
+        performAsync(delete("/api/users/1/posts/1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+
+        verify(postIndex, never()).remove(anyLong(), any());
     }
 
     @Test
     public void shouldRespondWith200AndRemoveUserPost() throws Exception {
         Post post = createPost(1, "x");
-        User user = createUser(1, "username1", new ArrayList<>(Collections.singletonList(post)), Collections.emptySet());
-        when(repository.findById(1L)).thenReturn(Optional.of(user));
+        post.setAuthorId(1);
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+        when(postRepository.deleteByIdAndAuthorId(1L, 1L)).thenReturn(1);
 
-        mvc.perform(delete("/api/users/1/posts/1")
+        performAsync(delete("/api/users/1/posts/1")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-        verify(repository, times(1)).findById(eq(1L));
-        ArgumentCaptor<User> requestCaptor = ArgumentCaptor.forClass(User.class);
-        verify(repository, times(1)).save(requestCaptor.capture());
-        User savedUser = requestCaptor.getAllValues().get(0);
-        assertEquals(user.getId(), savedUser.getId());
-        assertEquals(user.getUsername(), savedUser.getUsername());
-        assertTrue(savedUser.getPosts().isEmpty());
+        verify(postRepository, times(1)).findById(eq(1L));
+        verify(postRepository, times(1)).deleteByIdAndAuthorId(eq(1L), eq(1L));
+        verify(postRepository, never()).delete(any());
+        verify(postIndex, times(1)).remove(eq(1L), eq("x"));
+        verify(tagIndex, times(1)).remove(eq(1L), eq("x"));
 
+        when(postRepository.findById(1L)).thenReturn(Optional.empty());
+        mvc.perform(get("/api/users/1/posts/1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+        verify(postRepository, times(2)).findById(eq(1L));
+        verify(repository, never()).save(any());
     }
 
-    private User createUser(long id, String username, List<Post> posts, Set<User> followees) {
+    private User createUser(long id, String username) {
         User user = new User();
         user.setId(id);
         user.setUsername(username);
-        user.setPosts(posts);
-        user.setFollowees(followees);
         return user;
     }
 
@@ -562,4 +935,11 @@ public class UserControllerTest {
         post.setCreationDateTime(creationDate);
         return post;
     }
-}
\ No newline at end of file
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,90 @@
+package com.hsbc.challenge.graph;
+
+import com.hsbc.challenge.model.Follow;
+import com.hsbc.challenge.repository.FollowRepository;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class SocialGraphTest {
+
+    private final FollowRepository followRepository = mock(FollowRepository.class);
+    private final SocialGraph socialGraph = new SocialGraph(followRepository);
+
+    @Test
+    public void shouldLoadSortedAdjacencyListsOnce() {
+        when(followRepository.findFolloweeIds(1L)).thenReturn(Arrays.asList(7L, 3L, 5L));
+
+        assertArrayEquals(new long[]{3, 5, 7}, socialGraph.followees(1));
+        assertTrue(socialGraph.isFollowing(1, 5));
+        assertFalse(socialGraph.isFollowing(1, 4));
+
+        verify(followRepository, times(1)).findFolloweeIds(eq(1L));
+    }
+
+    @Test
+    public void shouldFollowAndUpdateBothDirections() {
+        when(followRepository.findFolloweeIds(1L)).thenReturn(Arrays.asList(2L, 9L));
+        when(followRepository.findFollowerIds(5L)).thenReturn(Collections.singletonList(3L));
+        socialGraph.followers(5);
+
+        assertTrue(socialGraph.follow(1, 5));
+
+        assertArrayEquals(new long[]{2, 5, 9}, socialGraph.followees(1));
+        assertArrayEquals(new long[]{1, 3}, socialGraph.followers(5));
+        verify(followRepository, times(1)).save(any(Follow.class));
+    }
+
+    @Test
+    public void shouldNotFollowTwice() {
+        when(followRepository.findFolloweeIds(1L)).thenReturn(Collections.singletonList(5L));
+
+        assertFalse(socialGraph.follow(1, 5));
+
+        verify(followRepository, never()).save(any());
+    }
+
+    @Test
+    public void shouldNotFollowWhenRowIsRejected() {
+        when(followRepository.save(any(Follow.class))).thenThrow(new DataIntegrityViolationException("follows_follower_followee_uk"));
+
+        assertFalse(socialGraph.follow(1, 5));
+        assertFalse(socialGraph.isFollowing(1, 5));
+    }
+
+    @Test
+    public void shouldUnfollowAndUpdateBothDirections() {
+        when(followRepository.findFolloweeIds(1L)).thenReturn(Arrays.asList(2L, 5L));
+        when(followRepository.findFollowerIds(5L)).thenReturn(Arrays.asList(1L, 3L));
+        when(followRepository.deleteFollow(1L, 5L)).thenReturn(1);
+        socialGraph.followers(5);
+
+        assertTrue(socialGraph.unfollow(1, 5));
+        assertFalse(socialGraph.unfollow(1, 5));
+
+        assertArrayEquals(new long[]{2}, socialGraph.followees(1));
+        assertArrayEquals(new long[]{3}, socialGraph.followers(5));
+        verify(followRepository, times(1)).deleteFollow(eq(1L), eq(5L));
+    }
+
+    @Test
+    public void shouldPageFollowersAfterGivenId() {
+        when(followRepository.findFollowerIds(1L)).thenReturn(Arrays.asList(9L, 2L, 4L, 7L));
+
+        assertArrayEquals(new long[]{2, 4}, socialGraph.followers(1, 0, 2));
+        assertArrayEquals(new long[]{7, 9}, socialGraph.followers(1, 4, 2));
+        assertArrayEquals(new long[]{7, 9}, socialGraph.followers(1, 5, 5));
+        assertArrayEquals(new long[0], socialGraph.followers(1, 9, 2));
+        assertEquals(4, socialGraph.followerCount(1));
+
+        verify(followRepository, times(1)).findFollowerIds(eq(1L));
+    }
+}
@@ -0,0 +1,70 @@
+package com.hsbc.challenge.log;
+
+import com.hsbc.challenge.metrics.MetricsRegistry;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessLogTest {
+
+    private final AccessLog accessLog = new AccessLog(2);
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+    private final List<String> lines = new ArrayList<>();
+
+    @Test
+    public void shouldFormatRecordsInOrder() {
+        accessLog.record("GET", "/api/users/{id}", Collections.singletonMap("id", "7"), 200, TimeUnit.MICROSECONDS.toNanos(42));
+        accessLog.record("POST", "/api/users", null, 201, TimeUnit.MICROSECONDS.toNanos(5));
+
+        assertEquals(2, accessLog.drain(lines::add));
+        assertEquals("method=GET route=/api/users/{id} id=7 status=200 latencyMicros=42", lines.get(0));
+        assertEquals("method=POST route=/api/users status=201 latencyMicros=5", lines.get(1));
+        assertEquals(0, accessLog.drain(lines::add));
+    }
+
+    @Test
+    public void shouldDropRecordsWhenRingIsFull() {
+        for (int i = 0; i < 3; i++) {
+            accessLog.record("GET", "/api/posts", null, 200, i);
+        }
+
+        assertEquals(2, accessLog.drain(lines::add));
+        assertEquals(1L, (long) accessLog.stats().get("dropped"));
+
+        accessLog.record("GET", "/api/posts", null, 200, 0);
+        assertEquals(1, accessLog.drain(lines::add));
+        assertEquals(3L, (long) accessLog.stats().get("logged"));
+    }
+
+    @Test
+    public void shouldRecordMatchedRouteAndStatusFromFilter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/users/{id}");
+                req.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Collections.singletonMap("id", "7"));
+                ((MockHttpServletResponse) res).setStatus(404);
+            }
+        };
+
+        new AccessLogFilter(accessLog, metricsRegistry).doFilter(request, response, chain);
+
+        assertEquals(1, accessLog.drain(lines::add));
+        assertTrue(lines.get(0).startsWith("method=GET route=/api/users/{id} id=7 status=404 latencyMicros="));
+        assertEquals(1, metricsRegistry.requestTimer("GET", "/api/users/{id}").count());
+    }
+}
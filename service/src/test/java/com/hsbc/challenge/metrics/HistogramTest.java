@@ -0,0 +1,49 @@
+package com.hsbc.challenge.metrics;
+
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void shouldKeepSmallValuesExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(5, histogram.percentile(50));
+        assertEquals(10, histogram.percentile(99));
+        assertEquals(10, histogram.max());
+        assertEquals(5.5, histogram.mean());
+    }
+
+    @Test
+    public void shouldReportPercentilesWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertWithin(50_000_000, histogram.percentile(50));
+        assertWithin(99_000_000, histogram.percentile(99));
+        assertWithin(99_900_000, histogram.percentile(99.9));
+        assertEquals(100_000_000, histogram.percentile(100));
+        assertEquals(100_000, histogram.count());
+    }
+
+    @Test
+    public void shouldMapEveryValueIntoItsBucket() {
+        for (long value : new long[]{0, 31, 32, 63, 64, 65, 1_000_000, Long.MAX_VALUE}) {
+            int index = Histogram.index(value);
+            assertTrue(Histogram.highestEquivalent(index) >= value);
+            assertTrue(index == 0 || Histogram.highestEquivalent(index - 1) < value);
+        }
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.035, "expected ~" + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,95 @@
+package com.hsbc.challenge.search;
+
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.PostRepository;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PostIndexTest {
+
+    @Test
+    public void shouldFindPostsContainingAllTermsNewestFirst() {
+        PostIndex index = new PostIndex(mock(PostRepository.class));
+        index.add(1, "Ala ma kota");
+        index.add(2, "kot ma Alę");
+        index.add(3, "ALA, ma... psa i KOTA!");
+        index.add(4, "#ala #kota");
+
+        assertArrayEquals(new long[]{4, 3, 1}, index.search("ala kota", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{3, 1}, index.search("kota ala", 4, 10));
+        assertArrayEquals(new long[]{4}, index.search("Ala KOTA", Long.MAX_VALUE, 1));
+        assertArrayEquals(new long[]{2}, index.search("alę", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[0], index.search("ala pies", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[0], index.search("...", Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    public void shouldFollowUpdatesAndDeletes() {
+        PostIndex index = new PostIndex(mock(PostRepository.class));
+        index.add(1, "ala ma kota");
+        index.add(2, "ala ma psa");
+
+        index.update(1, "ala ma kota", "ala ma chomika");
+        index.remove(2, "ala ma psa");
+
+        assertArrayEquals(new long[0], index.search("kota", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[0], index.search("psa", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{1}, index.search("ala chomika", Long.MAX_VALUE, 10));
+        assertEquals(1L, (long) index.stats().get("posts"));
+        assertEquals(3L, (long) index.stats().get("terms"));
+    }
+
+    @Test
+    public void shouldSkipStaleHitsAndReadOnUntilPageIsFull() {
+        PostIndex index = new PostIndex(mock(PostRepository.class));
+        Map<Long, String> texts = new HashMap<>();
+        for (long id = 1; id <= 6; id++) {
+            index.add(id, "ala ma kota");
+            texts.put(id, "ala ma kota");
+        }
+        texts.put(6L, "ala ma psa");
+        texts.remove(5L);
+        Function<long[], List<PostView>> loader = ids -> LongStream.of(ids)
+                .filter(texts::containsKey)
+                .mapToObj(id -> new PostView(id, 1, texts.get(id), new Date()))
+                .collect(Collectors.toList());
+
+        List<PostView> page = index.search("kota", Long.MAX_VALUE, 3, loader);
+        List<PostView> last = index.search("kota", 2, 3, loader);
+
+        assertEquals(Arrays.asList(4L, 3L, 2L), page.stream().map(PostView::getId).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList(1L), last.stream().map(PostView::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldRebuildFromRepository() {
+        PostRepository postRepository = mock(PostRepository.class);
+        when(postRepository.streamAllInIdOrder()).thenReturn(Stream.of(
+                new PostView(1, 1, "ala ma kota", new Date()),
+                new PostView(2, 2, "kot ma ale", new Date())));
+        PostIndex index = new PostIndex(postRepository);
+        index.add(7, "stale post");
+
+        index.rebuild();
+
+        assertArrayEquals(new long[0], index.search("stale", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{2, 1}, index.search("ma", Long.MAX_VALUE, 10));
+        assertEquals(2L, (long) index.stats().get("posts"));
+        assertEquals(1L, (long) index.stats().get("rebuilds"));
+    }
+}
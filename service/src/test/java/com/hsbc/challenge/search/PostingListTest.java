@@ -0,0 +1,101 @@
+package com.hsbc.challenge.search;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PostingListTest {
+
+    @Test
+    public void shouldMatchSortedSetUnderRandomAddsAndRemoves() {
+        PostingList postings = new PostingList();
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random(42);
+        long next = 1L << 40;
+        for (int i = 0; i < 20_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                next += 1 + random.nextInt(1 << 20);
+                assertEquals(expected.add(next), postings.add(next));
+            } else if (operation < 8) {
+                long id = (1L << 40) + (long) (random.nextDouble() * (next - (1L << 40)));
+                assertEquals(expected.add(id), postings.add(id));
+            } else if (!expected.isEmpty()) {
+                Long id = expected.floor(next - random.nextInt(1 << 24));
+                id = id == null ? expected.first() : id;
+                assertEquals(expected.remove(id), postings.remove(id));
+            }
+        }
+
+        assertEquals(expected.size(), postings.size());
+        assertEquals(new ArrayList<>(expected.descendingSet()), descending(postings, Long.MAX_VALUE));
+        PostingList.Reader reader = postings.reader();
+        for (long id : expected) {
+            assertTrue(reader.contains(id));
+            assertEquals(expected.contains(id + 1), reader.contains(id + 1));
+        }
+    }
+
+    @Test
+    public void shouldIgnoreDuplicatesAndMissingIds() {
+        PostingList postings = new PostingList();
+
+        assertTrue(postings.add(5));
+        assertFalse(postings.add(5));
+        assertTrue(postings.add(3));
+        assertFalse(postings.add(3));
+        assertFalse(postings.remove(4));
+        assertTrue(postings.remove(5));
+        assertFalse(postings.remove(5));
+
+        assertEquals(1, postings.size());
+    }
+
+    @Test
+    public void shouldIterateDescendingBelowCursor() {
+        PostingList postings = new PostingList();
+        for (long id = 1; id <= 1000; id++) {
+            postings.add(id * 10);
+        }
+
+        List<Long> ids = new ArrayList<>();
+        postings.reader().descending(5000, id -> {
+            ids.add(id);
+            return ids.size() < 3;
+        });
+
+        assertEquals(3, ids.size());
+        assertEquals(4990L, (long) ids.get(0));
+        assertEquals(4970L, (long) ids.get(2));
+        assertTrue(descending(postings, 10).isEmpty());
+    }
+
+    @Test
+    public void shouldDropEmptyBlocks() {
+        PostingList postings = new PostingList();
+        for (long id = 1; id <= 3 * PostingList.BLOCK_SIZE; id++) {
+            postings.add(id);
+        }
+        for (long id = 1; id <= PostingList.BLOCK_SIZE; id++) {
+            postings.remove(PostingList.BLOCK_SIZE + id);
+        }
+
+        List<Long> ids = descending(postings, Long.MAX_VALUE);
+        assertEquals(2 * PostingList.BLOCK_SIZE, ids.size());
+        assertEquals(2L * PostingList.BLOCK_SIZE + 1, (long) ids.get(PostingList.BLOCK_SIZE - 1));
+        assertEquals(PostingList.BLOCK_SIZE, (long) ids.get(PostingList.BLOCK_SIZE));
+    }
+
+    private static List<Long> descending(PostingList postings, long before) {
+        List<Long> ids = new ArrayList<>();
+        postings.reader().descending(before, ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,31 @@
+package com.hsbc.challenge.search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TagsTest {
+
+    @Test
+    public void shouldExtractHashtagsAndMentionsLowerCase() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList("#java", "@ala_1", "#zażółć")),
+                Tags.extract("#Java with @Ala_1, #java again and (#zażółć)!"));
+    }
+
+    @Test
+    public void shouldIgnoreSignsInsideWordsAndBareSigns() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList("#b")), Tags.extract("ala@example.com a#tag # @ ##b"));
+    }
+
+    @Test
+    public void shouldMapNamesToTerms() {
+        assertEquals("#java", Tags.term(Tags.HASHTAG, "Java"));
+        assertEquals("@ala", Tags.term(Tags.MENTION, "ala"));
+        assertNull(Tags.term(Tags.HASHTAG, "a.b"));
+        assertNull(Tags.term(Tags.HASHTAG, ""));
+    }
+}
@@ -0,0 +1,94 @@
+package com.hsbc.challenge.storage;
+
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostRequest;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.UserRepository;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LogPostRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private LogPostRepository repository;
+
+    @Before
+    public void setUp() throws IOException {
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(2L)).thenReturn(true);
+        repository = new LogPostRepository(userRepository, folder.newFolder().getPath(), 1 << 16, 0.5);
+    }
+
+    @Test
+    public void shouldAssignIdAndCreationTimeOnSave() {
+        Post post = repository.save(new Post(1, new PostRequest("ala ma kota")));
+
+        assertTrue(post.getId() > 0);
+        assertNotNull(post.getCreationDateTime());
+        assertEquals("ala ma kota", repository.findById(post.getId()).get().getText());
+        assertTrue(repository.findByIdAndAuthorId(post.getId(), 1).isPresent());
+        assertFalse(repository.findByIdAndAuthorId(post.getId(), 2).isPresent());
+    }
+
+    @Test
+    public void shouldRejectPostsOfUnknownAuthor() {
+        assertThrows(DataIntegrityViolationException.class, () -> repository.save(new Post(3, new PostRequest("x"))));
+        assertThrows(DataIntegrityViolationException.class, () -> repository.saveAll(Arrays.asList(
+                new Post(1, new PostRequest("x")), new Post(3, new PostRequest("y")))));
+
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    public void shouldPagePostsNewestFirst() {
+        repository.saveAll(Arrays.asList(
+                new Post(1, new PostRequest("a")), new Post(2, new PostRequest("b")),
+                new Post(1, new PostRequest("c")), new Post(2, new PostRequest("d"))));
+
+        List<PostView> page = repository.findPostsBefore(Long.MAX_VALUE, PageRequest.of(0, 3));
+        assertEquals(Arrays.asList("d", "c", "b"), page.stream().map(PostView::getText).collect(Collectors.toList()));
+        List<PostView> next = repository.findPostsBefore(page.get(2).getId(), PageRequest.of(0, 3));
+        assertEquals(Arrays.asList("a"), next.stream().map(PostView::getText).collect(Collectors.toList()));
+        List<PostView> userPosts = repository.findUserPostsBefore(2, Long.MAX_VALUE, PageRequest.of(0, 10));
+        assertEquals(Arrays.asList("d", "b"), userPosts.stream().map(PostView::getText).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), repository.streamAllInIdOrder().map(PostView::getText).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldUpdateTextOnlyForCurrentVersion() {
+        Post post = repository.save(new Post(1, new PostRequest("ala ma kota")));
+
+        assertEquals(1, repository.updateText(post.getId(), 0, "ala ma psa"));
+        assertEquals(0, repository.updateText(post.getId(), 0, "stale"));
+        assertEquals("ala ma psa", repository.findById(post.getId()).get().getText());
+        assertEquals(1, repository.findById(post.getId()).get().getVersion());
+    }
+
+    @Test
+    public void shouldDeletePosts() {
+        Post post = repository.save(new Post(1, new PostRequest("ala ma kota")));
+
+        repository.delete(post);
+
+        assertFalse(repository.existsById(post.getId()));
+        assertTrue(repository.findUserPostsBefore(1, Long.MAX_VALUE, PageRequest.of(0, 10)).isEmpty());
+        assertThrows(EmptyResultDataAccessException.class, () -> repository.deleteById(post.getId()));
+    }
+}
@@ -0,0 +1,294 @@
+package com.hsbc.challenge.storage;
+
+import com.hsbc.challenge.model.Follow;
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.User;
+import com.hsbc.challenge.model.UserRequest;
+import com.hsbc.challenge.model.UserSummary;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldRecoverMutationsFromJournal() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        MemoryStore store = new MemoryStore(directory.toString(), true);
+        long ala = store.saveUser(new User(new UserRequest("ala"))).getId();
+        long ola = store.saveUser(new User(new UserRequest("ola"))).getId();
+        long ela = store.saveUser(new User(new UserRequest("ela"))).getId();
+        store.saveFollow(new Follow(ala, ola));
+        store.saveFollow(new Follow(ala, ela));
+        assertTrue(store.unfollow(ala, ela));
+        store.savePosts(Arrays.asList(createPost(1, ala, "ala ma kota"), createPost(2, ola, "zażółć gęślą jaźń"), createPost(3, ola, "third")));
+        assertTrue(store.updateText(1, 0, "ala ma psa"));
+        assertFalse(store.updateText(1, 0, "stale"));
+        assertTrue(store.deletePost(3));
+        store.shutdown();
+
+        MemoryStore reopened = new MemoryStore(directory.toString(), true);
+
+        assertEquals(Arrays.asList("ala", "ola", "ela"), reopened.users().map(User::getUsername).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList(ola), reopened.followeeIds(ala));
+        assertEquals(Collections.singletonList(ala), reopened.followerIds(ola));
+        assertTrue(reopened.followerIds(ela).isEmpty());
+        assertEquals(1, reopened.followCount());
+        List<UserSummary> summaries = reopened.summaries().collect(Collectors.toList());
+        assertEquals(Arrays.asList(0L, 1L, 0L), summaries.stream().map(UserSummary::getFollowerCount).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1L, 0L, 0L), summaries.stream().map(UserSummary::getFolloweeCount).collect(Collectors.toList()));
+        assertEquals("ala ma psa", reopened.post(1).getText());
+        assertEquals(1, reopened.post(1).getVersion());
+        assertEquals("zażółć gęślą jaźń", reopened.post(2).getText());
+        assertNull(reopened.post(3));
+        assertEquals(Collections.singletonList(2L), new ArrayList<>(reopened.postIds(ola)));
+        assertEquals(ela + 1, reopened.saveUser(new User(new UserRequest("ula"))).getId());
+        reopened.shutdown();
+    }
+
+    @Test
+    public void shouldLoadSnapshotAndReplayOnlyJournalTail() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        MemoryStore store = new MemoryStore(directory.toString(), true);
+        long ala = store.saveUser(new User(new UserRequest("ala"))).getId();
+        long ola = store.saveUser(new User(new UserRequest("ola"))).getId();
+        store.saveFollow(new Follow(ala, ola));
+        for (long id = 1; id <= 100; id++) {
+            store.savePosts(Collections.singletonList(createPost(id, id % 2 == 0 ? ala : ola, "post " + id)));
+        }
+        long snapshotLsn = store.snapshot();
+        store.saveFollow(new Follow(ola, ala));
+        assertTrue(store.updateText(10, 0, "edited"));
+        assertTrue(store.deletePost(11));
+        store.savePosts(Collections.singletonList(createPost(101, ala, "after snapshot")));
+        store.shutdown();
+
+        MemoryStore reopened = new MemoryStore(directory.toString(), true);
+
+        assertEquals(snapshotLsn, reopened.stats().get("snapshotLsn").longValue());
+        assertEquals(100, reopened.postCount());
+        assertEquals("edited", reopened.post(10).getText());
+        assertNull(reopened.post(11));
+        assertEquals("after snapshot", reopened.post(101).getText());
+        assertEquals(2, reopened.followCount());
+        List<UserSummary> summaries = reopened.summaries().collect(Collectors.toList());
+        assertEquals(Arrays.asList(ala, ola), summaries.stream().map(UserSummary::getId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1L, 1L), summaries.stream().map(UserSummary::getFollowerCount).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1L, 1L), summaries.stream().map(UserSummary::getFolloweeCount).collect(Collectors.toList()));
+        reopened.shutdown();
+    }
+
+    @Test
+    public void shouldKeepTwoSnapshotsAndTheJournalSinceTheOlder() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        MemoryStore store = new MemoryStore(directory.toString(), true);
+        long ala = store.saveUser(new User(new UserRequest("ala"))).getId();
+        for (int round = 0; round < 4; round++) {
+            store.savePosts(Collections.singletonList(createPost(round + 1, ala, "post " + round)));
+            store.snapshot();
+        }
+        store.savePosts(Collections.singletonList(createPost(5, ala, "tail")));
+        store.shutdown();
+
+        assertEquals(2, files(directory, "snapshot-").size());
+        assertEquals(2, files(directory, "wal-").size());
+    }
+
+    @Test
+    public void shouldFallBackToPreviousSnapshotWhenLatestIsCorrupt() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        MemoryStore store = new MemoryStore(directory.toString(), true);
+        long ala = store.saveUser(new User(new UserRequest("ala"))).getId();
+        store.savePosts(Collections.singletonList(createPost(1, ala, "first")));
+        store.snapshot();
+        store.savePosts(Collections.singletonList(createPost(2, ala, "second")));
+        store.snapshot();
+        store.savePosts(Collections.singletonList(createPost(3, ala, "third")));
+        store.shutdown();
+        Path latest = files(directory, "snapshot-").get(1);
+        try (RandomAccessFile file = new RandomAccessFile(latest.toFile(), "rw")) {
+            file.seek(file.length() / 2);
+            int value = file.read();
+            file.seek(file.length() / 2);
+            file.write(value ^ 0xff);
+        }
+
+        MemoryStore reopened = new MemoryStore(directory.toString(), true);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), new ArrayList<>(reopened.postIds()));
+        assertTrue(reopened.userExists(ala));
+        reopened.shutdown();
+    }
+
+    @Test
+    public void shouldCutOffTornJournalTail() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        MemoryStore store = new MemoryStore(directory.toString(), true);
+        long ala = store.saveUser(new User(new UserRequest("ala"))).getId();
+        store.savePosts(Collections.singletonList(createPost(1, ala, "kept")));
+        store.shutdown();
+        Path journal = files(directory, "wal-").get(0);
+        try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw")) {
+            file.seek(file.length());
+            file.writeInt(100);
+            file.write(new byte[]{1, 2, 3});
+        }
+
+        MemoryStore reopened = new MemoryStore(directory.toString(), true);
+        reopened.savePosts(Collections.singletonList(createPost(2, ala, "after recovery")));
+        reopened.shutdown();
+        MemoryStore again = new MemoryStore(directory.toString(), true);
+
+        assertEquals("kept", again.post(1).getText());
+        assertEquals("after recovery", again.post(2).getText());
+        again.shutdown();
+    }
+
+    @Test
+    public void shouldRejectWritesViolatingConstraints() throws IOException {
+        MemoryStore store = new MemoryStore(folder.newFolder().getPath(), false);
+        long ala = store.saveUser(new User(new UserRequest("ala"))).getId();
+        long ola = store.saveUser(new User(new UserRequest("ola"))).getId();
+        store.saveFollow(new Follow(ala, ola));
+        store.savePosts(Collections.singletonList(createPost(1, ala, "first")));
+
+        assertThrows(DataIntegrityViolationException.class, () -> store.saveFollow(new Follow(ala, ola)));
+        assertThrows(DataIntegrityViolationException.class, () -> store.saveFollow(new Follow(ala, 99)));
+        assertThrows(DataIntegrityViolationException.class, () -> store.savePosts(Arrays.asList(createPost(2, ala, "x"), createPost(3, 99, "y"))));
+        assertThrows(OptimisticLockingFailureException.class, () -> store.savePosts(Collections.singletonList(createPost(1, ala, "stale", 3))));
+        assertThrows(DataIntegrityViolationException.class, () -> store.deleteUser(ala));
+        assertFalse(store.postExists(2));
+        assertEquals(1, store.followCount());
+        store.shutdown();
+    }
+
+    @Test
+    public void shouldShareJournalCommitsBetweenConcurrentWriters() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        MemoryStore store = new MemoryStore(directory.toString(), true);
+        long ala = store.saveUser(new User(new UserRequest("ala"))).getId();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            long first = thread * 1000L + 1;
+            futures.add(executor.submit(() -> {
+                for (long id = first; id < first + 100; id++) {
+                    store.savePosts(Collections.singletonList(createPost(id, ala, "post " + id)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(801, store.stats().get("journal.records").longValue());
+        assertTrue(store.stats().get("journal.batches") < 801);
+        store.shutdown();
+        MemoryStore reopened = new MemoryStore(directory.toString(), true);
+        assertEquals(800, reopened.postCount());
+        reopened.shutdown();
+    }
+
+    @Test
+    public void shouldNotExposeWritesBeforeTheyAreDurableNorAfterJournalFailure() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        CountDownLatch appended = new CountDownLatch(2);
+        CountDownLatch fail = new CountDownLatch(1);
+        AtomicLong durable = new AtomicLong();
+        WriteAheadLog journal = new WriteAheadLog(directory, true) {
+            @Override
+            void append(long lsn, byte type, ByteBuffer payload) {
+                super.append(lsn, type, payload);
+                appended.countDown();
+            }
+
+            @Override
+            void awaitDurable(long lsn) {
+                if (appended.getCount() == 0) {
+                    await(fail);
+                    throw new DataAccessResourceFailureException("Journal write failed");
+                }
+                super.awaitDurable(lsn);
+                durable.set(lsn);
+            }
+
+            @Override
+            long durableLsn() {
+                return durable.get();
+            }
+        };
+        MemoryStore store = new MemoryStore(directory.toString(), true, journal);
+        long ala = store.saveUser(new User(new UserRequest("ala"))).getId();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> write = executor.submit(() -> store.savePosts(Collections.singletonList(createPost(1, ala, "lost"))));
+
+        assertTrue(appended.await(1, TimeUnit.SECONDS));
+        assertNull(store.post(1));
+        assertThrows(OptimisticLockingFailureException.class, () -> store.savePosts(Collections.singletonList(createPost(1, ala, "stale", 3))));
+        fail.countDown();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, write::get);
+        assertTrue(failure.getCause() instanceof DataAccessResourceFailureException);
+        assertNull(store.post(1));
+        assertFalse(store.postExists(1));
+        assertEquals(0, store.postCount());
+        executor.shutdown();
+    }
+
+    private static List<Path> files(Path directory, String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Post createPost(long id, long authorId, String text) {
+        return createPost(id, authorId, text, 0);
+    }
+
+    private static Post createPost(long id, long authorId, String text, long version) {
+        Post post = new Post();
+        post.setId(id);
+        post.setAuthorId(authorId);
+        post.setText(text);
+        post.setCreationDateTime(new Date(1_500_000_000_000L + id));
+        post.setVersion(version);
+        return post;
+    }
+}
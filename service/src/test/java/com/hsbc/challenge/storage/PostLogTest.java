@@ -0,0 +1,142 @@
+package com.hsbc.challenge.storage;
+
+import com.hsbc.challenge.model.Post;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PostLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldRecoverPostsEditsAndDeletesOnReopen() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        PostLog log = open(directory, 1 << 16);
+        log.put(createPost(1, 10, "ala ma kota"));
+        log.put(createPost(2, 10, "zażółć gęślą jaźń"));
+        log.put(createPost(3, 20, "third"));
+        assertTrue(log.updateText(1, 0, "ala ma psa"));
+        assertFalse(log.updateText(1, 0, "stale"));
+        assertTrue(log.delete(3));
+        log.close();
+
+        PostLog reopened = open(directory, 1 << 16);
+
+        assertEquals("ala ma psa", reopened.read(1).getText());
+        assertEquals(1, reopened.read(1).getVersion());
+        assertEquals("zażółć gęślą jaźń", reopened.read(2).getText());
+        assertNull(reopened.read(3));
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(reopened.ids()));
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(reopened.ids(10)));
+        assertTrue(reopened.ids(20).isEmpty());
+    }
+
+    @Test
+    public void shouldRejectPutOfStaleVersion() throws IOException {
+        PostLog log = open(folder.newFolder().toPath(), 1 << 16);
+        log.put(createPost(1, 10, "first"));
+        log.put(createPost(1, 10, "second"));
+
+        assertEquals(1, log.read(1).getVersion());
+        assertThrows(OptimisticLockingFailureException.class, () -> log.put(createPost(1, 10, "stale")));
+    }
+
+    @Test
+    public void shouldCompactSegmentsKeepingLatestRecords() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        PostLog log = open(directory, 1024);
+        Map<Long, String> expected = new HashMap<>();
+        for (long id = 1; id <= 100; id++) {
+            log.put(createPost(id, id % 3, "post " + id));
+            expected.put(id, "post " + id);
+        }
+        for (long id = 1; id <= 100; id += 2) {
+            assertTrue(log.updateText(id, 0, "edited " + id));
+            expected.put(id, "edited " + id);
+        }
+        for (long id = 4; id <= 100; id += 4) {
+            assertTrue(log.delete(id));
+            expected.remove(id);
+        }
+        long bytes = log.stats().get("bytes");
+
+        assertTrue(log.compact(0.3) > 0);
+        assertTrue(log.stats().get("bytes") < bytes);
+        assertContents(expected, log);
+        log.put(createPost(101, 1, "after compaction"));
+        expected.put(101L, "after compaction");
+        log.close();
+
+        PostLog reopened = open(directory, 1024);
+        assertContents(expected, reopened);
+        assertEquals(0, reopened.compact(0.3));
+    }
+
+    @Test
+    public void shouldIgnoreTornRecordAtEndOfLog() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        PostLog log = open(directory, 1 << 16);
+        log.put(createPost(1, 10, "kept"));
+        log.put(createPost(2, 10, "torn"));
+        log.close();
+        File segment = directory.toFile().listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            int secondRecord = 4 + file.readInt();
+            file.seek(secondRecord + 45);
+            file.write('x');
+        }
+
+        PostLog reopened = open(directory, 1 << 16);
+        assertEquals("kept", reopened.read(1).getText());
+        assertNull(reopened.read(2));
+        reopened.put(createPost(3, 10, "appended"));
+        reopened.close();
+
+        PostLog again = open(directory, 1 << 16);
+        assertEquals(Arrays.asList(1L, 3L), new ArrayList<>(again.ids()));
+        assertEquals("appended", again.read(3).getText());
+    }
+
+    private static void assertContents(Map<Long, String> expected, PostLog log) {
+        assertEquals(expected.size(), log.size());
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), log.read(entry.getKey()).getText());
+        }
+        List<Long> ids = new ArrayList<>();
+        for (long authorId = 0; authorId < 3; authorId++) {
+            ids.addAll(log.ids(authorId));
+        }
+        assertEquals(expected.size(), ids.size());
+    }
+
+    private static PostLog open(Path directory, int segmentBytes) {
+        PostLog log = new PostLog(directory, segmentBytes, false);
+        log.open();
+        return log;
+    }
+
+    private static Post createPost(long id, long authorId, String text) {
+        Post post = new Post();
+        post.setId(id);
+        post.setAuthorId(authorId);
+        post.setText(text);
+        post.setCreationDateTime(new Date(1000 * id));
+        return post;
+    }
+}
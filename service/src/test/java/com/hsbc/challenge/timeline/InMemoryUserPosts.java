@@ -0,0 +1,31 @@
+package com.hsbc.challenge.timeline;
+
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.util.ReverseChronologicalPostComparator;
+import org.springframework.data.domain.Pageable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+public class InMemoryUserPosts {
+
+    public static void stub(PostRepository postRepository, Map<Long, List<Post>> postsByAuthor) {
+        when(postRepository.findUserPostsBefore(anyLong(), anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long authorId = invocation.getArgument(0);
+            long id = invocation.getArgument(1);
+            Pageable pageable = invocation.getArgument(2);
+            return postsByAuthor.getOrDefault(authorId, Collections.emptyList()).stream()
+                    .map(PostView::of)
+                    .filter(p -> p.getId() < id)
+                    .sorted(new ReverseChronologicalPostComparator())
+                    .limit(pageable.getPageSize())
+                    .collect(Collectors.toList());
+        });
+    }
+}
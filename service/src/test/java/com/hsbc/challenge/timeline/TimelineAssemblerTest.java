@@ -0,0 +1,93 @@
+package com.hsbc.challenge.timeline;
+
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.PostRepository;
+import com.hsbc.challenge.util.PostCursor;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TimelineAssemblerTest {
+
+    private final Map<Long, List<Post>> postsByAuthor = new HashMap<>();
+    private final PostRepository postRepository = mock(PostRepository.class);
+    private final TimelineAssembler assembler = new TimelineAssembler(postRepository);
+
+    @Test
+    public void shouldMergeAuthorsInReverseChronologicalOrder() {
+        postsByAuthor.put(1L, Arrays.asList(createPost(1), createPost(4), createPost(7)));
+        postsByAuthor.put(2L, Arrays.asList(createPost(2), createPost(5)));
+        postsByAuthor.put(3L, Collections.singletonList(createPost(6)));
+        InMemoryUserPosts.stub(postRepository, postsByAuthor);
+
+        List<PostView> posts = assembler.assemble(new long[]{1, 2, 3}, PostCursor.parse(null), 10);
+
+        assertEquals(Arrays.asList(7L, 6L, 5L, 4L, 2L, 1L), ids(posts));
+    }
+
+    @Test
+    public void shouldStopAfterLimitAndStartAfterCursor() {
+        postsByAuthor.put(1L, Arrays.asList(createPost(1), createPost(4), createPost(7)));
+        postsByAuthor.put(2L, Arrays.asList(createPost(2), createPost(5)));
+        InMemoryUserPosts.stub(postRepository, postsByAuthor);
+
+        List<PostView> posts = assembler.assemble(new long[]{1, 2}, PostCursor.of(PostView.of(createPost(5))), 2);
+
+        assertEquals(Arrays.asList(4L, 2L), ids(posts));
+    }
+
+    @Test
+    public void shouldFetchAuthorPostsLazily() {
+        List<Post> authorPosts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            authorPosts.add(createPost(100 + i));
+        }
+        postsByAuthor.put(1L, authorPosts);
+        InMemoryUserPosts.stub(postRepository, postsByAuthor);
+
+        List<PostView> posts = assembler.assemble(new long[]{1}, PostCursor.parse(null), 3);
+
+        assertEquals(Arrays.asList(149L, 148L, 147L), ids(posts));
+        verify(postRepository, times(1)).findUserPostsBefore(eq(1L), anyLong(), any());
+    }
+
+    @Test
+    public void shouldReturnNothingWithoutAuthors() {
+        List<PostView> posts = assembler.assemble(new long[0], PostCursor.parse(null), 10);
+
+        assertEquals(0, posts.size());
+        verifyZeroInteractions(postRepository);
+    }
+
+    @Test
+    public void shouldCombineTwoPagesWithoutDuplicates() {
+        PostView post1 = PostView.of(createPost(1));
+        PostView post2 = PostView.of(createPost(2));
+        PostView post3 = PostView.of(createPost(3));
+        PostView post4 = PostView.of(createPost(4));
+
+        List<PostView> posts = assembler.combine(Arrays.asList(post3, post2, post1), Arrays.asList(post4, post3, post2), 3);
+
+        assertEquals(Arrays.asList(4L, 3L, 2L), ids(posts));
+        verifyZeroInteractions(postRepository);
+    }
+
+    private List<Long> ids(List<PostView> posts) {
+        return posts.stream().map(PostView::getId).collect(Collectors.toList());
+    }
+
+    private Post createPost(long id) {
+        Post post = new Post();
+        post.setId(id);
+        post.setText("post" + id);
+        return post;
+    }
+}
@@ -0,0 +1,327 @@
+package com.hsbc.challenge.timeline;
+
+import com.hsbc.challenge.graph.SocialGraph;
+import com.hsbc.challenge.model.Follow;
+import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostView;
+import com.hsbc.challenge.repository.FollowRepository;
+import com.hsbc.challenge.repository.PostRepository;
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TimelineStoreTest {
+
+    private final Map<Long, List<Post>> postsByAuthor = new HashMap<>();
+    private final List<Follow> follows = new ArrayList<>();
+    private final SocialGraph socialGraph = new SocialGraph(createFollowRepository());
+
+    @Test
+    public void shouldNotMaterializeTimelineBeforeFirstRebuild() {
+        TimelineStore store = createStore(10);
+
+        assertFalse(store.isMaterialized(1));
+        assertNull(store.read(1, 10));
+    }
+
+    @Test
+    public void shouldRebuildTimelineInReverseChronologicalOrder() {
+        TimelineStore store = createStore(10);
+        long followee1 = createAuthor(2, createPost(10), createPost(15));
+        long followee2 = createAuthor(3, createPost(13));
+
+        store.rebuild(createUser(1, followee1, followee2));
+
+        assertTrue(store.isMaterialized(1));
+        assertArrayEquals(new long[]{15, 13, 10}, store.read(1, 10));
+    }
+
+    @Test
+    public void shouldDropLeastRecentlyReadTimelinesWhenTooManyAreMaterialized() {
+        PostRepository postRepository = mock(PostRepository.class);
+        InMemoryUserPosts.stub(postRepository, postsByAuthor);
+        TimelineStore store = new TimelineStore(10, 1, 10, new TimelineAssembler(postRepository), socialGraph);
+        long followee = createAuthor(100, createPost(10));
+        for (long userId = 1; userId <= 11; userId++) {
+            store.rebuild(createUser(userId, followee));
+        }
+        store.read(1, 10);
+        store.read(2, 10);
+
+        store.rebuild(createUser(12, followee));
+
+        assertTrue(store.isMaterialized(1));
+        assertTrue(store.isMaterialized(2));
+        assertFalse(store.isMaterialized(3));
+        assertFalse(store.isMaterialized(4));
+        assertTrue(store.isMaterialized(12));
+        assertEquals(10, LongStream.rangeClosed(1, 12).filter(store::isMaterialized).count());
+
+        store.rebuild(3);
+
+        assertArrayEquals(new long[]{10}, store.read(3, 10));
+    }
+
+    @Test
+    public void shouldNotDuplicatePostPublishedWhileTimelineIsRebuilt() throws InterruptedException {
+        long followee = createAuthor(2, createPost(10), createPost(11));
+        createUser(1, followee);
+        PostRepository postRepository = mock(PostRepository.class);
+        TimelineStore store = new TimelineStore(10, 1, new TimelineAssembler(postRepository), socialGraph);
+        Thread publisher = new Thread(() -> store.publish(2, 11));
+        when(postRepository.findUserPostsBefore(anyLong(), anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            publisher.start();
+            while (publisher.getState() != Thread.State.BLOCKED) {
+                Thread.yield();
+            }
+            return Arrays.asList(PostView.of(createPost(11)), PostView.of(createPost(10)));
+        });
+
+        List<PostView> posts = store.rebuild(1);
+        publisher.join();
+
+        assertEquals(Arrays.asList(11L, 10L), posts.stream().map(PostView::getId).collect(Collectors.toList()));
+        assertArrayEquals(new long[]{11, 10}, store.read(1, 10));
+    }
+
+    @Test
+    public void shouldPushPostsAndEvictOldestWhenFull() {
+        TimelineStore store = createStore(3);
+        long followee = createAuthor(2, createPost(10), createPost(11), createPost(12));
+        store.rebuild(createUser(1, followee));
+
+        store.publish(2, 13);
+
+        assertArrayEquals(new long[]{13, 12, 11}, store.read(1, 10));
+    }
+
+    @Test
+    public void shouldRetractDeletedPostAndPruneUnfollowedAuthor() {
+        TimelineStore store = createStore(10);
+        long followee1 = createAuthor(2, createPost(10), createPost(11));
+        long followee2 = createAuthor(3, createPost(12));
+        store.rebuild(createUser(1, followee1, followee2));
+
+        store.retract(2, 11);
+        assertArrayEquals(new long[]{12, 10}, store.read(1, 10));
+
+        socialGraph.unfollow(1, 3);
+        store.unfollow(1, 3);
+        store.publish(3, 13);
+        assertArrayEquals(new long[]{10}, store.read(1, 10));
+    }
+
+    @Test
+    public void shouldReadPageAfterGivenPost() {
+        TimelineStore store = createStore(10);
+        long followee = createAuthor(2, createPost(10), createPost(11), createPost(12), createPost(13));
+        store.rebuild(createUser(1, followee));
+
+        assertArrayEquals(new long[]{13, 12}, store.read(1, 2));
+        assertArrayEquals(new long[]{11, 10}, store.readAfter(1, 12, 2));
+        assertArrayEquals(new long[0], store.readAfter(1, 10, 2));
+        assertArrayEquals(new long[]{13, 12}, store.readAfter(1, 99, 2));
+        assertFalse(store.isTruncated(1));
+
+        store.retract(2, 12);
+        assertArrayEquals(new long[]{11, 10}, store.readAfter(1, 12, 2));
+    }
+
+    @Test
+    public void shouldKeepPostsPushedOutOfOrderSortedAndPageThroughThemOnce() {
+        TimelineStore store = createStore(10);
+        long followee1 = createAuthor(2, createPost(10));
+        long followee2 = createAuthor(3);
+        store.rebuild(createUser(1, followee1, followee2));
+
+        store.publish(2, 14);
+        store.publish(3, 12);
+        store.publish(2, 15);
+        store.publish(3, 11);
+        store.publish(3, 13);
+        store.publish(2, 14);
+
+        assertArrayEquals(new long[]{15, 14, 13, 12, 11, 10}, store.read(1, 10));
+        List<Long> paged = new ArrayList<>();
+        long[] page = store.read(1, 2);
+        while (page.length > 0) {
+            LongStream.of(page).forEach(paged::add);
+            page = store.readAfter(1, page[page.length - 1], 2);
+        }
+        assertEquals(Arrays.asList(15L, 14L, 13L, 12L, 11L, 10L), paged);
+    }
+
+    @Test
+    public void shouldNotPushPostOlderThanEvictedOnes() {
+        TimelineStore store = createStore(3);
+        long followee1 = createAuthor(2, createPost(10), createPost(12), createPost(14));
+        long followee2 = createAuthor(3);
+        store.rebuild(createUser(1, followee1, followee2));
+
+        store.publish(3, 13);
+        store.publish(3, 11);
+
+        assertArrayEquals(new long[]{14, 13, 12}, store.read(1, 10));
+        assertTrue(store.isTruncated(1));
+    }
+
+    @Test
+    public void shouldMarkTimelineTruncatedWhenPostsDoNotFit() {
+        TimelineStore store = createStore(2);
+        long followee = createAuthor(2, createPost(10), createPost(11), createPost(12));
+
+        store.rebuild(createUser(1, followee));
+
+        assertArrayEquals(new long[]{12, 11}, store.read(1, 10));
+        assertTrue(store.isTruncated(1));
+        assertNull(store.readAfter(1, 11, 10));
+    }
+
+    @Test
+    public void shouldNotPushPostsOfCelebrities() {
+        TimelineStore store = createStore(10);
+        long followee = createAuthor(2, createPost(10));
+        long celebrity = createAuthor(3, createPost(11));
+        createUser(4, celebrity);
+        store.rebuild(createUser(1, followee, celebrity));
+
+        assertArrayEquals(new long[]{2}, store.pushedFollowees(1));
+        assertArrayEquals(new long[]{3}, store.pulledFollowees(1));
+        assertArrayEquals(new long[]{10}, store.read(1, 10));
+
+        store.publish(3, 12);
+        store.publish(2, 13);
+        assertArrayEquals(new long[]{13, 10}, store.read(1, 10));
+    }
+
+    @Test
+    public void shouldRebuildFollowerTimelinesWhenAuthorDropsBackBelowHalfOfThreshold() {
+        TimelineStore store = createStore(10, 2);
+        long celebrity = createAuthor(3, createPost(10), createPost(11));
+        createUser(4, celebrity);
+        createUser(5, celebrity);
+        store.rebuild(createUser(1, celebrity));
+        store.publish(celebrity, 12);
+        assertArrayEquals(new long[0], store.read(1, 10));
+
+        socialGraph.unfollow(4, celebrity);
+        store.unfollow(4, celebrity);
+        assertArrayEquals(new long[]{3}, store.pulledFollowees(1));
+        assertTrue(store.isMaterialized(1));
+
+        socialGraph.unfollow(5, celebrity);
+        store.unfollow(5, celebrity);
+        assertArrayEquals(new long[]{3}, store.pushedFollowees(1));
+        assertFalse(store.isMaterialized(1));
+
+        postsByAuthor.put(celebrity, Arrays.asList(createPost(10), createPost(11), createPost(12)));
+        store.rebuild(1);
+        store.publish(celebrity, 13);
+        assertArrayEquals(new long[]{13, 12, 11, 10}, store.read(1, 10));
+    }
+
+    @Test
+    public void shouldDropFollowerTimelinesWhenAuthorBecomesCelebrity() {
+        TimelineStore store = createStore(10, 2);
+        long author = createAuthor(3, createPost(10));
+        store.rebuild(createUser(1, author));
+        assertArrayEquals(new long[]{10}, store.read(1, 10));
+
+        socialGraph.follow(4, author);
+        store.follow(4, author);
+        assertTrue(store.isMaterialized(1));
+        socialGraph.follow(5, author);
+        store.follow(5, author);
+
+        assertFalse(store.isMaterialized(1));
+        assertArrayEquals(new long[]{3}, store.pulledFollowees(1));
+        store.rebuild(1);
+        assertArrayEquals(new long[0], store.read(1, 10));
+    }
+
+    @Test
+    public void shouldChangeEtagOnlyWhenTimelineContentMayChange() {
+        TimelineStore store = createStore(10);
+        long followee = createAuthor(2, createPost(10));
+        long celebrity = createAuthor(3, createPost(11));
+        createUser(4, celebrity);
+        long stranger = createAuthor(5, createPost(12));
+        store.rebuild(createUser(1, followee, celebrity));
+
+        String etag = store.etag(1);
+        store.publish(stranger, 13);
+        assertEquals(etag, store.etag(1));
+
+        store.publish(followee, 14);
+        assertNotEquals(etag, etag = store.etag(1));
+        store.edit(celebrity);
+        assertNotEquals(etag, etag = store.etag(1));
+        store.retract(followee, 14);
+        assertNotEquals(etag, etag = store.etag(1));
+        store.unfollow(1, followee);
+        assertNotEquals(etag, etag = store.etag(1));
+        store.follow(1, followee);
+        assertNotEquals(etag, store.etag(1));
+    }
+
+    private TimelineStore createStore(int capacity) {
+        return createStore(capacity, 1);
+    }
+
+    private TimelineStore createStore(int capacity, int celebrityThreshold) {
+        PostRepository postRepository = mock(PostRepository.class);
+        InMemoryUserPosts.stub(postRepository, postsByAuthor);
+        return new TimelineStore(capacity, celebrityThreshold, new TimelineAssembler(postRepository), socialGraph);
+    }
+
+    private long createAuthor(long id, Post... posts) {
+        postsByAuthor.put(id, Arrays.asList(posts));
+        return id;
+    }
+
+    private long createUser(long id, long... followees) {
+        for (long followee : followees) {
+            follows.add(new Follow(id, followee));
+        }
+        return id;
+    }
+
+    private FollowRepository createFollowRepository() {
+        FollowRepository followRepository = mock(FollowRepository.class);
+        when(followRepository.findFolloweeIds(anyLong())).thenAnswer(invocation -> follows.stream()
+                .filter(f -> f.getFollowerId() == (long) invocation.getArgument(0))
+                .map(Follow::getFolloweeId)
+                .collect(Collectors.toList()));
+        when(followRepository.findFollowerIds(anyLong())).thenAnswer(invocation -> follows.stream()
+                .filter(f -> f.getFolloweeId() == (long) invocation.getArgument(0))
+                .map(Follow::getFollowerId)
+                .collect(Collectors.toList()));
+        when(followRepository.deleteFollow(anyLong(), anyLong())).thenAnswer(invocation -> {
+            long followerId = invocation.getArgument(0);
+            long followeeId = invocation.getArgument(1);
+            return follows.removeIf(f -> f.getFollowerId() == followerId && f.getFolloweeId() == followeeId) ? 1 : 0;
+        });
+        return followRepository;
+    }
+
+    private Post createPost(long id) {
+        Post post = new Post();
+        post.setId(id);
+        post.setText("post" + id);
+        return post;
+    }
+}
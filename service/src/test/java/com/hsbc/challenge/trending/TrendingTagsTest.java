@@ -0,0 +1,70 @@
+package com.hsbc.challenge.trending;
+
+import com.hsbc.challenge.model.TrendingTag;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrendingTagsTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toMillis(1000));
+
+    @Test
+    public void shouldRankTagsByUsesInWindow() {
+        TrendingTags trending = new TrendingTags(60, 6, 1024, 10, now::get);
+        record(trending, "java", 5);
+        record(trending, "kotlin", 3);
+        record(trending, "scala", 1);
+
+        List<TrendingTag> tags = trending.trending(2);
+
+        assertEquals(2, tags.size());
+        assertEquals("java", tags.get(0).getTag());
+        assertEquals(5, tags.get(0).getCount());
+        assertEquals("kotlin", tags.get(1).getTag());
+        assertEquals(3, tags.get(1).getCount());
+    }
+
+    @Test
+    public void shouldForgetUsesOlderThanWindow() {
+        TrendingTags trending = new TrendingTags(60, 6, 1024, 10, now::get);
+        record(trending, "java", 5);
+        now.addAndGet(TimeUnit.SECONDS.toMillis(30));
+        record(trending, "kotlin", 3);
+
+        assertEquals("java", trending.trending(1).get(0).getTag());
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(40));
+        List<TrendingTag> tags = trending.trending(10);
+        assertEquals(1, tags.size());
+        assertEquals("kotlin", tags.get(0).getTag());
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(60));
+        assertTrue(trending.trending(10).isEmpty());
+        assertEquals(0L, (long) trending.stats().get("candidates"));
+    }
+
+    @Test
+    public void shouldReplaceSmallestCandidateWhenHeapIsFull() {
+        TrendingTags trending = new TrendingTags(60, 6, 1024, 2, now::get);
+        record(trending, "a", 3);
+        record(trending, "b", 1);
+        record(trending, "c", 2);
+
+        List<TrendingTag> tags = trending.trending(10);
+        assertEquals(2, tags.size());
+        assertEquals("a", tags.get(0).getTag());
+        assertEquals("c", tags.get(1).getTag());
+    }
+
+    private static void record(TrendingTags trending, String tag, int times) {
+        for (int i = 0; i < times; i++) {
+            trending.record(tag);
+        }
+    }
+}
@@ -1,23 +1,26 @@
 package com.hsbc.challenge.util;
 
 
-import com.hsbc.challenge.model.Post;
+import com.hsbc.challenge.model.PostIdGenerator;
+import com.hsbc.challenge.model.PostView;
 import org.junit.jupiter.api.Test;
 
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ReverseChronologicalPostComparatorTest {
 
     @Test
     public void shouldCompareInReverseOrder() {
         // given
-        Post elderPost = new Post();
-        elderPost.setCreationDateTime(createDate(2018, 1,1, 1, 0));
-        Post post = new Post();
-        post.setCreationDateTime(createDate(2018, 1,1, 1, 10));
-        List<Post> posts = Arrays.asList(elderPost, post);
+        PostIdGenerator generator = new PostIdGenerator(3);
+        PostView elderPost = new PostView();
+        elderPost.setId(generator.nextId());
+        PostView post = new PostView();
+        post.setId(generator.nextId());
+        List<PostView> posts = Arrays.asList(elderPost, post);
 
         // when
         Collections.sort(posts, new ReverseChronologicalPostComparator());
@@ -25,11 +28,7 @@ class ReverseChronologicalPostComparatorTest {
         // then
         assertEquals(post, posts.get(0));
         assertEquals(elderPost, posts.get(1));
+        assertTrue(PostIdGenerator.timestamp(elderPost.getId()) <= PostIdGenerator.timestamp(post.getId()));
+        assertTrue(Math.abs(System.currentTimeMillis() - PostIdGenerator.timestamp(post.getId())) < 1000);
     }
-
-    private Date createDate(int year, int month, int date, int hourOfDay, int minute) {
-        Calendar instance = Calendar.getInstance();
-        instance.set(year, month, date, hourOfDay, minute);
-        return instance.getTime();
-    }
-}
\ No newline at end of file
+}